@@ -0,0 +1,186 @@
+import benchmarks.Pipeline;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.regex.Pattern;
+
+/**
+ * Реализация {@link Pipeline} в безымянном пакете, через которую бенчмарки вызывают классы утилиты.
+ *
+ * <p> Методы только перенаправляют вызовы в соответствующие классы, чтобы измерялась работа самой утилиты. Исключения -
+ * {@link #loadFile(String)}, {@link #filter(String)} и {@link #classifyRegex(String[])}: они повторяют прежние
+ * загрузку файла целиком, разбиение на строки и классификацию регулярными выражениями, которых в утилите больше нет,
+ * и служат точкой отсчёта для сравнения.
+ */
+
+public class PipelineBridge implements Pipeline {
+
+    private static final Pattern integerPattern = Pattern.compile("^[-+]?\\d+$");
+    private static final Pattern floatPattern = Pattern.compile("^[-+]?[\\d]+[.,][\\d]+(?:[eE][+-]?[\\d]+)?$");
+
+    @Override
+    public String loadFile(String path) {
+        try {
+            return new String(Files.readAllBytes(Paths.get(path)), InputEncoding.DEFAULT.getCharset());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public Object filter(String data) {
+        FilterResult result = new FilterResult();
+        RowClassifier classifier = new RowClassifier();
+        for (String row : data.split("\n")) {
+            switch (classifier.classify(row)) {
+                case INTEGER -> result.addInteger(classifier.getIntegerValue());
+                case FLOAT -> result.addFloat(classifier.getFloatValue());
+                case STRING -> result.addString(row.trim());
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public Object filterFile(String path) {
+        FilterResult result = new FilterResult();
+        FileProcessor.filterFile(path, result);
+        return result;
+    }
+
+    @Override
+    public Object filterFileMapped(String path) {
+        FilterResult result = new FilterResult();
+        MappedFileProcessor.filterFile(path, result);
+        return result;
+    }
+
+    @Override
+    public Object filterFileChunked(String path, int parallelism) {
+        FilterResult result = new FilterResult();
+        ChunkedProcessor.filterFile(path, parallelism, false, result);
+        return result;
+    }
+
+    @Override
+    public long filterFiles(String[] paths, int concurrency, boolean virtualFlag) {
+        FilterResult result = new FilterResult();
+
+        if (concurrency == 1 && !virtualFlag) {
+            for (String path : paths) {
+                FileProcessor.filterFile(path, result);
+            }
+        } else {
+            ParallelProcessor.filterFiles(Arrays.asList(paths).iterator(), concurrency, concurrency * 2, false,
+                    virtualFlag, result, new Metrics(false));
+        }
+        return (long) result.getIntegerList().size() + result.getFloatList().size() + result.getStringArena().size();
+    }
+
+    @Override
+    public int classifyRegex(String[] rows) {
+        int numbers = 0;
+        for (String row : rows) {
+            String trimRow = row.trim();
+            if (integerPattern.matcher(trimRow).matches()) {
+                try {
+                    Long.parseLong(trimRow);
+                    numbers++;
+                } catch (NumberFormatException e) {
+                    // Целое число вне диапазона long считается строкой, как и в RowClassifier.
+                }
+            } else if (floatPattern.matcher(trimRow).matches()) {
+                Double.parseDouble(trimRow.replace(",", "."));
+                numbers++;
+            }
+        }
+        return numbers;
+    }
+
+    @Override
+    public int classifyScanner(String[] rows) {
+        RowClassifier classifier = new RowClassifier();
+        int numbers = 0;
+        for (String row : rows) {
+            if (classifier.classify(row) != RowClassifier.RowType.STRING) {
+                numbers++;
+            }
+        }
+        return numbers;
+    }
+
+    @Override
+    public long writeFiles(Object filterResult, String outputDir) {
+        FilterResult result = (FilterResult) filterResult;
+        OutputWriter outputWriter = new OutputWriter(Paths.get(outputDir, "integers.txt").toString(),
+                Paths.get(outputDir, "floats.txt").toString(), Paths.get(outputDir, "strings.txt").toString(), false);
+
+        try {
+            outputWriter.addIntegers(result.getIntegerList());
+            outputWriter.addFloats(result.getFloatList());
+            outputWriter.addStrings(result.getStringArena());
+        } finally {
+            outputWriter.close();
+        }
+        return (long) result.getIntegerList().size() + result.getFloatList().size() + result.getStringArena().size();
+    }
+
+    @Override
+    public double accumulatedStatistics(Object filterResult, boolean sketchesFlag) {
+        StatisticsAccumulator stats = new StatisticsAccumulator(new FilterResult(), sketchesFlag, false);
+        ((FilterResult) filterResult).mergeInto(stats);
+        return checksum(stats, sketchesFlag);
+    }
+
+    @Override
+    public long runPipeline(String path, String outputDir, boolean streamFlag) {
+        FilterConfig config = FilterConfig.builder(outputDir)
+                .inputs(path)
+                .fullStats(true)
+                .stream(streamFlag)
+                .build();
+
+        FilterReport report = new FilterJob(config).run();
+        StatisticsAccumulator stats = report.statistics();
+        return stats.getIntegersCount() + stats.getFloatsCount() + stats.getStringsCount() + report.view().length();
+    }
+
+    /**
+     * Считывает все характеристики накопителя, как это делает {@code ViewHandler} при выводе полной статистики.
+     */
+
+    private static double checksum(StatisticsAccumulator stats, boolean sketchesFlag) {
+        double checksum = 0d;
+
+        if (stats.getIntegersCount() > 0) {
+            checksum += stats.getIntegersMin() + stats.getIntegersMax() + stats.getIntegersMean();
+            checksum += stats.getIntegersSum().doubleValue();
+            if (sketchesFlag) {
+                checksum += stats.getIntegersQuantiles().getQuantile(0.5);
+                checksum += stats.getIntegersQuantiles().getQuantile(0.9);
+                checksum += stats.getIntegersQuantiles().getQuantile(0.99);
+                checksum += stats.getIntegersDistinct().getEstimate();
+            }
+        }
+        if (stats.getFloatsCount() > 0) {
+            checksum += stats.getFloatsMin() + stats.getFloatsMax() + stats.getFloatsMean();
+            if (sketchesFlag) {
+                checksum += stats.getFloatsQuantiles().getQuantile(0.5);
+                checksum += stats.getFloatsQuantiles().getQuantile(0.9);
+                checksum += stats.getFloatsQuantiles().getQuantile(0.99);
+                checksum += stats.getFloatsDistinct().getEstimate();
+            }
+        }
+        if (stats.getStringsCount() > 0) {
+            checksum += stats.getStringsMinLength() + stats.getStringsMaxLength();
+            if (sketchesFlag) {
+                checksum += stats.getStringsLengthQuantiles().getQuantile(0.5);
+                checksum += stats.getStringsDistinct().getEstimate();
+            }
+        }
+        return checksum;
+    }
+}
@@ -0,0 +1,39 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Масштабирование фильтрации одного файла по частям в зависимости от количества потоков.
+ *
+ * <p> Значение {@code 1} соответствует последовательной обработке частей и служит базой для сравнения. Для
+ * заметного эффекта размер файла стоит увеличить, например {@code -p sizeMb=512}.
+ */
+
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ChunkedBenchmark {
+
+    @Param({"1", "4", "16", "64"})
+    public int parallelism;
+
+    @Benchmark
+    public Object filterFileChunked(InputData input, Throughput throughput) {
+        throughput.count(input);
+        return input.pipeline.filterFileChunked(input.path, parallelism);
+    }
+}
@@ -0,0 +1,38 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Сравнение классификации строк регулярными выражениями и однопроходным {@code RowClassifier}.
+ *
+ * <p> Оба варианта получают один и тот же массив строк из {@link InputData} и разбирают числовые значения, поэтому
+ * разница отражает только стоимость классификации и разбора.
+ */
+
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ClassifierBenchmark {
+
+    @Benchmark
+    public int regex(InputData input, Throughput throughput) {
+        throughput.count(input);
+        return input.pipeline.classifyRegex(input.rows);
+    }
+
+    @Benchmark
+    public int scanner(InputData input, Throughput throughput) {
+        throughput.count(input);
+        return input.pipeline.classifyScanner(input.rows);
+    }
+}
@@ -0,0 +1,154 @@
+package benchmarks;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.SplittableRandom;
+
+/**
+ * Генератор синтетических входных файлов для бенчмарков.
+ *
+ * <p> Файл заполняется строками до заданного размера. Тип каждой строки выбирается случайно по заданным долям
+ * целых и вещественных чисел, остальные строки строковые. Длина строки задаёт примерную длину строковых строк
+ * и количество цифр в числах. Вещественные числа записываются через точку, запятую и в экспоненциальном виде,
+ * часть строк окружается пробелами, а часть пустая, чтобы нагрузка была похожа на реальные входные данные.
+ *
+ * <p> Генерация детерминирована: одинаковые параметры и начальное значение дают одинаковый файл.
+ */
+
+public class DataGenerator {
+
+    private static final String letters = "abcdefghijklmnopqrstuvwxyzABCDEFGHIJKLMNOPQRSTUVWXYZ .,;:!?-";
+
+    /**
+     * Результат генерации: размер файла и количество строк.
+     *
+     * @param bytes Размер файла в байтах.
+     * @param lines Количество строк.
+     */
+
+    public record Generated(long bytes, long lines) {
+    }
+
+    /**
+     * Генерирует входной файл.
+     *
+     * @param path Путь создаваемого файла.
+     * @param sizeBytes Размер файла в байтах, после достижения которого генерация останавливается.
+     * @param integerPercent Доля целых чисел в процентах.
+     * @param floatPercent Доля вещественных чисел в процентах.
+     * @param lineLength Примерная длина строки в символах.
+     * @param seed Начальное значение генератора случайных чисел.
+     * @return Размер файла и количество строк {@link Generated}.
+     * @throws IOException Если не удалось записать файл.
+     */
+
+    public static Generated generate(
+            Path path,
+            long sizeBytes,
+            int integerPercent,
+            int floatPercent,
+            int lineLength,
+            long seed
+    ) throws IOException {
+        if (integerPercent < 0 || floatPercent < 0 || integerPercent + floatPercent > 100) {
+            throw new IllegalArgumentException("Integer and float shares must be between 0 and 100 in total.");
+        }
+        SplittableRandom random = new SplittableRandom(seed);
+        StringBuilder row = new StringBuilder(lineLength * 2);
+        long bytes = 0;
+        long lines = 0;
+
+        try (BufferedWriter bw = Files.newBufferedWriter(path, StandardCharsets.US_ASCII)) {
+            while (bytes < sizeBytes) {
+                row.setLength(0);
+                int kind = random.nextInt(100);
+
+                if (kind < integerPercent) {
+                    appendInteger(row, random, lineLength);
+                } else if (kind < integerPercent + floatPercent) {
+                    appendFloat(row, random, lineLength);
+                } else {
+                    appendString(row, random, lineLength);
+                }
+                if (random.nextInt(20) == 0) {
+                    row.insert(0, "  ").append(' ');
+                }
+                bw.append(row).append('\n');
+                bytes += row.length() + 1;
+                lines++;
+            }
+        }
+        return new Generated(bytes, lines);
+    }
+
+    /**
+     * Генерирует файл из командной строки.
+     *
+     * <p> Аргументы: путь, размер в мегабайтах, доля целых в процентах, доля вещественных в процентах, длина строки
+     * и, необязательно, начальное значение генератора.
+     *
+     * @param args Аргументы командной строки.
+     * @throws IOException Если не удалось записать файл.
+     */
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 5) {
+            System.err.println("Usage: DataGenerator <path> <size_mb> <integer_percent> <float_percent> "
+                    + "<line_length> [seed]");
+            System.exit(1);
+        }
+        Generated generated = generate(
+                Paths.get(args[0]),
+                Long.parseLong(args[1]) * 1024 * 1024,
+                Integer.parseInt(args[2]),
+                Integer.parseInt(args[3]),
+                Integer.parseInt(args[4]),
+                args.length > 5 ? Long.parseLong(args[5]) : 42L);
+        System.out.printf("Generated %d bytes, %d lines.%n", generated.bytes(), generated.lines());
+    }
+
+    private static void appendInteger(StringBuilder row, SplittableRandom random, int lineLength) {
+        if (random.nextBoolean()) {
+            row.append('-');
+        }
+        appendDigits(row, random, 1 + random.nextInt(Math.max(1, Math.min(lineLength, 18))));
+    }
+
+    private static void appendFloat(StringBuilder row, SplittableRandom random, int lineLength) {
+        int digits = Math.max(2, Math.min(lineLength, 30));
+        int integerDigits = 1 + random.nextInt(digits / 2);
+
+        if (random.nextBoolean()) {
+            row.append('-');
+        }
+        appendDigits(row, random, integerDigits);
+        row.append(random.nextInt(4) == 0 ? ',' : '.');
+        appendDigits(row, random, 1 + random.nextInt(Math.max(1, digits - integerDigits)));
+        if (random.nextInt(10) == 0) {
+            row.append(random.nextBoolean() ? 'e' : 'E').append(random.nextBoolean() ? '-' : '+');
+            appendDigits(row, random, 1 + random.nextInt(2));
+        }
+    }
+
+    private static void appendString(StringBuilder row, SplittableRandom random, int lineLength) {
+        if (random.nextInt(50) == 0) {
+            return;
+        }
+        int length = 1 + random.nextInt(Math.max(1, lineLength * 2));
+        row.append(letters.charAt(random.nextInt(52)));
+        for (int i = 1; i < length; i++) {
+            row.append(letters.charAt(random.nextInt(letters.length())));
+        }
+    }
+
+    private static void appendDigits(StringBuilder row, SplittableRandom random, int count) {
+        row.append((char) ('1' + random.nextInt(9)));
+        for (int i = 1; i < count; i++) {
+            row.append((char) ('0' + random.nextInt(10)));
+        }
+    }
+}
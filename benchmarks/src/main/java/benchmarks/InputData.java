@@ -0,0 +1,82 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+/**
+ * Общее состояние бенчмарков: сгенерированный входной файл и заранее подготовленные результаты предыдущих этапов.
+ *
+ * <p> Файл генерируется один раз на запуск при помощи {@link DataGenerator} во временной директории, которая
+ * удаляется после запуска. Состав и размер данных задаются параметрами JMH, например
+ * {@code -p sizeMb=256 -p integerPercent=80 -p floatPercent=10 -p lineLength=32}.
+ *
+ * <p> Для измерения отдельных этапов заранее подготавливаются их входы: содержимое файла для фильтрации,
+ * массив строк для классификации и результат фильтрации для записи и статистики.
+ */
+
+@State(Scope.Benchmark)
+public class InputData {
+
+    @Param("16")
+    public int sizeMb;
+
+    @Param("40")
+    public int integerPercent;
+
+    @Param("30")
+    public int floatPercent;
+
+    @Param("16")
+    public int lineLength;
+
+    public Pipeline pipeline;
+
+    public Path workDir;
+    public String path;
+    public String outputDir;
+
+    public long bytes;
+    public long lines;
+
+    public String data;
+    public String[] rows;
+    public Object filterResult;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        pipeline = Pipeline.load();
+        workDir = Files.createTempDirectory("txt-filter-bench");
+
+        Path input = workDir.resolve("input.txt");
+        DataGenerator.Generated generated = DataGenerator.generate(
+                input, (long) sizeMb * 1024 * 1024, integerPercent, floatPercent, lineLength, 42L);
+
+        path = input.toString();
+        outputDir = Files.createDirectories(workDir.resolve("out")).toString();
+        bytes = generated.bytes();
+        lines = generated.lines();
+
+        data = pipeline.loadFile(path);
+        rows = data.split("\n");
+        filterResult = pipeline.filter(data);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        try (Stream<Path> files = Files.walk(workDir)) {
+            for (Path file : files.sorted(Comparator.reverseOrder()).toList()) {
+                Files.deleteIfExists(file);
+            }
+        }
+    }
+}
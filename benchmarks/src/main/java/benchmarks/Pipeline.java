@@ -0,0 +1,121 @@
+package benchmarks;
+
+/**
+ * Интерфейс доступа к этапам обработки утилиты из бенчмарков.
+ *
+ * <p> Классы утилиты находятся в безымянном пакете, а JMH допускает бенчмарки только в именованных пакетах. Из
+ * именованного пакета нельзя обратиться к классам безымянного, поэтому этапы вызываются через этот интерфейс,
+ * который реализует класс {@code PipelineBridge} из безымянного пакета. Реализация загружается по имени
+ * в {@link #load()}.
+ *
+ * <p> Результаты фильтрации передаются как {@link Object}, так как их тип недоступен из именованного пакета.
+ */
+
+public interface Pipeline {
+
+    /**
+     * Загружает реализацию интерфейса из безымянного пакета.
+     *
+     * @return Реализация {@link Pipeline}.
+     */
+
+    static Pipeline load() {
+        try {
+            return (Pipeline) Class.forName("PipelineBridge").getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Unable to load PipelineBridge.", e);
+        }
+    }
+
+    /**
+     * Загружает входной файл целиком, как это делала утилита до потокового чтения.
+     *
+     * @param path Путь входного файла.
+     * @return Содержимое файла.
+     */
+
+    String loadFile(String path);
+
+    /**
+     * Разбивает загруженные данные на строки при помощи {@code split("\n")} и классифицирует их
+     * {@code RowClassifier}, как это делала утилита до потокового чтения.
+     *
+     * @param data Содержимое входного файла.
+     * @return Результат фильтрации.
+     */
+
+    Object filter(String data);
+
+    Object filterFile(String path);
+
+    Object filterFileMapped(String path);
+
+    Object filterFileChunked(String path, int parallelism);
+
+    /**
+     * Фильтрует несколько входных файлов с объединением результатов в порядке путей.
+     *
+     * @param paths Пути входных файлов.
+     * @param concurrency Количество потоков или, в режиме виртуальных потоков, одновременно обрабатываемых файлов.
+     * Значение {@code 1} без виртуальных потоков соответствует последовательной обработке, как в {@code Main}.
+     * @param virtualFlag Режим обработки каждого файла в отдельном виртуальном потоке {@code -v}.
+     * @return Количество обработанных строк.
+     */
+
+    long filterFiles(String[] paths, int concurrency, boolean virtualFlag);
+
+    /**
+     * Классифицирует строки регулярными выражениями, как это делала утилита до появления {@code RowClassifier}.
+     *
+     * @param rows Строки входных данных.
+     * @return Количество строк, определённых как числа.
+     */
+
+    int classifyRegex(String[] rows);
+
+    /**
+     * Классифицирует строки однопроходным {@code RowClassifier}.
+     *
+     * @param rows Строки входных данных.
+     * @return Количество строк, определённых как числа.
+     */
+
+    int classifyScanner(String[] rows);
+
+    /**
+     * Записывает результат фильтрации в три выходных файла в заданной директории при помощи {@code OutputWriter}, как
+     * это делает {@code FilterJob} без потоковой записи.
+     *
+     * @param filterResult Результат фильтрации, полученный из этого интерфейса.
+     * @param outputDir Директория выходных файлов.
+     * @return Количество записанных строк.
+     */
+
+    long writeFiles(Object filterResult, String outputDir);
+
+    /**
+     * Рассчитывает полную статистику за один проход при помощи {@code StatisticsAccumulator}.
+     *
+     * @param filterResult Результат фильтрации, полученный из этого интерфейса.
+     * @param sketchesFlag Режим расчёта квантилей и количества различных значений.
+     * @return Сумма рассчитанных характеристик, чтобы результат не был удалён как неиспользуемый.
+     */
+
+    double accumulatedStatistics(Object filterResult, boolean sketchesFlag);
+
+    /**
+     * Выполняет полный цикл обработки одного файла через {@code FilterJob} с конфигурацией {@code FilterConfig}, как
+     * {@code Main}: фильтрация с накоплением статистики, запись выходных файлов и формирование полной статистики.
+     * Выбор последовательной, параллельной или поблочной обработки выполняется самим запуском по размеру файла.
+     *
+     * <p> Вместо {@code Main.run} используется {@code FilterJob}, чтобы итоговый вывод не печатался в консоль на
+     * каждой операции.
+     *
+     * @param path Путь входного файла.
+     * @param outputDir Директория выходных файлов.
+     * @param streamFlag Режим потоковой записи {@code -w}.
+     * @return Количество обработанных строк.
+     */
+
+    long runPipeline(String path, String outputDir, boolean streamFlag);
+}
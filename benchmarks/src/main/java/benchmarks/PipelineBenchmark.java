@@ -0,0 +1,38 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Бенчмарк полного цикла обработки одного файла: фильтрация, запись выходных файлов и полная статистика.
+ *
+ * <p> Параметр {@code streamFlag} переключает накопление результатов в памяти и потоковую запись {@code -w}.
+ */
+
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PipelineBenchmark {
+
+    @Param({"false", "true"})
+    public boolean streamFlag;
+
+    @Benchmark
+    public long pipeline(InputData input, Throughput throughput) {
+        throughput.count(input);
+        return input.pipeline.runPipeline(input.path, input.outputDir, streamFlag);
+    }
+}
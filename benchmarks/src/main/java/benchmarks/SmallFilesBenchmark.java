@@ -0,0 +1,107 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Фильтрация большого количества маленьких входных файлов последовательно, в пуле потоков {@code -j} и в
+ * виртуальных потоках {@code -v}.
+ *
+ * <p> Файлы генерируются один раз на запуск при помощи {@link DataGenerator}. Количество и размер файлов задаются
+ * параметрами {@code fileCount} и {@code fileBytes}, количество потоков или одновременно обрабатываемых файлов -
+ * параметром {@code concurrency}. Выигрыш виртуальных потоков проявляется, когда открытие и чтение файла блокируются,
+ * например на холодном кэше страниц или сетевой файловой системе.
+ */
+
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class SmallFilesBenchmark {
+
+    /**
+     * Сгенерированные маленькие входные файлы.
+     */
+
+    @State(Scope.Benchmark)
+    public static class SmallFiles {
+
+        @Param("50000")
+        public int fileCount;
+
+        @Param("256")
+        public int fileBytes;
+
+        @Param("64")
+        public int concurrency;
+
+        public Pipeline pipeline;
+
+        public Path workDir;
+        public String[] paths;
+
+        public long bytes;
+        public long lines;
+
+        @Setup(Level.Trial)
+        public void setUp() throws IOException {
+            pipeline = Pipeline.load();
+            workDir = Files.createTempDirectory("txt-filter-bench-small");
+            paths = new String[fileCount];
+
+            for (int i = 0; i < fileCount; i++) {
+                Path input = workDir.resolve("input" + i + ".txt");
+                DataGenerator.Generated generated = DataGenerator.generate(input, fileBytes, 40, 30, 16, i);
+                paths[i] = input.toString();
+                bytes += generated.bytes();
+                lines += generated.lines();
+            }
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() throws IOException {
+            try (Stream<Path> files = Files.walk(workDir)) {
+                for (Path file : files.sorted(Comparator.reverseOrder()).toList()) {
+                    Files.deleteIfExists(file);
+                }
+            }
+        }
+    }
+
+    @Benchmark
+    public long sequential(SmallFiles files, Throughput throughput) {
+        throughput.count(files.bytes, files.lines);
+        return files.pipeline.filterFiles(files.paths, 1, false);
+    }
+
+    @Benchmark
+    public long threadPool(SmallFiles files, Throughput throughput) {
+        throughput.count(files.bytes, files.lines);
+        return files.pipeline.filterFiles(files.paths, files.concurrency, false);
+    }
+
+    @Benchmark
+    public long virtualThreads(SmallFiles files, Throughput throughput) {
+        throughput.count(files.bytes, files.lines);
+        return files.pipeline.filterFiles(files.paths, files.concurrency, true);
+    }
+}
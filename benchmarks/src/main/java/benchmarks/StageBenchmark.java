@@ -0,0 +1,69 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Бенчмарки отдельных этапов обработки: загрузка, фильтрация, запись и расчёт статистики.
+ *
+ * <p> Каждый этап получает заранее подготовленный вход из {@link InputData}, поэтому измеряется только он сам.
+ * Пропускная способность по входным данным выводится счётчиками {@link Throughput}, скорость выделения памяти —
+ * профилировщиком {@code -prof gc}.
+ */
+
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class StageBenchmark {
+
+    @Benchmark
+    public String loadFile(InputData input, Throughput throughput) {
+        throughput.count(input);
+        return input.pipeline.loadFile(input.path);
+    }
+
+    @Benchmark
+    public Object filter(InputData input, Throughput throughput) {
+        throughput.count(input);
+        return input.pipeline.filter(input.data);
+    }
+
+    @Benchmark
+    public Object filterFile(InputData input, Throughput throughput) {
+        throughput.count(input);
+        return input.pipeline.filterFile(input.path);
+    }
+
+    @Benchmark
+    public Object filterFileMapped(InputData input, Throughput throughput) {
+        throughput.count(input);
+        return input.pipeline.filterFileMapped(input.path);
+    }
+
+    @Benchmark
+    public long writeFiles(InputData input, Throughput throughput) {
+        throughput.count(input);
+        return input.pipeline.writeFiles(input.filterResult, input.outputDir);
+    }
+
+    @Benchmark
+    public double accumulatedStatistics(InputData input, Throughput throughput) {
+        throughput.count(input);
+        return input.pipeline.accumulatedStatistics(input.filterResult, false);
+    }
+
+    @Benchmark
+    public double accumulatedStatisticsWithSketches(InputData input, Throughput throughput) {
+        throughput.count(input);
+        return input.pipeline.accumulatedStatistics(input.filterResult, true);
+    }
+}
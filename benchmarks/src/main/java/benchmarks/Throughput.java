@@ -0,0 +1,51 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Дополнительные счётчики пропускной способности.
+ *
+ * <p> Каждый вызов бенчмарка добавляет размер и количество строк обработанного входного файла. JMH выводит счётчики
+ * как скорость в секунду рядом с основным результатом: {@code bytes} — байты входных данных в секунду (для МБ/с
+ * значение делится на {@code 1048576}), {@code lines} — строки в секунду.
+ */
+
+@State(Scope.Thread)
+@AuxCounters(AuxCounters.Type.OPERATIONS)
+public class Throughput {
+
+    public long bytes;
+    public long lines;
+
+    @Setup(Level.Iteration)
+    public void reset() {
+        bytes = 0;
+        lines = 0;
+    }
+
+    /**
+     * Учитывает один обработанный входной файл.
+     *
+     * @param input Состояние с параметрами входного файла.
+     */
+
+    public void count(InputData input) {
+        count(input.bytes, input.lines);
+    }
+
+    /**
+     * Учитывает обработанные входные данные заданного размера.
+     *
+     * @param inputBytes Размер входных данных в байтах.
+     * @param inputLines Количество строк входных данных.
+     */
+
+    public void count(long inputBytes, long inputLines) {
+        bytes += inputBytes;
+        lines += inputLines;
+    }
+}
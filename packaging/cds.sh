@@ -0,0 +1,75 @@
+#!/usr/bin/env bash
+#
+# Строит архив совместного использования классов (AppCDS) target/app.jsa для target/app.jar.
+#
+# Архив создаётся по спискам классов, загруженных в обучающих запусках на образцах из packaging/training. Запуски
+# покрывают основные режимы утилиты, поэтому в архив попадают классы разбора аргументов, чтения входных данных,
+# записи результатов и статистики вместе с используемыми ими классами java.nio, java.util.regex и java.util.zip.
+# Списки разных запусков объединяются без повторов, после чего архив создаётся при помощи -Xshare:dump.
+#
+# Запуск из корня проекта после mvn package или через mvn -Pcds package. Путь к java можно задать переменной JAVA,
+# дополнительные опции JVM для всех запусков - переменной JAVA_OPTS. Использование архива:
+#
+#     java -XX:SharedArchiveFile=target/app.jsa -jar target/app.jar -s in1.txt
+#
+# Путь к jar при запуске должен совпадать с путём при создании архива, иначе JVM не использует архив.
+
+set -euo pipefail
+
+cd "$(dirname "$0")/.."
+
+java="${JAVA:-java}"
+read -r -a javaOpts <<< "${JAVA_OPTS:-}"
+jar="target/app.jar"
+archive="target/app.jsa"
+work="target/cds"
+
+if [[ ! -f "$jar" ]]; then
+    echo "The jar $jar was not found. Run mvn package first." >&2
+    exit 1
+fi
+
+rm -rf "$work"
+mkdir -p "$work/in/nested" "$work/out"
+cp packaging/training/sample.txt "$work/in/sample.txt"
+cp packaging/training/sample.txt "$work/in/nested/copy.txt"
+gzip -c packaging/training/sample.txt > "$work/in/sample.txt.gz"
+
+in="$work/in"
+out="./$work/out"
+
+# Выполняет обучающий запуск и сохраняет список загруженных классов в $work/<name>.classlist.
+train() {
+    local name="$1"
+    shift
+    "$java" "${javaOpts[@]}" -XX:DumpLoadedClassList="$work/$name.classlist" -jar "$jar" "$@" > /dev/null 2>&1 || {
+        echo "The training run $name failed." >&2
+        exit 1
+    }
+}
+
+train help --help
+train brief -s -o "$out" "$in/sample.txt"
+train full -f -g -a -p full_ -o "$out" "$in/sample.txt" "$in/sample.txt.gz"
+train directory -s -p dir_ -o "$out" "$in"
+train jobs -j 2 -s -p jobs_ -o "$out" "$in/sample.txt" "$in/nested/copy.txt"
+train virtual -v 4 -s -p virtual_ -o "$out" "$in/sample.txt" "$in/nested/copy.txt"
+train stream -w -m -z -s -p stream_ -o "$out" "$in/sample.txt"
+train stdout -c all "$in/sample.txt"
+train sort -n -u -s -p sort_ -o "$out" "$in/sample.txt"
+train checkpoint -k "$work/run.journal" -s -p checkpoint_ -o "$out" "$in/sample.txt"
+train metrics -r -s -p metrics_ -o "$out" "$in/sample.txt"
+
+# Идентификаторы классов в списках у каждого запуска свои и для классов встроенных загрузчиков не нужны.
+sed -E 's/ id: [0-9]+$//' "$work"/*.classlist | awk '!/^#/ && !seen[$0]++' > "$work/app.classlist"
+
+# Объекты кучи и граф модулей сохраняются в архив, только если при создании архива используется G1. На машинах с
+# одним процессором или малым объёмом памяти JVM по умолчанию выбирает Serial GC, поэтому G1 задаётся явно. При
+# запуске сборщик мусора может быть любым.
+"$java" "${javaOpts[@]}" -XX:+UseG1GC -Xshare:dump -XX:SharedClassListFile="$work/app.classlist" \
+        -XX:SharedArchiveFile="$archive" -cp "$jar" > "$work/dump.log" 2>&1 || {
+    echo "Unable to create the archive, see $work/dump.log." >&2
+    exit 1
+}
+
+echo "The archive $archive was created from $(wc -l < "$work/app.classlist") classes and lambda forms."
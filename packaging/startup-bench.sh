@@ -0,0 +1,68 @@
+#!/usr/bin/env bash
+#
+# Сравнивает время запуска утилиты в вариантах сборки: обычный jar, jar с архивом AppCDS target/app.jsa и
+# исполняемый файл native-image target/app. Варианты, которые не собраны, пропускаются.
+#
+# Для каждого варианта измеряются два запуска:
+#   - startup: вывод справки --help, то есть запуск JVM или исполняемого файла, загрузка классов и разбор аргументов;
+#   - end-to-end: фильтрация входного файла 1 КБ packaging/training/sample.txt с краткой статистикой.
+# Каждый запуск повторяется RUNS раз (по умолчанию 20) после двух прогревочных запусков для файлового кэша, выводятся
+# медиана и минимум в миллисекундах. Путь к java можно задать переменной JAVA, опции JVM - переменной JAVA_OPTS.
+
+set -euo pipefail
+
+cd "$(dirname "$0")/.."
+
+java="${JAVA:-java}"
+read -r -a javaOpts <<< "${JAVA_OPTS:-}"
+runs="${RUNS:-20}"
+work="target/startup-bench"
+
+rm -rf "$work"
+mkdir -p "$work/out"
+cp packaging/training/sample.txt "$work/sample.txt"
+
+# Выполняет команду RUNS раз и выводит медиану и минимум времени выполнения в миллисекундах.
+measure() {
+    local times=()
+    for ((i = 0; i < runs + 2; i++)); do
+        local start end
+        start=$(date +%s%N)
+        "$@" > /dev/null 2>&1
+        end=$(date +%s%N)
+        if ((i >= 2)); then
+            times+=($(((end - start) / 1000)))
+        fi
+    done
+    printf '%s\n' "${times[@]}" | sort -n | awk '
+        { t[NR] = $1 }
+        END {
+            median = NR % 2 ? t[(NR + 1) / 2] : (t[NR / 2] + t[NR / 2 + 1]) / 2
+            printf "%8.1f %8.1f", median / 1000, t[1] / 1000
+        }'
+}
+
+# Выводит строку таблицы для варианта сборки, команда запуска передаётся аргументами.
+report() {
+    local name="$1"
+    shift
+    printf '%-10s %-10s %s\n' "$name" startup "$(measure "$@" --help)"
+    printf '%-10s %-10s %s\n' "$name" end-to-end "$(measure "$@" -s -o "./$work/out" "$work/sample.txt")"
+}
+
+printf '%-10s %-10s %8s %8s\n' variant run "median" "min"
+
+if [[ -f target/app.jar ]]; then
+    report jar "$java" "${javaOpts[@]}" -jar target/app.jar
+else
+    echo "The jar target/app.jar was not found. Run mvn package first." >&2
+    exit 1
+fi
+
+if [[ -f target/app.jsa ]]; then
+    report appcds "$java" "${javaOpts[@]}" -XX:SharedArchiveFile=target/app.jsa -jar target/app.jar
+fi
+
+if [[ -x target/app ]]; then
+    report native target/app
+fi
@@ -1,4 +1,5 @@
 import java.io.IOException;
+import java.nio.charset.Charset;
 import java.nio.file.*;
 import java.util.ArrayList;
 import java.util.regex.Pattern;
@@ -7,11 +8,12 @@ import java.util.regex.Pattern;
  * Класс для обработки и контроля правильности передаваемых входных аргументов.
  *
  * <p> Обработка аргументов производится при помощи цикла for-each и оператора switch.
- * <p> Класс состоит из статических полей и статического одного метода.
- * <p> Необходимые поля для работы утилиты доступны через геттеры.
- * <p> В статических полях содержатся:
+ * <p> Каждый объект класса разбирает один набор аргументов, поэтому несколько наборов, например запросы
+ * {@link DaemonServer}, могут разбираться одновременно. Рабочая директория передаётся в конструктор.
+ * <p> Результат разбора - неизменяемая конфигурация запуска {@link FilterConfig}, доступная через
+ * {@link #getConfig()}.
+ * <p> В полях объекта содержатся:
  * <ul>
- *      <li>Массив с путями файлов входных данных.</li>
  *      <li>Флаги, отображающие режимы работы утилиты.</li>
  *      <li>Названия выходных файлов.</li>
  *      <li>Рабочая директория, откуда была запущена утилита.</li>
@@ -23,37 +25,155 @@ import java.util.regex.Pattern;
  * в случае их отсутствия. Если произошла ошибка при обработке входных параметров, пустые директории и файлы
  * не будут созданы. Проверка возможности создания директорий и файлов производится при
  * помощи {@link FileSystemManager}.
+ *
+ * <p> Операнды передаются в конфигурацию в порядке передачи без перечисления. Существование входных файлов
+ * проверяется при запуске {@link FilterJob}, а директории, шаблоны glob и файлы со списками путей {@code @listfile}
+ * перечисляются лениво во время обработки при помощи {@link InputPaths}.
  */
 
 public class ArgumentsHandler {
 
-    private static final ArrayList<String> dataPaths = new ArrayList<>();
-
-    private static final String dataPattern = ".+\\.txt$";
-    private static final String outputRelativePattern = "^.?(?:[/\\\\][\\da-zA-Z_\\-. ]+[/\\\\]?)+$";
-    private static final String outputFullPattern = "^[a-zA-Z]:(?:[/\\\\][\\da-zA-Z_\\-. ]+[/\\\\]?)+$";
-    private static final String prefixPattern = "^[^\\\\/:*?\"<>|]+$";
-
-    private static String baseIntegersName = "integers.txt";
-    private static String baseFloatsName = "floats.txt";
-    private static String baseStringsName = "strings.txt";
-
-    private static final String workDir = System.getProperty("user.dir");
-
-    private static String pathIntegers = null;
-    private static String pathFloats = null;
-    private static String pathStrings = null;
+    private static final Pattern outputRelativePattern =
+            Pattern.compile("^.?(?:[/\\\\][\\da-zA-Z_\\-. ]+[/\\\\]?)+$");
+    private static final Pattern outputFullPattern =
+            Pattern.compile("^[a-zA-Z]:(?:[/\\\\][\\da-zA-Z_\\-. ]+[/\\\\]?)+$");
+    private static final Pattern prefixPattern = Pattern.compile("^[^\\\\/:*?\"<>|]+$");
+    private static final Pattern countPattern = Pattern.compile("^[1-9]\\d{0,5}$");
+
+    private static final String help = """
+            Usage:
+                app.jar [-o <path>] [-p <prefix>] [-a] [-s | -f [-g]] [-j <threads>] [-q <depth>] [-t <size_mb>] [-v <limit>] [-m] [-z] [-w] [-r] [-e <metrics_path>] [-y <policy>] [-c <type>] [-d <charset>] [-x <policy>] [-k <journal>] [-n] [-u] [-b <size_mb>] [relative_path]data1.txt [[relative_path]data2.txt ...]
+                app.jar --daemon <socket>
+                app.jar --client <socket> [options] [relative_path]data1.txt [[relative_path]data2.txt ...]
+            
+            Description:
+                Filters input files based on data type into integer, real, and string types.
+                The filtering results are saved as integers.txt, floats.txt, and strings.txt, respectively.
+                Inputs ending in .txt.gz are decompressed on the fly. The input - reads the standard input.
+                An input can also be a directory (all .txt and .txt.gz files in it, recursively), a quoted glob pattern
+                such as "data/**/*.txt", or @listfile with one input path per line. These are enumerated
+                lazily while the files are processed.
+            
+            Options:
+                --help                         Output help on using the utility.
+                -o, --output <path>            Specifies the output path for the utility's result. The passed path can be absolute or relative.
+                -p, --prefix <prefix>          Specifies a prefix for the name of the output files.
+                -a, --append                   Sets the mode for adding to existing files. If the mode is not specified, existing files will be overwritten.
+                -s                             Sets the mode for displaying brief statistics in the console.
+                -f                             Sets the mode for displaying complete statistics to the console.
+                -g, --histogram                Adds log-bucket histograms to the complete statistics. Requires -f.
+                -j, --jobs <threads>           Sets the number of threads used to process input files in parallel. The output is the same as in sequential mode.
+                -q, --queue-depth <depth>      Sets the maximum number of input files processed or awaiting merge at once. Defaults to twice the number of threads.
+                -t, --split-threshold <size_mb> Sets the file size in megabytes from which a single file is split on line boundaries and processed in parallel. Defaults to 64.
+                -v, --virtual <limit>          Sets the mode for reading and filtering input files on virtual threads, at most <limit> files at once. Suited for many small files. Cannot be used with -j.
+                -m, --mmap                     Sets the mode for reading input files through memory mapping. Numeric lines are parsed directly from the mapped bytes.
+                -z, --compress                 Sets the mode for writing gzip-compressed output files: integers.txt.gz, floats.txt.gz and strings.txt.gz.
+                -w, --stream                   Sets the mode for writing filtered data directly to the output files without keeping it in memory.
+                -r, --metrics                  Sets the mode for displaying per-stage and per-file timing and throughput metrics in the console.
+                -e, --metrics-file <path>      Saves the metrics to a file: JSON if the name ends with .json, otherwise Prometheus text format.
+                -y, --fsync <policy>           Sets when the output files are forced to disk: none (default), close or block.
+                -c, --stdout <type>            Writes integers, floats or strings to the standard output instead of the output files. With all, every value is written in input order prefixed with its type and a tab, and files are processed sequentially without -j, -v or -t splitting. Cannot be used with -a or -z.
+                -d, --encoding <charset>       Sets the encoding of the input files, for example UTF-8 (default), windows-1251 or UTF-16.
+                -x, --malformed <policy>       Sets how byte sequences that are invalid in the input encoding are handled: replace them with U+FFFD (default), skip the line or fail.
+                -k, --checkpoint <journal>     Records a checkpoint after each input file. If the journal exists, the outputs are truncated to the last checkpoint and processing resumes from the first unfinished file. Implies -w. Cannot be used with -c, -z or -.
+                -n, --sort                     Sorts integers.txt and floats.txt in ascending order. Data that does not fit in memory is sorted on disk. With -a, the new values are merged into the existing sorted file.
+                -u, --unique                   Sorts strings.txt and removes duplicate lines. With -n, duplicates are removed from the numbers as well. The -s and -f statistics still describe all filtered values, before duplicates are removed. Cannot be used with -c or -k.
+                -b, --sort-memory <size_mb>    Sets the memory in megabytes shared by the sort buffers of -n and -u. Defaults to a quarter of the maximum heap size.
+                --daemon <socket>              Starts a daemon that listens on the Unix domain socket and runs the requests of --client concurrently, without starting a JVM for each run.
+                --client <socket>              Passes the remaining arguments and the working directory to the daemon listening on the socket and prints its output. Must be the first option. The input - cannot be used.
+            
+            Examples:
+                app.jar -s -a -p sample- in1.txt
+                app.jar -o ./some/path -s -a in1.txt in2.txt in3.txt in4.txt
+                app.jar -o C:/Users/User/some/path -p new_ -f -a data1.txt data2.txt
+                app.jar in1.txt in2.txt in3.txt
+                app.jar -j 8 -s in1.txt in2.txt in3.txt in4.txt
+                app.jar -v 256 -s ./inputs "logs/**/*.txt" @more_inputs.lst
+                app.jar -z -s -o ./archive day1.txt.gz day2.txt.gz
+                zcat logs.txt.gz | app.jar -c integers - | sort -n
+                app.jar -k ./run.journal -a -s ./inputs
+                app.jar -n -u -a -o ./sorted in1.txt in2.txt
+                app.jar --daemon /tmp/filter.sock & app.jar --client /tmp/filter.sock -s in1.txt
+            """;
+
+    private String baseIntegersName = "integers.txt";
+    private String baseFloatsName = "floats.txt";
+    private String baseStringsName = "strings.txt";
+
+    private final String workDir;
+    private final boolean stdinAvailable;
+
+    private String pathIntegers = null;
+    private String pathFloats = null;
+    private String pathStrings = null;
+
+    private boolean outputRelativeFlag = false;
+    private boolean outputFullFlag = false;
+    private String outputPath = null;
+
+    private boolean prefixFlag = false;
+
+    private boolean appendFlag = false;
+
+    private boolean simpleStatsFlag = false;
+    private boolean fullStatsFlag = false;
+
+    private boolean histogramFlag = false;
+
+    private boolean jobsFlag = false;
+    private int threads = 1;
+
+    private boolean queueDepthFlag = false;
+    private int queueDepth = 0;
+
+    private boolean mappedFlag = false;
+
+    private boolean compressFlag = false;
+
+    private boolean virtualFlag = false;
+    private int virtualLimit = 0;
+
+    private boolean streamFlag = false;
+
+    private boolean metricsFlag = false;
+    private String metricsPath = null;
+
+    private ChannelWriter.FsyncPolicy fsyncPolicy = null;
+
+    private StdoutWriter.Selection stdoutSelection = null;
+
+    private String checkpointPath = null;
+
+    private boolean sortFlag = false;
+    private boolean uniqueFlag = false;
+
+    private Charset inputCharset = null;
+    private InputEncoding.MalformedPolicy malformedPolicy = null;
+    private InputEncoding inputEncoding = InputEncoding.DEFAULT;
+
+    private boolean stdinFlag = false;
+
+    private boolean helpFlag = false;
+
+    private FilterConfig config = null;
 
-    private static boolean outputRelativeFlag = false;
-    private static boolean outputFullFlag = false;
-    private static String outputPath = null;
+    private boolean sortMemoryFlag = false;
+    private long sortMemory = 0;
 
-    private static boolean prefixFlag = false;
+    private boolean splitThresholdFlag = false;
+    private long splitThreshold = 64L * 1024 * 1024;
 
-    private static boolean appendFlag = false;
+    /**
+     * Создаёт обработчик для разбора одного набора аргументов.
+     *
+     * @param workDir Рабочая директория, относительно которой разрешаются пути из аргументов.
+     * @param stdinAvailable {@code true}, если входные данные можно читать из стандартного ввода процесса.
+     */
 
-    private static boolean simpleStatsFlag = false;
-    private static boolean fullStatsFlag = false;
+    public ArgumentsHandler(String workDir, boolean stdinAvailable) {
+        this.workDir = workDir;
+        this.stdinAvailable = stdinAvailable;
+    }
 
     /**
      * Метод, который обрабатывает аргументы {@code args} при запуске утилиты из консоли.
@@ -63,7 +183,8 @@ public class ArgumentsHandler {
      *
      * <p> Допустимые опции:
      * <ul>
-     *    <li>{@code --help} выводит в консоль опции и их описание.</li>
+     *    <li>{@code --help} прекращает разбор аргументов, после чего вызывающая сторона выводит справку
+     *    {@link #getHelp()} с опциями и их описанием.</li>
      *    <li>{@code -o} задает путь для файлов выходных данных, принимает аргумент, следующий
      *    после флага опции.</li>
      *    <li>{@code -p} задает префикс к базовому названию файлов выходных данных, принимает
@@ -71,11 +192,50 @@ public class ArgumentsHandler {
      *    <li>{@code -a} задает режим добавления в существующие файлы.</li>
      *    <li>{@code -s} задает режим вывода краткой статистики.</li>
      *    <li>{@code -f} задает режим вывода полной статистики.</li>
+     *    <li>{@code -g} добавляет к полной статистике гистограммы с логарифмическими корзинами. Используется только
+     *    вместе с {@code -f}.</li>
+     *    <li>{@code -j} задает количество потоков для параллельной обработки входных файлов, принимает аргумент,
+     *    следующий после флага опции.</li>
+     *    <li>{@code -q} задает глубину очереди параллельной обработки, принимает аргумент, следующий после
+     *    флага опции. По умолчанию равна удвоенному количеству потоков.</li>
+     *    <li>{@code -t} задает размер файла в мегабайтах, начиная с которого файл обрабатывается параллельно по
+     *    частям, принимает аргумент, следующий после флага опции. По умолчанию равен 64 МБ.</li>
+     *    <li>{@code -v} задает режим обработки входных файлов в виртуальных потоках, принимает аргумент, следующий
+     *    после флага опции, - максимальное количество одновременно обрабатываемых файлов. Не используется вместе с
+     *    {@code -j}.</li>
+     *    <li>{@code -m} задает режим чтения входных файлов через отображение в память.</li>
+     *    <li>{@code -z} задает режим сжатия выходных файлов gzip, к названиям выходных файлов добавляется
+     *    {@code .gz}.</li>
+     *    <li>{@code -w} задает режим потоковой записи, в котором отфильтрованные данные сразу записываются в выходные
+     *    файлы без накопления в памяти.</li>
+     *    <li>{@code -r} задает режим вывода метрик выполнения по этапам и входным файлам.</li>
+     *    <li>{@code -e} задает путь файла для сохранения метрик выполнения, принимает аргумент, следующий после флага
+     *    опции. Если имя файла оканчивается на {@code .json}, метрики сохраняются в формате JSON, иначе в текстовом
+     *    формате Prometheus.</li>
+     *    <li>{@code -y} задает политику сброса выходных файлов на диск: {@code none}, {@code close} или
+     *    {@code block}, принимает аргумент, следующий после флага опции. По умолчанию {@code none}.</li>
+     *    <li>{@code -c} задает режим записи в стандартный вывод вместо выходных файлов: {@code integers},
+     *    {@code floats}, {@code strings} или {@code all}, принимает аргумент, следующий после флага опции.</li>
+     *    <li>{@code -d} задает кодировку входных данных, принимает аргумент, следующий после флага опции. По умолчанию
+     *    {@code UTF-8}.</li>
+     *    <li>{@code -x} задает политику обработки некорректных последовательностей байт во входных данных:
+     *    {@code replace}, {@code skip} или {@code fail}, принимает аргумент, следующий после флага опции. По умолчанию
+     *    {@code replace}.</li>
+     *    <li>{@code -k} задает путь журнала контрольных точек, принимает аргумент, следующий после флага опции. Если
+     *    журнал существует, обработка продолжается с последней контрольной точки. Включает режим потоковой записи и
+     *    не используется вместе с {@code -c} и {@code -z}.</li>
+     *    <li>{@code -n} задает режим сортировки целых и вещественных чисел по возрастанию.</li>
+     *    <li>{@code -u} задает режим сортировки строк с удалением повторов, вместе с {@code -n} повторы удаляются и из
+     *    чисел. Статистика рассчитывается по всем отфильтрованным значениям до удаления повторов. Режимы {@code -n} и
+     *    {@code -u} не используются вместе с {@code -c} и {@code -k}.</li>
+     *    <li>{@code -b} задает объём памяти в мегабайтах для буферов сортировки в режимах {@code -n} и {@code -u},
+     *    принимает аргумент, следующий после флага опции. По умолчанию четверть максимального размера кучи.</li>
      * </ul>
      *
-     * <p> После опций идут операнды - названия файлов с входными данными.
+     * <p> После опций идут операнды - названия файлов с входными данными, директории, шаблоны glob или файлы со
+     * списками путей {@code @listfile}.
      *
-     * <p> Результаты обработки сохраняются в статических полях, к которым можно обратиться при помощи геттеров.
+     * <p> Результат обработки - конфигурация запуска, к которой можно обратиться при помощи {@link #getConfig()}.
      *
      * <p> Обработка исключений передаётся на вышестоящий уровень абстракции.
      *
@@ -83,34 +243,14 @@ public class ArgumentsHandler {
      * @throws IllegalArgumentException Если были переданы некорректные аргументы.
      */
 
-    public static void parseArgs(String[] args) {
+    public void parseArgs(String[] args) {
+        ArrayList<String> operands = new ArrayList<>();
+
         for (int i = 0; i < args.length; i++) {
             switch (args[i]) {
                 case "--help":
-                    String helpStr = """                          
-                            Usage:
-                                app.jar [-o <path>] [-p <prefix>] [-a] [-s | -f] [relative_path]data1.txt [[relative_path]data2.txt ...]
-                            
-                            Description:
-                                Filters input files based on data type into integer, real, and string types.
-                                The filtering results are saved as integers.txt, floats.txt, and strings.txt, respectively.
-                            
-                            Options:
-                                --help                         Output help on using the utility.
-                                -o, --output <path>            Specifies the output path for the utility's result. The passed path can be absolute or relative.
-                                -p, --prefix <prefix>          Specifies a prefix for the name of the output files.
-                                -a, --append                   Sets the mode for adding to existing files. If the mode is not specified, existing files will be overwritten.
-                                -s                             Sets the mode for displaying brief statistics in the console.
-                                -f                             Sets the mode for displaying complete statistics to the console.
-                            
-                            Examples:
-                                app.jar -s -a -p sample- in1.txt
-                                app.jar -o ./some/path -s -a in1.txt in2.txt in3.txt in4.txt
-                                app.jar -o C:/Users/User/some/path -p new_ -f -a data1.txt data2.txt
-                                app.jar in1.txt in2.txt in3.txt
-                            """;
-                    System.out.println(helpStr);
-                    System.exit(0);
+                    helpFlag = true;
+                    return;
 
                 case "-o":
                 case "--output":
@@ -120,7 +260,7 @@ public class ArgumentsHandler {
                     }
 
                     i++;
-                    if (Pattern.matches(outputFullPattern, args[i])) {
+                    if (outputFullPattern.matcher(args[i]).matches()) {
                         try {
                             Path pathToCheck = Paths.get(args[i]);
 
@@ -133,7 +273,7 @@ public class ArgumentsHandler {
                             throw new RuntimeException("Unable to create a directory at the specified path. " +
                                     "Use --help for usage information.", e);
                         }
-                    } else if (Pattern.matches(outputRelativePattern, args[i])) {
+                    } else if (outputRelativePattern.matcher(args[i]).matches()) {
                         try {
                             args[i] = args[i].replaceAll("^./", "");
                             Path pathToCheck = Paths.get(workDir, args[i]);
@@ -160,7 +300,7 @@ public class ArgumentsHandler {
                                 "Use --help for usage information.");
                     }
                     i++;
-                    if (Pattern.matches(prefixPattern, args[i])) {
+                    if (prefixPattern.matcher(args[i]).matches()) {
                         prefixFlag = true;
                         baseIntegersName = args[i].concat(baseIntegersName);
                         baseFloatsName = args[i].concat(baseFloatsName);
@@ -197,37 +337,338 @@ public class ArgumentsHandler {
                     fullStatsFlag = true;
                     continue;
 
-                default:
-                    if (Pattern.matches(dataPattern, args[i])) {
-                        Path filePath = Paths.get(workDir, args[i]);
-                        if (Files.exists(filePath)) {
-                            dataPaths.add(filePath.toString());
-                        } else {
-                            System.err.printf("The passed input file \"%s\" does not exist.\n", args[i]);
+                case "-j":
+                case "--jobs":
+                    if (jobsFlag) {
+                        throw new IllegalArgumentException("The -j option was passed twice. " +
+                                "Use --help for usage information.");
+                    }
+                    i++;
+                    if (countPattern.matcher(args[i]).matches()) {
+                        jobsFlag = true;
+                        threads = Integer.parseInt(args[i]);
+                    } else {
+                        throw new IllegalArgumentException("The number of threads must be a positive integer. " +
+                                "Use --help for usage information.");
+                    }
+                    continue;
+
+                case "-q":
+                case "--queue-depth":
+                    if (queueDepthFlag) {
+                        throw new IllegalArgumentException("The -q option was passed twice. " +
+                                "Use --help for usage information.");
+                    }
+                    i++;
+                    if (countPattern.matcher(args[i]).matches()) {
+                        queueDepthFlag = true;
+                        queueDepth = Integer.parseInt(args[i]);
+                    } else {
+                        throw new IllegalArgumentException("The queue depth must be a positive integer. " +
+                                "Use --help for usage information.");
+                    }
+                    continue;
+
+                case "-t":
+                case "--split-threshold":
+                    if (splitThresholdFlag) {
+                        throw new IllegalArgumentException("The -t option was passed twice. " +
+                                "Use --help for usage information.");
+                    }
+                    i++;
+                    if (countPattern.matcher(args[i]).matches()) {
+                        splitThresholdFlag = true;
+                        splitThreshold = Long.parseLong(args[i]) * 1024 * 1024;
+                    } else {
+                        throw new IllegalArgumentException("The split threshold must be a positive integer. " +
+                                "Use --help for usage information.");
+                    }
+                    continue;
+
+                case "-v":
+                case "--virtual":
+                    if (virtualFlag) {
+                        throw new IllegalArgumentException("The -v option was passed twice. " +
+                                "Use --help for usage information.");
+                    }
+                    i++;
+                    if (countPattern.matcher(args[i]).matches()) {
+                        virtualFlag = true;
+                        virtualLimit = Integer.parseInt(args[i]);
+                    } else {
+                        throw new IllegalArgumentException("The virtual thread limit must be a positive integer. " +
+                                "Use --help for usage information.");
+                    }
+                    continue;
+
+                case "-m":
+                case "--mmap":
+                    if (mappedFlag) {
+                        throw new IllegalArgumentException("The -m option was passed twice. " +
+                                "Use --help for usage information.");
+                    }
+                    mappedFlag = true;
+                    continue;
+
+                case "-g":
+                case "--histogram":
+                    if (histogramFlag) {
+                        throw new IllegalArgumentException("The -g option was passed twice. " +
+                                "Use --help for usage information.");
+                    }
+                    histogramFlag = true;
+                    continue;
+
+                case "-z":
+                case "--compress":
+                    if (compressFlag) {
+                        throw new IllegalArgumentException("The -z option was passed twice. " +
+                                "Use --help for usage information.");
+                    }
+                    compressFlag = true;
+                    continue;
+
+                case "-w":
+                case "--stream":
+                    if (streamFlag) {
+                        throw new IllegalArgumentException("The -w option was passed twice. " +
+                                "Use --help for usage information.");
+                    }
+                    streamFlag = true;
+                    continue;
+
+                case "-r":
+                case "--metrics":
+                    if (metricsFlag) {
+                        throw new IllegalArgumentException("The -r option was passed twice. " +
+                                "Use --help for usage information.");
+                    }
+                    metricsFlag = true;
+                    continue;
+
+                case "-e":
+                case "--metrics-file":
+                    if (metricsPath != null) {
+                        throw new IllegalArgumentException("The -e option was passed twice. " +
+                                "Use --help for usage information.");
+                    }
+                    i++;
+                    try {
+                        Path pathToCheck = Paths.get(args[i]);
+                        if (!pathToCheck.isAbsolute()) {
+                            pathToCheck = Paths.get(workDir, args[i]);
+                        }
+                        if (!Files.exists(pathToCheck)) {
+                            FileSystemManager.checkFileCreatable(pathToCheck);
+                        }
+                        metricsPath = pathToCheck.toString();
+                    } catch (IOException e) {
+                        throw new RuntimeException("Unable to create a metrics file at the specified path. " +
+                                "Use --help for usage information.", e);
+                    }
+                    continue;
+
+                case "-y":
+                case "--fsync":
+                    if (fsyncPolicy != null) {
+                        throw new IllegalArgumentException("The -y option was passed twice. " +
+                                "Use --help for usage information.");
+                    }
+                    i++;
+                    fsyncPolicy = ChannelWriter.parseFsyncPolicy(args[i]);
+                    if (fsyncPolicy == null) {
+                        throw new IllegalArgumentException("The fsync policy must be none, close or block. " +
+                                "Use --help for usage information.");
+                    }
+                    continue;
+
+                case "-c":
+                case "--stdout":
+                    if (stdoutSelection != null) {
+                        throw new IllegalArgumentException("The -c option was passed twice. " +
+                                "Use --help for usage information.");
+                    }
+                    i++;
+                    stdoutSelection = StdoutWriter.parseSelection(args[i]);
+                    if (stdoutSelection == null) {
+                        throw new IllegalArgumentException("The stdout type must be integers, floats, strings or all. " +
+                                "Use --help for usage information.");
+                    }
+                    continue;
+
+                case "-d":
+                case "--encoding":
+                    if (inputCharset != null) {
+                        throw new IllegalArgumentException("The -d option was passed twice. " +
+                                "Use --help for usage information.");
+                    }
+                    i++;
+                    try {
+                        inputCharset = Charset.forName(args[i]);
+                    } catch (IllegalArgumentException e) {
+                        throw new IllegalArgumentException(String.format("The encoding \"%s\" is not supported. " +
+                                "Use --help for usage information.", args[i]), e);
+                    }
+                    continue;
+
+                case "-x":
+                case "--malformed":
+                    if (malformedPolicy != null) {
+                        throw new IllegalArgumentException("The -x option was passed twice. " +
+                                "Use --help for usage information.");
+                    }
+                    i++;
+                    malformedPolicy = InputEncoding.parseMalformedPolicy(args[i]);
+                    if (malformedPolicy == null) {
+                        throw new IllegalArgumentException("The malformed input policy must be replace, skip or fail. " +
+                                "Use --help for usage information.");
+                    }
+                    continue;
+
+                case "-k":
+                case "--checkpoint":
+                    if (checkpointPath != null) {
+                        throw new IllegalArgumentException("The -k option was passed twice. " +
+                                "Use --help for usage information.");
+                    }
+                    i++;
+                    try {
+                        Path pathToCheck = Paths.get(args[i]);
+                        if (!pathToCheck.isAbsolute()) {
+                            pathToCheck = Paths.get(workDir, args[i]);
+                        }
+                        if (!Files.exists(pathToCheck)) {
+                            FileSystemManager.checkFileCreatable(pathToCheck);
                         }
+                        checkpointPath = pathToCheck.toString();
+                    } catch (IOException e) {
+                        throw new RuntimeException("Unable to create a checkpoint journal at the specified path. " +
+                                "Use --help for usage information.", e);
+                    }
+                    continue;
+
+                case "-n":
+                case "--sort":
+                    if (sortFlag) {
+                        throw new IllegalArgumentException("The -n option was passed twice. " +
+                                "Use --help for usage information.");
+                    }
+                    sortFlag = true;
+                    continue;
+
+                case "-u":
+                case "--unique":
+                    if (uniqueFlag) {
+                        throw new IllegalArgumentException("The -u option was passed twice. " +
+                                "Use --help for usage information.");
+                    }
+                    uniqueFlag = true;
+                    continue;
+
+                case "-b":
+                case "--sort-memory":
+                    if (sortMemoryFlag) {
+                        throw new IllegalArgumentException("The -b option was passed twice. " +
+                                "Use --help for usage information.");
+                    }
+                    i++;
+                    if (countPattern.matcher(args[i]).matches()) {
+                        sortMemoryFlag = true;
+                        sortMemory = Long.parseLong(args[i]) * 1024 * 1024;
                     } else {
-                        System.err.printf("Invalid operand passed \"%s\".\n", args[i]);
+                        throw new IllegalArgumentException("The sort memory must be a positive integer. " +
+                                "Use --help for usage information.");
                     }
+                    continue;
+
+                default:
+                    operands.add(args[i]);
             }
         }
 
+        if (jobsFlag && virtualFlag) {
+            throw new IllegalArgumentException("The -v option cannot be used with the -j option. " +
+                    "Use --help for usage information.");
+        }
+
+        if (stdoutSelection != null && (appendFlag || compressFlag)) {
+            throw new IllegalArgumentException("The -c option cannot be used with the -a or -z options. " +
+                    "Use --help for usage information.");
+        }
+
+        for (String operand : operands) {
+            if (FileProcessor.isStandardInput(operand)) {
+                if (!stdinAvailable) {
+                    throw new IllegalArgumentException("The standard input - cannot be read by the daemon. " +
+                            "Use --help for usage information.");
+                }
+                if (stdinFlag) {
+                    throw new IllegalArgumentException("The standard input - was passed twice. " +
+                            "Use --help for usage information.");
+                }
+                stdinFlag = true;
+            }
+        }
+
+        if (checkpointPath != null && (stdoutSelection != null || compressFlag || stdinFlag)) {
+            throw new IllegalArgumentException("The -k option cannot be used with the -c or -z options " +
+                    "or with the standard input. Use --help for usage information.");
+        }
+
+        if (checkpointPath != null) {
+            streamFlag = true;
+        }
+
+        if ((sortFlag || uniqueFlag) && (stdoutSelection != null || checkpointPath != null)) {
+            throw new IllegalArgumentException("The -n and -u options cannot be used with the -c or -k options. " +
+                    "Use --help for usage information.");
+        }
+
+        if (sortMemoryFlag && !(sortFlag || uniqueFlag)) {
+            throw new IllegalArgumentException("The -b option requires the -n or -u option. " +
+                    "Use --help for usage information.");
+        }
+
         if (!(outputFullFlag || outputRelativeFlag)) {
             outputPath = workDir;
         }
 
+        if (histogramFlag && !fullStatsFlag) {
+            throw new IllegalArgumentException("The -g option requires the -f option. " +
+                    "Use --help for usage information.");
+        }
+
+        if (fsyncPolicy == null) {
+            fsyncPolicy = ChannelWriter.FsyncPolicy.NONE;
+        }
+
+        if (inputCharset != null || malformedPolicy != null) {
+            inputEncoding = new InputEncoding(
+                    inputCharset != null ? inputCharset : InputEncoding.DEFAULT.getCharset(),
+                    malformedPolicy != null ? malformedPolicy : InputEncoding.DEFAULT.getMalformedPolicy());
+        }
+
+        if (compressFlag) {
+            baseIntegersName = baseIntegersName.concat(".gz");
+            baseFloatsName = baseFloatsName.concat(".gz");
+            baseStringsName = baseStringsName.concat(".gz");
+        }
+
         try {
             Path pathToCheckIntegers = Paths.get(outputPath, baseIntegersName);
             Path pathToCheckFloats = Paths.get(outputPath, baseFloatsName);
             Path pathToCheckStrings = Paths.get(outputPath, baseStringsName);
 
-            if (!Files.exists(pathToCheckIntegers)) {
-                FileSystemManager.checkFileCreatable(pathToCheckIntegers);
-            }
-            if (!Files.exists(pathToCheckFloats)) {
-                FileSystemManager.checkFileCreatable(pathToCheckFloats);
-            }
-            if (!Files.exists(pathToCheckStrings)) {
-                FileSystemManager.checkFileCreatable(pathToCheckStrings);
+            if (stdoutSelection == null) {
+                if (!Files.exists(pathToCheckIntegers)) {
+                    FileSystemManager.checkFileCreatable(pathToCheckIntegers);
+                }
+                if (!Files.exists(pathToCheckFloats)) {
+                    FileSystemManager.checkFileCreatable(pathToCheckFloats);
+                }
+                if (!Files.exists(pathToCheckStrings)) {
+                    FileSystemManager.checkFileCreatable(pathToCheckStrings);
+                }
             }
 
             pathIntegers = pathToCheckIntegers.toString();
@@ -238,37 +679,58 @@ public class ArgumentsHandler {
                     "Use --help for usage information.", e);
         }
 
-        if (dataPaths.isEmpty()) {
+        if (operands.isEmpty()) {
             throw new IllegalArgumentException("The input data has not been transmitted. " +
                     "Use --help for usage information.");
         }
-    }
 
-    public static String getPathIntegers() {
-        return pathIntegers;
+        config = FilterConfig.builder(workDir)
+                .inputs(operands)
+                .outputPaths(pathIntegers, pathFloats, pathStrings)
+                .append(appendFlag)
+                .simpleStats(simpleStatsFlag)
+                .fullStats(fullStatsFlag)
+                .histogram(histogramFlag)
+                .threads(threads)
+                .queueDepth(queueDepth)
+                .splitThreshold(splitThreshold)
+                .splitParallelism(jobsFlag ? threads : 0)
+                .mapped(mappedFlag)
+                .virtualThreads(virtualFlag ? virtualLimit : 0)
+                .stream(streamFlag)
+                .metrics(metricsFlag)
+                .metricsPath(metricsPath)
+                .fsyncPolicy(fsyncPolicy)
+                .stdout(stdoutSelection)
+                .encoding(inputEncoding)
+                .checkpoint(checkpointPath)
+                .sort(sortFlag)
+                .unique(uniqueFlag)
+                .sortMemory(sortMemory)
+                .build();
     }
 
-    public static String getPathFloats() {
-        return pathFloats;
-    }
+    /**
+     * @return Текст справки, который выводится при передаче опции {@code --help}.
+     */
 
-    public static String getPathStrings() {
-        return pathStrings;
+    public static String getHelp() {
+        return help;
     }
 
-    public static ArrayList<String> getDataPaths() {
-        return dataPaths;
-    }
+    /**
+     * @return {@code true}, если была передана опция {@code --help}. Остальные аргументы в этом случае не разбираются.
+     */
 
-    public static boolean isSimpleStatsFlag() {
-        return simpleStatsFlag;
+    public boolean isHelpFlag() {
+        return helpFlag;
     }
 
-    public static boolean isFullStatsFlag() {
-        return fullStatsFlag;
-    }
+    /**
+     * @return Конфигурация запуска {@link FilterConfig}, созданная по разобранным аргументам.
+     */
 
-    public static boolean isAppendFlag() {
-        return appendFlag;
+    public FilterConfig getConfig() {
+        return config;
     }
 }
\ No newline at end of file
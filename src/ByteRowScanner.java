@@ -0,0 +1,227 @@
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Класс для построчной фильтрации входных данных прямо по байтам, без декодирования в символы.
+ *
+ * <p> Границы строк ищутся по байту {@code \n}, а числовые строки классифицируются и разбираются
+ * {@link RowClassifier} прямо по байтам буфера. Декодирование в {@code String} выполняется только для строк,
+ * определённых как строковый тип данных, при помощи {@link InputEncoding.RowDecoder}, поэтому для числовых строк
+ * не создаются ни массивы символов, ни объекты строк. Такая обработка допустима только для байт-совместимых
+ * кодировок, см. {@link InputEncoding#isByteCompatible()}.
+ *
+ * <p> Строки разделяются символом {@code \n}, завершающий символ {@code \r} относится к разделителю, поэтому
+ * результат для разделителей {@code \n} и {@code \r\n} совпадает с {@link FileProcessor#filterReader}. Пустые строки
+ * накапливаются в счётчике и передаются получателю только перед следующей непустой строкой. Строки с некорректными
+ * последовательностями байт, пропущенные по политике {@link InputEncoding.MalformedPolicy#SKIP}, не передаются
+ * получателю и не считаются пустыми.
+ *
+ * <p> Используется для файлов, отображённых в память, в {@link MappedFileProcessor} и для потоков байт
+ * в {@link FileProcessor} и {@link ChunkedProcessor}.
+ *
+ * <p> Класс не является потокобезопасным.
+ */
+
+public class ByteRowScanner {
+
+    private final RowSink sink;
+
+    private final RowClassifier classifier = new RowClassifier();
+    private final ByteRow row = new ByteRow();
+    private final InputEncoding.RowDecoder decoder;
+    private byte[] decodeBuffer = new byte[256];
+
+    private int pendingEmptyRows = 0;
+
+    /**
+     * @param sink Получатель отфильтрованных строк {@link RowSink}.
+     * @param encoding Байт-совместимая кодировка входных данных {@link InputEncoding}.
+     */
+
+    public ByteRowScanner(RowSink sink, InputEncoding encoding) {
+        this.sink = sink;
+        this.decoder = encoding.newDecoder();
+    }
+
+    /**
+     * Фильтрует поток байт, читая его в буфер заданного размера.
+     *
+     * <p> Строки обрабатываются после каждого чтения, поэтому данные из канала или стандартного ввода передаются
+     * получателю по мере поступления. Незавершённая строка в конце буфера переносится в его начало. Если буфер не
+     * содержит ни одного символа {@code \n}, его размер удваивается.
+     *
+     * @param in Поток байт входных данных.
+     * @param bufferSize Начальный размер буфера чтения.
+     * @param encoding Байт-совместимая кодировка входных данных {@link InputEncoding}.
+     * @param sink Получатель отфильтрованных строк {@link RowSink}.
+     * @return Количество пустых строк в конце данных, не переданных получателю.
+     * @throws IOException Если произошла ошибка при чтении или строка содержит некорректные последовательности байт
+     * при политике {@link InputEncoding.MalformedPolicy#FAIL}.
+     */
+
+    public static int filterStream(
+            InputStream in,
+            int bufferSize,
+            InputEncoding encoding,
+            RowSink sink
+    ) throws IOException {
+        ByteRowScanner scanner = new ByteRowScanner(sink, encoding);
+        byte[] bytes = new byte[bufferSize];
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        int filled = 0;
+
+        while (true) {
+            if (filled == bytes.length) {
+                bytes = Arrays.copyOf(bytes, bytes.length * 2);
+                buffer = ByteBuffer.wrap(bytes);
+            }
+            int read = in.read(bytes, filled, bytes.length - filled);
+            boolean finished = read < 0;
+            if (!finished) {
+                filled += read;
+            }
+
+            int consumed = scanner.scan(buffer, filled, finished);
+            if (finished) {
+                return scanner.pendingEmptyRows;
+            }
+            System.arraycopy(bytes, consumed, bytes, 0, filled - consumed);
+            filled -= consumed;
+        }
+    }
+
+    /**
+     * Обрабатывает все завершённые строки буфера.
+     *
+     * @param buffer Буфер с байтами входных данных, начинающийся с начала строки.
+     * @param limit Количество байт в буфере.
+     * @param lastWindow {@code true}, если буфер заканчивается концом данных и последняя строка завершена.
+     * @return Количество обработанных байт буфера.
+     * @throws CharacterCodingException Если строка содержит некорректные последовательности байт при политике
+     * {@link InputEncoding.MalformedPolicy#FAIL}.
+     */
+
+    public int scan(ByteBuffer buffer, int limit, boolean lastWindow) throws CharacterCodingException {
+        int rowStart = 0;
+
+        for (int i = 0; i < limit; i++) {
+            if (buffer.get(i) == '\n') {
+                accept(buffer, rowStart, i);
+                rowStart = i + 1;
+            }
+        }
+        if (lastWindow && rowStart < limit) {
+            accept(buffer, rowStart, limit);
+            rowStart = limit;
+        }
+        return rowStart;
+    }
+
+    /**
+     * @return Количество пустых строк в конце обработанных данных, не переданных получателю.
+     */
+
+    public int getPendingEmptyRows() {
+        return pendingEmptyRows;
+    }
+
+    private void accept(ByteBuffer buffer, int from, int to) throws CharacterCodingException {
+        if (to == from || (to == from + 1 && buffer.get(from) == '\r')) {
+            pendingEmptyRows++;
+            return;
+        }
+
+        row.reset(buffer, from, to);
+        switch (classifier.classify(row)) {
+            case INTEGER -> {
+                addPendingEmptyRows();
+                sink.addInteger(classifier.getIntegerValue());
+            }
+            case FLOAT -> {
+                addPendingEmptyRows();
+                sink.addFloat(classifier.getFloatValue());
+            }
+            case STRING -> {
+                String value = decodeTrimmed(buffer, from, to);
+                if (value != null) {
+                    addPendingEmptyRows();
+                    sink.addString(value);
+                }
+            }
+        }
+    }
+
+    private void addPendingEmptyRows() {
+        for (; pendingEmptyRows > 0; pendingEmptyRows--) {
+            sink.addString("");
+        }
+    }
+
+    private String decodeTrimmed(ByteBuffer buffer, int from, int to) throws CharacterCodingException {
+        while (from < to && (buffer.get(from) & 0xFF) <= ' ') {
+            from++;
+        }
+        while (to > from && (buffer.get(to - 1) & 0xFF) <= ' ') {
+            to--;
+        }
+
+        int length = to - from;
+        if (buffer.hasArray()) {
+            return decoder.decode(buffer.array(), buffer.arrayOffset() + from, length);
+        }
+        if (decodeBuffer.length < length) {
+            decodeBuffer = new byte[Math.max(length, decodeBuffer.length * 2)];
+        }
+        buffer.get(from, decodeBuffer, 0, length);
+        return decoder.decode(decodeBuffer, 0, length);
+    }
+
+    /**
+     * Представление диапазона байтов в виде последовательности символов без декодирования.
+     *
+     * <p> Каждый байт отображается в символ с тем же кодом. Для символов ASCII, из которых состоят числа, это
+     * совпадает с декодированием байт-совместимой кодировки, а байты многобайтовых символов UTF-8 не являются ни
+     * цифрами, ни пробельными символами, поэтому строка с ними определяется как строковый тип данных.
+     */
+
+    private static class ByteRow implements CharSequence {
+
+        private ByteBuffer buffer;
+        private int start;
+        private int end;
+
+        void reset(ByteBuffer buffer, int start, int end) {
+            this.buffer = buffer;
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        public int length() {
+            return end - start;
+        }
+
+        @Override
+        public char charAt(int index) {
+            return (char) (buffer.get(start + index) & 0xFF);
+        }
+
+        @Override
+        public CharSequence subSequence(int from, int to) {
+            ByteRow sub = new ByteRow();
+            sub.reset(buffer, start + from, start + to);
+            return sub;
+        }
+
+        @Override
+        public String toString() {
+            byte[] bytes = new byte[length()];
+            buffer.get(start, bytes);
+            return new String(bytes, StandardCharsets.ISO_8859_1);
+        }
+    }
+}
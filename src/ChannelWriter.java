@@ -0,0 +1,464 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Класс для записи отфильтрованных данных в выходной файл большими блоками через {@link FileChannel}.
+ *
+ * <p> Значения форматируются сразу в байты переиспользуемого буфера размером {@code 1} МБ без создания
+ * промежуточных строк и без кодирования через {@link java.nio.charset.CharsetEncoder}. Заполненный буфер целиком
+ * записывается в канал, поэтому количество системных вызовов на порядки меньше, чем при записи через
+ * {@link java.io.BufferedWriter} с буфером {@code 8} КБ.
+ *
+ * <p> Форматирование:
+ * <ul>
+ *      <li>Целые числа переводятся в ASCII по цифрам вручную и совпадают с {@link Long#toString(long)}.</li>
+ *      <li>Вещественные числа совпадают с {@link Double#toString(double)}. Для чисел в диапазоне
+ *      {@code [10^-3, 10^7)}, у которых не больше {@code 15} значащих цифр, кратчайшее десятичное представление
+ *      находится без создания строки: подбирается наименьшее количество знаков после точки, при котором число
+ *      восстанавливается точным делением. Остальные числа форматируются при помощи {@link Double#toString(double)}.</li>
+ *      <li>Строки из символов ASCII копируются в буфер посимвольно, остальные кодируются кодировкой по умолчанию, как
+ *      это делает {@link java.io.FileWriter}. Строки из {@link StringArena}, уже закодированные в UTF-8, копируются
+ *      в буфер без декодирования.</li>
+ *      <li>Перевод строки совпадает с {@link System#lineSeparator()}.</li>
+ * </ul>
+ *
+ * <p> Если путь файла оканчивается на {@code .gz}, заполненный буфер сжимается gzip с наибольшей скоростью сжатия
+ * перед записью в канал. В режиме добавления в конец существующего файла дописывается новый член gzip, и файл
+ * остаётся корректным архивом.
+ *
+ * <p> Политика {@link FsyncPolicy} определяет, когда данные принудительно сбрасываются на диск.
+ *
+ * <p> Класс не является потокобезопасным.
+ */
+
+public class ChannelWriter implements Closeable {
+
+    /**
+     * Политика принудительного сброса записанных данных на диск при помощи {@link FileChannel#force(boolean)}.
+     */
+
+    public enum FsyncPolicy {
+        /**
+         * Сброс на диск остаётся на усмотрение операционной системы.
+         */
+        NONE,
+        /**
+         * Данные сбрасываются на диск один раз перед закрытием файла.
+         */
+        CLOSE,
+        /**
+         * Данные сбрасываются на диск после записи каждого блока. Для файлов {@code .gz} сжатые данные перед этим
+         * выталкиваются из gzip при помощи {@link Deflater#SYNC_FLUSH}, что немного ухудшает сжатие.
+         */
+        BLOCK
+    }
+
+    private static final int bufferSize = 1024 * 1024;
+    private static final int maxNumberLength = 32;
+
+    private static final byte[] lineSeparator = System.lineSeparator().getBytes(StandardCharsets.US_ASCII);
+
+    private static final double[] powersOfTen = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11, 1e12, 1e13, 1e14, 1e15, 1e16,
+            1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+
+    private final WritableByteChannel channel;
+    private final FileChannel fileChannel;
+    private final GZIPOutputStream compressedOut;
+    private final FsyncPolicy fsyncPolicy;
+    static final Charset charset = Charset.defaultCharset();
+    private final boolean asciiCompatible;
+    private final boolean utf8;
+
+    private final byte[] bytes = new byte[bufferSize];
+    private final ByteBuffer buffer = ByteBuffer.wrap(bytes);
+    private int position = 0;
+    private long bytesWritten = 0;
+
+    /**
+     * Открывает выходной файл для записи.
+     *
+     * <p> Если директории или файла по заданному пути не существует, они создаются при
+     * помощи {@link FileSystemManager}. Если путь оканчивается на {@code .gz}, данные сжимаются gzip.
+     *
+     * @param outputPathStr Путь для записи файла с выходными данными в формате {@code String}.
+     * @param appendFlag Режим добавления выходных данных в существующий файл в формате {@code boolean}.
+     * @param fsyncPolicy Политика сброса данных на диск {@link FsyncPolicy}.
+     * @throws IOException Если не удалось открыть файл для записи.
+     */
+
+    public ChannelWriter(String outputPathStr, boolean appendFlag, FsyncPolicy fsyncPolicy) throws IOException {
+        FileProcessor.createOutputFile(outputPathStr);
+
+        this.fileChannel = appendFlag
+                ? FileChannel.open(Paths.get(outputPathStr), StandardOpenOption.WRITE, StandardOpenOption.APPEND)
+                : FileChannel.open(Paths.get(outputPathStr),
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        this.channel = fileChannel;
+        this.fsyncPolicy = fsyncPolicy;
+        this.compressedOut = outputPathStr.endsWith(".gz")
+                ? new GZIPOutputStream(Channels.newOutputStream(channel), bufferSize,
+                fsyncPolicy == FsyncPolicy.BLOCK) {
+                    {
+                        def.setLevel(Deflater.BEST_SPEED);
+                    }
+                }
+                : null;
+        this.asciiCompatible = charset.equals(StandardCharsets.UTF_8)
+                || charset.equals(StandardCharsets.US_ASCII)
+                || charset.equals(StandardCharsets.ISO_8859_1);
+        this.utf8 = charset.equals(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Создаёт запись в уже открытый канал, например в дескриптор стандартного вывода или в соединение
+     * {@link DaemonServer}. Данные не сжимаются и не сбрасываются на диск принудительно.
+     *
+     * @param channel Открытый для записи канал {@link WritableByteChannel}.
+     */
+
+    public ChannelWriter(WritableByteChannel channel) {
+        this.channel = channel;
+        this.fileChannel = null;
+        this.fsyncPolicy = FsyncPolicy.NONE;
+        this.compressedOut = null;
+        this.asciiCompatible = charset.equals(StandardCharsets.UTF_8)
+                || charset.equals(StandardCharsets.US_ASCII)
+                || charset.equals(StandardCharsets.ISO_8859_1);
+        this.utf8 = charset.equals(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Записывает целое число.
+     *
+     * @param value Значение в формате {@code long}.
+     * @throws IOException Если произошла ошибка при записи блока.
+     */
+
+    public void writeLong(long value) throws IOException {
+        ensureCapacity(maxNumberLength);
+        position = appendLong(bytes, position, value);
+    }
+
+    /**
+     * Записывает вещественное число в том же виде, что и {@link Double#toString(double)}.
+     *
+     * @param value Значение в формате {@code double}.
+     * @throws IOException Если произошла ошибка при записи блока.
+     */
+
+    public void writeDouble(double value) throws IOException {
+        ensureCapacity(maxNumberLength);
+        int end = appendPlainDouble(bytes, position, value);
+        if (end >= 0) {
+            position = end;
+        } else {
+            writeString(Double.toString(value));
+        }
+    }
+
+    /**
+     * Записывает строку.
+     *
+     * @param value Значение в формате {@code String}.
+     * @throws IOException Если произошла ошибка при записи блока.
+     */
+
+    public void writeString(String value) throws IOException {
+        int length = value.length();
+
+        if (asciiCompatible && length <= bufferSize) {
+            ensureCapacity(length);
+            int start = position;
+            for (int i = 0; i < length; i++) {
+                char c = value.charAt(i);
+                if (c >= 0x80) {
+                    position = start;
+                    writeBytes(value.getBytes(charset));
+                    return;
+                }
+                bytes[position++] = (byte) c;
+            }
+        } else {
+            writeBytes(value.getBytes(charset));
+        }
+    }
+
+    /**
+     * Записывает строку, уже закодированную в UTF-8, например из {@link StringArena}.
+     *
+     * <p> Если кодировка по умолчанию - UTF-8 или строка состоит из символов ASCII, а кодировка совпадает с ASCII,
+     * байты копируются в буфер без декодирования. Иначе строка декодируется и кодируется кодировкой по умолчанию, как в
+     * {@link #writeString(String)}.
+     *
+     * @param value Массив байт.
+     * @param offset Позиция начала строки.
+     * @param length Длина строки в байтах.
+     * @param ascii {@code true}, если строка состоит только из символов ASCII.
+     * @throws IOException Если произошла ошибка при записи блока.
+     */
+
+    public void writeUtf8(byte[] value, int offset, int length, boolean ascii) throws IOException {
+        if (utf8 || (ascii && asciiCompatible)) {
+            writeBytes(value, offset, length);
+        } else {
+            writeBytes(new String(value, offset, length, StandardCharsets.UTF_8).getBytes(charset));
+        }
+    }
+
+    /**
+     * Записывает готовые байты ASCII, например разделитель полей.
+     *
+     * @param value Байты в кодировке ASCII.
+     * @throws IOException Если произошла ошибка при записи блока.
+     */
+
+    public void writeAscii(byte[] value) throws IOException {
+        writeBytes(value);
+    }
+
+    /**
+     * Записывает перевод строки.
+     *
+     * @throws IOException Если произошла ошибка при записи блока.
+     */
+
+    public void newLine() throws IOException {
+        ensureCapacity(lineSeparator.length);
+        for (byte b : lineSeparator) {
+            bytes[position++] = b;
+        }
+    }
+
+    /**
+     * Записывает накопленные в буфере данные в канал.
+     *
+     * @throws IOException Если произошла ошибка при записи.
+     */
+
+    public void flush() throws IOException {
+        if (position == 0) {
+            return;
+        }
+        if (compressedOut != null) {
+            compressedOut.write(bytes, 0, position);
+        } else {
+            buffer.clear().limit(position);
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        }
+        bytesWritten += position;
+        position = 0;
+
+        if (fsyncPolicy == FsyncPolicy.BLOCK) {
+            if (compressedOut != null) {
+                compressedOut.flush();
+            }
+            fileChannel.force(false);
+        }
+    }
+
+    /**
+     * Записывает накопленные в буфере данные, сбрасывает файл на диск и возвращает его размер. Используется для
+     * контрольных точек {@link CheckpointJournal}, поэтому не поддерживается для сжатых файлов.
+     *
+     * @return Размер файла в байтах.
+     * @throws IOException Если произошла ошибка при записи или сбросе на диск.
+     */
+
+    public long checkpoint() throws IOException {
+        if (compressedOut != null || fileChannel == null) {
+            throw new IOException("Checkpoints are only supported for uncompressed output files.");
+        }
+        flush();
+        fileChannel.force(false);
+        return fileChannel.size();
+    }
+
+    /**
+     * Записывает оставшиеся данные, при необходимости сбрасывает их на диск и закрывает файл. Файл закрывается, даже
+     * если запись завершилась ошибкой.
+     *
+     * @throws IOException Если произошла ошибка при записи или закрытии.
+     */
+
+    @Override
+    public void close() throws IOException {
+        try (channel) {
+            flush();
+            if (compressedOut != null) {
+                compressedOut.finish();
+            }
+            if (fsyncPolicy == FsyncPolicy.CLOSE) {
+                fileChannel.force(false);
+            }
+        }
+        if (compressedOut != null) {
+            compressedOut.close();
+        }
+    }
+
+    /**
+     * @return Количество байт, переданных в канал или в сжатие, без учёта данных в буфере.
+     */
+
+    public long getBytesWritten() {
+        return bytesWritten;
+    }
+
+    /**
+     * Разбирает название политики сброса на диск.
+     *
+     * @param name Название политики: {@code none}, {@code close} или {@code block}.
+     * @return Политика {@link FsyncPolicy} или {@code null}, если название не распознано.
+     */
+
+    public static FsyncPolicy parseFsyncPolicy(String name) {
+        return switch (name) {
+            case "none" -> FsyncPolicy.NONE;
+            case "close" -> FsyncPolicy.CLOSE;
+            case "block" -> FsyncPolicy.BLOCK;
+            default -> null;
+        };
+    }
+
+    /**
+     * Записывает целое число в массив байт в виде ASCII.
+     *
+     * <p> Цифры вычисляются от отрицательного значения, поэтому {@link Long#MIN_VALUE} обрабатывается без
+     * переполнения.
+     *
+     * @param target Массив, в который записываются байты.
+     * @param offset Позиция начала записи.
+     * @param value Значение в формате {@code long}.
+     * @return Позиция после последнего записанного байта.
+     */
+
+    static int appendLong(byte[] target, int offset, long value) {
+        long negative = value < 0 ? value : -value;
+        int digits = 1;
+        for (long bound = -10; digits < 19 && negative <= bound; bound *= 10) {
+            digits++;
+        }
+        if (value < 0) {
+            target[offset++] = '-';
+        }
+        int end = offset + digits;
+        for (int i = end - 1; i >= offset; i--) {
+            target[i] = (byte) ('0' - (negative % 10));
+            negative /= 10;
+        }
+        return end;
+    }
+
+    /**
+     * Записывает вещественное число в массив байт в виде, совпадающем с {@link Double#toString(double)}, если это
+     * возможно без создания строки.
+     *
+     * <p> Поддерживаются нули и числа в диапазоне {@code [10^-3, 10^7)}, которые {@link Double#toString(double)}
+     * выводит без экспоненты. Подбирается наименьшее количество знаков {@code k} после точки, при котором
+     * {@code n / 10^k}, где {@code n = round(|value| * 10^k)}, равно {@code |value|}. При не более чем {@code 15}
+     * значащих цифрах {@code n} и {@code 10^k} представимы точно, поэтому деление округляется так же, как разбор
+     * десятичной записи, а соседние десятичные числа отстоят больше чем на единицу последнего разряда {@code double}.
+     * Значит, найденная запись единственная и кратчайшая, то есть совпадает с результатом
+     * {@link Double#toString(double)}.
+     *
+     * @param target Массив, в который записываются байты. Должен вмещать не менее {@code 32} байт от позиции начала.
+     * @param offset Позиция начала записи.
+     * @param value Значение в формате {@code double}.
+     * @return Позиция после последнего записанного байта или {@code -1}, если число нужно форматировать при помощи
+     * {@link Double#toString(double)}.
+     */
+
+    static int appendPlainDouble(byte[] target, int offset, double value) {
+        if (value == 0d) {
+            if (Double.doubleToRawLongBits(value) != 0) {
+                target[offset++] = '-';
+            }
+            target[offset++] = '0';
+            target[offset++] = '.';
+            target[offset++] = '0';
+            return offset;
+        }
+        double abs = Math.abs(value);
+        if (!(abs >= 1e-3 && abs < 1e7)) {
+            return -1;
+        }
+
+        int integerDigits = abs >= 1 ? (int) Math.log10(abs) + 1 : 0;
+        if (integerDigits > 0 && abs < powersOfTen[integerDigits - 1]) {
+            integerDigits--;
+        } else if (integerDigits < 7 && abs >= powersOfTen[integerDigits]) {
+            integerDigits++;
+        }
+        int leadingZeros = 0;
+        if (integerDigits == 0) {
+            leadingZeros = abs >= 0.1 ? 0 : abs >= 0.01 ? 1 : 2;
+        }
+
+        for (int k = 1; k <= 15 - integerDigits + leadingZeros && k < powersOfTen.length; k++) {
+            double scale = powersOfTen[k];
+            long n = Math.round(abs * scale);
+            if (n / scale != abs) {
+                continue;
+            }
+            if (value < 0) {
+                target[offset++] = '-';
+            }
+            long integerPart = n / (long) scale;
+            long fractionPart = n % (long) scale;
+
+            offset = appendLong(target, offset, integerPart);
+            target[offset++] = '.';
+            int end = offset + k;
+            for (int i = end - 1; i >= offset; i--) {
+                target[i] = (byte) ('0' + fractionPart % 10);
+                fractionPart /= 10;
+            }
+            return end;
+        }
+        return -1;
+    }
+
+    private void ensureCapacity(int length) throws IOException {
+        if (position + length > bufferSize) {
+            flush();
+        }
+    }
+
+    private void writeBytes(byte[] data) throws IOException {
+        writeBytes(data, 0, data.length);
+    }
+
+    private void writeBytes(byte[] data, int offset, int length) throws IOException {
+        if (length > bufferSize - position) {
+            flush();
+        }
+        if (length > bufferSize) {
+            bytesWritten += length;
+            if (compressedOut != null) {
+                compressedOut.write(data, offset, length);
+                return;
+            }
+            ByteBuffer large = ByteBuffer.wrap(data, offset, length);
+            while (large.hasRemaining()) {
+                channel.write(large);
+            }
+            return;
+        }
+        System.arraycopy(data, offset, bytes, position, length);
+        position += length;
+    }
+}
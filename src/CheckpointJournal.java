@@ -0,0 +1,357 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Iterator;
+
+/**
+ * Класс журнала контрольных точек для продолжения прерванной обработки.
+ *
+ * <p> После каждого полностью обработанного входного файла выходные файлы сбрасываются на диск, а в журнал
+ * дописывается строка с путём входного файла и размерами выходных файлов. Строка журнала также сбрасывается на диск,
+ * поэтому каждая записанная строка описывает согласованное состояние: выходные файлы содержат ровно результаты
+ * перечисленных в журнале входных файлов.
+ *
+ * <p> Если журнал уже существует, обработка продолжается с последней контрольной точки. Выходные файлы обрезаются до
+ * записанных размеров, данные, записанные после контрольной точки, отбрасываются, а уже обработанные входные файлы
+ * пропускаются. Поэтому повторный запуск в режиме добавления не дублирует строки. Незавершённая последняя строка
+ * журнала, например после сбоя во время её записи, не учитывается. Статистика после продолжения рассчитывается только
+ * по входным файлам, обработанным при повторном запуске.
+ *
+ * <p> Формат журнала - текст UTF-8, поля разделяются символом табуляции:
+ * <pre>
+ * txt-filter-util checkpoint 1
+ * outputs  &lt;append&gt;  &lt;integers path&gt;  &lt;floats path&gt;  &lt;strings path&gt;
+ * start    &lt;integers size&gt;  &lt;floats size&gt;  &lt;strings size&gt;
+ * file     &lt;integers size&gt;  &lt;floats size&gt;  &lt;strings size&gt;  &lt;input path&gt;
+ * </pre>
+ * Размер {@code -1} означает, что выходной файл ещё не открывался и будет перезаписан при первой записи. В режиме
+ * добавления начальные размеры равны размерам существующих файлов.
+ *
+ * <p> После успешного завершения обработки журнал удаляется при помощи {@link #finish()}.
+ *
+ * <p> Класс не является потокобезопасным.
+ */
+
+public class CheckpointJournal implements Closeable {
+
+    private static final String header = "txt-filter-util checkpoint 1";
+
+    private final Path journalPath;
+    private final String[] outputPaths;
+    private final boolean appendFlag;
+
+    private final ArrayList<String> completedPaths = new ArrayList<>();
+    private final long[] offsets = new long[]{-1, -1, -1};
+
+    private FileChannel channel = null;
+
+    private CheckpointJournal(String journalPath, String[] outputPaths, boolean appendFlag) {
+        this.journalPath = Paths.get(journalPath);
+        this.outputPaths = outputPaths;
+        this.appendFlag = appendFlag;
+    }
+
+    /**
+     * Открывает журнал контрольных точек.
+     *
+     * <p> Если журнала не существует, он создаётся с начальными размерами выходных файлов. Иначе журнал читается,
+     * выходные файлы обрезаются до размеров последней контрольной точки, а незавершённая последняя строка журнала
+     * удаляется.
+     *
+     * @param journalPath Путь файла журнала в формате {@code String}.
+     * @param pathIntegers Путь файла целочисленных данных в формате {@code String}.
+     * @param pathFloats Путь файла вещественных данных в формате {@code String}.
+     * @param pathStrings Путь файла строковых данных в формате {@code String}.
+     * @param appendFlag Режим добавления выходных данных в существующие файлы в формате {@code boolean}.
+     * @return Открытый журнал {@link CheckpointJournal}.
+     * @throws RuntimeException Если журнал повреждён, создан для других выходных файлов или не может быть записан.
+     */
+
+    public static CheckpointJournal open(
+            String journalPath,
+            String pathIntegers,
+            String pathFloats,
+            String pathStrings,
+            boolean appendFlag
+    ) {
+        CheckpointJournal journal = new CheckpointJournal(
+                journalPath, new String[]{pathIntegers, pathFloats, pathStrings}, appendFlag);
+
+        try {
+            if (Files.exists(journal.journalPath)) {
+                journal.resume();
+            } else {
+                journal.create();
+            }
+        } catch (IOException e) {
+            journal.closeQuietly();
+            throw new RuntimeException("Unable to write the checkpoint journal. Please try again.", e);
+        } catch (RuntimeException e) {
+            journal.closeQuietly();
+            throw e;
+        }
+        return journal;
+    }
+
+    /**
+     * @return {@code true}, если обработка продолжается с контрольной точки.
+     */
+
+    public boolean isResumed() {
+        return !completedPaths.isEmpty();
+    }
+
+    /**
+     * Возвращает режимы добавления для выходных файлов: файлы с записанным размером дописываются с обрезанного
+     * размера, остальные перезаписываются или дописываются согласно режиму добавления.
+     *
+     * @return Режимы добавления для файлов целочисленных, вещественных и строковых данных.
+     */
+
+    public boolean[] getAppendFlags() {
+        boolean[] flags = new boolean[offsets.length];
+        for (int i = 0; i < offsets.length; i++) {
+            flags[i] = offsets[i] >= 0 || appendFlag;
+        }
+        return flags;
+    }
+
+    /**
+     * Пропускает входные файлы, уже обработанные до контрольной точки.
+     *
+     * <p> Пути перечисляются заново в том же порядке, что и при первом запуске, и сравниваются с путями из журнала.
+     *
+     * @param paths Пути входных файлов.
+     * @param err Поток для вывода сообщения о продолжении обработки {@link PrintStream}.
+     * @throws RuntimeException Если входные файлы не совпадают с файлами из журнала.
+     */
+
+    public void skipCompleted(Iterator<String> paths, PrintStream err) {
+        for (String completed : completedPaths) {
+            if (!paths.hasNext() || !paths.next().equals(completed)) {
+                throw new RuntimeException(String.format("The checkpoint journal \"%s\" does not match " +
+                        "the input files. Pass the same input files or delete the journal.", journalPath));
+            }
+        }
+        if (!completedPaths.isEmpty()) {
+            err.printf("Resuming from the checkpoint: %d input files have already been processed.\n",
+                    completedPaths.size());
+        }
+    }
+
+    /**
+     * Создаёт получатель, который передаёт значения в {@link OutputWriter} и записывает контрольную точку после
+     * каждого входного файла.
+     *
+     * @param outputWriter Получатель для записи в выходные файлы, созданный с режимами {@link #getAppendFlags()}.
+     * @return Получатель {@link RowSink}.
+     */
+
+    public RowSink wrap(OutputWriter outputWriter) {
+        return new RowSink() {
+            @Override
+            public void addInteger(long value) {
+                outputWriter.addInteger(value);
+            }
+
+            @Override
+            public void addFloat(double value) {
+                outputWriter.addFloat(value);
+            }
+
+            @Override
+            public void addString(String value) {
+                outputWriter.addString(value);
+            }
+
+            @Override
+            public void finishFile(String path) {
+                commit(path, outputWriter.checkpoint());
+            }
+        };
+    }
+
+    /**
+     * Удаляет журнал после успешного завершения обработки.
+     */
+
+    public void finish() {
+        try {
+            close();
+            Files.deleteIfExists(journalPath);
+        } catch (IOException e) {
+            throw new RuntimeException("Unable to write the checkpoint journal. Please try again.", e);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (channel != null) {
+            channel.close();
+            channel = null;
+        }
+    }
+
+    /**
+     * Записывает контрольную точку после обработки входного файла.
+     *
+     * <p> Для внутриклассового использования.
+     *
+     * @param path Путь обработанного входного файла.
+     * @param sizes Размеры выходных файлов, сброшенных на диск, или {@code -1} для неоткрытых файлов.
+     */
+
+    private void commit(String path, long[] sizes) {
+        for (int i = 0; i < offsets.length; i++) {
+            if (sizes[i] >= 0) {
+                offsets[i] = sizes[i];
+            }
+        }
+        try {
+            writeLine("file\t" + offsets[0] + "\t" + offsets[1] + "\t" + offsets[2] + "\t" + path);
+            channel.force(false);
+        } catch (IOException e) {
+            throw new RuntimeException("Unable to write the checkpoint journal. Please try again.", e);
+        }
+        completedPaths.add(path);
+    }
+
+    private void create() throws IOException {
+        if (appendFlag) {
+            for (int i = 0; i < offsets.length; i++) {
+                Path output = Paths.get(outputPaths[i]);
+                offsets[i] = Files.exists(output) ? Files.size(output) : 0;
+            }
+        }
+
+        FileProcessor.createOutputFile(journalPath.toString());
+        channel = FileChannel.open(journalPath, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        writeLine(header);
+        writeLine(String.join("\t", "outputs", Boolean.toString(appendFlag),
+                outputPaths[0], outputPaths[1], outputPaths[2]));
+        writeLine("start\t" + offsets[0] + "\t" + offsets[1] + "\t" + offsets[2]);
+        channel.force(false);
+    }
+
+    private void resume() throws IOException {
+        byte[] content = Files.readAllBytes(journalPath);
+        int validLength = 0;
+        int lineNumber = 0;
+        boolean started = false;
+
+        for (int start = 0, end; (end = indexOf(content, (byte) '\n', start)) >= 0; start = end + 1) {
+            String line = new String(content, start, end - start, StandardCharsets.UTF_8);
+            String[] fields = line.split("\t", 5);
+
+            switch (lineNumber++) {
+                case 0 -> {
+                    if (!line.equals(header)) {
+                        throw damaged();
+                    }
+                }
+                case 1 -> {
+                    if (fields.length != 5 || !fields[0].equals("outputs")) {
+                        throw damaged();
+                    }
+                    if (!fields[1].equals(Boolean.toString(appendFlag)) || !fields[2].equals(outputPaths[0])
+                            || !fields[3].equals(outputPaths[1]) || !fields[4].equals(outputPaths[2])) {
+                        throw new RuntimeException(String.format("The checkpoint journal \"%s\" was created for " +
+                                "other output files or options. Pass the same options or delete the journal.",
+                                journalPath));
+                    }
+                }
+                default -> {
+                    boolean startLine = !started && fields.length == 4 && fields[0].equals("start");
+                    boolean fileLine = started && fields.length == 5 && fields[0].equals("file");
+                    if (!startLine && !fileLine) {
+                        throw damaged();
+                    }
+                    for (int i = 0; i < offsets.length; i++) {
+                        offsets[i] = parseOffset(fields[i + 1]);
+                    }
+                    if (fileLine) {
+                        completedPaths.add(fields[4]);
+                    }
+                    started = true;
+                }
+            }
+            validLength = end + 1;
+        }
+        if (!started) {
+            throw damaged();
+        }
+
+        for (int i = 0; i < offsets.length; i++) {
+            if (offsets[i] >= 0) {
+                truncateOutput(Paths.get(outputPaths[i]), offsets[i]);
+            }
+        }
+
+        channel = FileChannel.open(journalPath, StandardOpenOption.WRITE);
+        channel.truncate(validLength);
+        channel.position(validLength);
+        channel.force(false);
+    }
+
+    private void truncateOutput(Path output, long size) throws IOException {
+        if (!Files.exists(output) && size == 0) {
+            return;
+        }
+        if (!Files.exists(output) || Files.size(output) < size) {
+            throw new RuntimeException(String.format("The output file \"%s\" is shorter than recorded in " +
+                    "the checkpoint journal. Delete the journal to start over.", output));
+        }
+        try (FileChannel outputChannel = FileChannel.open(output, StandardOpenOption.WRITE)) {
+            outputChannel.truncate(size);
+            outputChannel.force(false);
+        }
+    }
+
+    private long parseOffset(String field) {
+        try {
+            long offset = Long.parseLong(field);
+            if (offset < -1) {
+                throw damaged();
+            }
+            return offset;
+        } catch (NumberFormatException e) {
+            throw damaged();
+        }
+    }
+
+    private RuntimeException damaged() {
+        return new RuntimeException(String.format("The checkpoint journal \"%s\" is damaged. " +
+                "Delete the journal to start over.", journalPath));
+    }
+
+    private void writeLine(String line) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap((line + "\n").getBytes(StandardCharsets.UTF_8));
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    private void closeQuietly() {
+        try {
+            close();
+        } catch (IOException ignored) {
+        }
+    }
+
+    private static int indexOf(byte[] bytes, byte value, int from) {
+        for (int i = from; i < bytes.length; i++) {
+            if (bytes[i] == value) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,290 @@
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharacterCodingException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Класс для параллельной фильтрации одного большого входного файла по частям.
+ *
+ * <p> Файл разбивается на диапазоны байтов, границы которых выравниваются по символу {@code \n}, поэтому ни одна
+ * строка не попадает в два диапазона. Диапазоны фильтруются задачами в {@link ForkJoinPool}, после чего результаты
+ * передаются итоговому получателю в исходном порядке строк файла. Результат совпадает с результатом
+ * {@link FileProcessor#filterFile(String, RowSink)}.
+ *
+ * <p> Размер части ограничен {@code 8} МБ, поэтому количество частей растёт вместе с размером файла. Одновременно
+ * запущено или ожидает объединения не более удвоенного количества потоков задач, поэтому промежуточные результаты
+ * описывают не больше {@code 2 * parallelism * 8} МБ входных данных и не занимают память, пропорциональную размеру
+ * файла. Это сохраняет ограниченное потребление памяти режима потоковой записи {@code -w} для больших файлов.
+ *
+ * <p> Каждая задача читает свой диапазон потоково через позиционное чтение из общего {@link FileChannel} и фильтрует
+ * его по байтам при помощи {@link ByteRowScanner}, поэтому память на чтение не зависит ни от размера файла, ни от
+ * размера диапазона. В режиме отображения в память диапазон обрабатывается при помощи {@link MappedFileProcessor}.
+ *
+ * <p> Разбиение по байту {@code \n} корректно только для байт-совместимых кодировок, см.
+ * {@link InputEncoding#isByteCompatible()}.
+ */
+
+public class ChunkedProcessor {
+
+    private static final int chunksPerThread = 4;
+    private static final long minChunkSize = 1024 * 1024;
+    private static final long maxChunkSize = 8 * 1024 * 1024;
+    private static final int scanBufferSize = 64 * 1024;
+    private static final int readBufferSize = 64 * 1024;
+
+    /**
+     * Фильтрует входной файл в кодировке по умолчанию {@link InputEncoding#DEFAULT} по частям в пуле
+     * {@link ForkJoinPool}.
+     *
+     * @param path Путь входного файла в формате {@code String}.
+     * @param parallelism Количество потоков обработки.
+     * @param mappedFlag Режим чтения диапазонов через отображение в память.
+     * @param sink Итоговый получатель отфильтрованных строк {@link RowSink}.
+     */
+
+    public static void filterFile(
+            String path,
+            int parallelism,
+            boolean mappedFlag,
+            RowSink sink
+    ) {
+        filterFile(path, parallelism, mappedFlag, InputEncoding.DEFAULT, sink);
+    }
+
+    /**
+     * Фильтрует входной файл по частям в пуле {@link ForkJoinPool}.
+     *
+     * <p> Файл делится на части размером в четверть доли одного потока, чтобы потоки, закончившие работу раньше,
+     * могли взять оставшиеся части. Части меньше 1 МБ не создаются, а части больше 8 МБ делятся дальше, чтобы
+     * результаты задач в окне занимали ограниченную память при любом размере файла.
+     *
+     * <p> Ошибка при обработке любой части прерывает обработку и передаётся на вышестоящий уровень абстракции.
+     *
+     * @param path Путь входного файла в формате {@code String}.
+     * @param parallelism Количество потоков обработки.
+     * @param mappedFlag Режим чтения диапазонов через отображение в память.
+     * @param encoding Байт-совместимая кодировка входных данных {@link InputEncoding}.
+     * @param sink Итоговый получатель отфильтрованных строк {@link RowSink}.
+     */
+
+    public static void filterFile(
+            String path,
+            int parallelism,
+            boolean mappedFlag,
+            InputEncoding encoding,
+            RowSink sink
+    ) {
+        Path filePath = Paths.get(path);
+
+        try (FileChannel channel = FileChannel.open(filePath, StandardOpenOption.READ)) {
+            long[] bounds = splitOnNewlines(channel, parallelism * chunksPerThread);
+            int chunkCount = bounds.length - 1;
+            int windowSize = parallelism * 2;
+
+            ForkJoinPool pool = new ForkJoinPool(parallelism);
+            ArrayDeque<ChunkTask> window = new ArrayDeque<>();
+            int nextChunk = 0;
+
+            try {
+                int carriedEmptyRows = 0;
+
+                while (nextChunk < chunkCount || !window.isEmpty()) {
+                    while (nextChunk < chunkCount && window.size() < windowSize) {
+                        ChunkTask task = new ChunkTask(
+                                channel, bounds[nextChunk], bounds[nextChunk + 1], mappedFlag, encoding);
+                        pool.execute(task);
+                        window.add(task);
+                        nextChunk++;
+                    }
+
+                    FilterResult result = window.poll().join();
+
+                    if (result.isEmpty()) {
+                        carriedEmptyRows += result.getTrailingEmptyRows();
+                        continue;
+                    }
+                    for (; carriedEmptyRows > 0; carriedEmptyRows--) {
+                        sink.addString("");
+                    }
+                    result.mergeInto(sink);
+                    carriedEmptyRows = result.getTrailingEmptyRows();
+                }
+            } finally {
+                pool.shutdownNow();
+            }
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        } catch (UncheckedIOException e) {
+            if (e.getCause() instanceof CharacterCodingException cause) {
+                throw encoding.malformedInputError(path, cause);
+            }
+            throw new RuntimeException(e.getCause());
+        }
+    }
+
+    /**
+     * Разбивает файл на диапазоны байтов, выровненные по символу {@code \n}.
+     *
+     * <p> Сначала файл делится на равные части размером не меньше 1 МБ и не больше 8 МБ, затем каждая граница
+     * сдвигается вперёд до позиции, следующей за ближайшим символом {@code \n}. Совпавшие после сдвига границы
+     * отбрасываются.
+     *
+     * <p> Для внутриклассового использования.
+     *
+     * @param channel Канал входного файла.
+     * @param chunkCount Желаемое количество частей, если их размер укладывается в ограничения.
+     * @return Массив границ диапазонов, начинающийся с {@code 0} и заканчивающийся размером файла.
+     * @throws IOException Если произошла ошибка при чтении файла.
+     */
+
+    private static long[] splitOnNewlines(FileChannel channel, int chunkCount) throws IOException {
+        long size = channel.size();
+        long chunkSize = Math.min(maxChunkSize, Math.max(minChunkSize, size / chunkCount + 1));
+        ByteBuffer buffer = ByteBuffer.allocate(scanBufferSize);
+
+        ArrayList<Long> bounds = new ArrayList<>();
+        bounds.add(0L);
+
+        long position = chunkSize;
+        while (position < size) {
+            long bound = findNextNewline(channel, position, buffer);
+            if (bound >= size) {
+                break;
+            }
+            bounds.add(bound);
+            position = bound + chunkSize;
+        }
+        bounds.add(size);
+
+        long[] result = new long[bounds.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = bounds.get(i);
+        }
+        return result;
+    }
+
+    /**
+     * Ищет позицию, следующую за ближайшим символом {@code \n}, начиная с заданной позиции.
+     *
+     * <p> Для внутриклассового использования.
+     *
+     * @param channel Канал входного файла.
+     * @param from Позиция начала поиска.
+     * @param buffer Буфер для чтения.
+     * @return Позиция, следующая за найденным символом {@code \n}, или размер файла, если символ не найден.
+     * @throws IOException Если произошла ошибка при чтении файла.
+     */
+
+    private static long findNextNewline(FileChannel channel, long from, ByteBuffer buffer) throws IOException {
+        long position = from;
+
+        while (true) {
+            buffer.clear();
+            int read = channel.read(buffer, position);
+            if (read <= 0) {
+                return channel.size();
+            }
+            for (int i = 0; i < read; i++) {
+                if (buffer.get(i) == '\n') {
+                    return position + i + 1;
+                }
+            }
+            position += read;
+        }
+    }
+
+    /**
+     * Задача фильтрации одного диапазона байтов входного файла.
+     */
+
+    private static class ChunkTask extends RecursiveTask<FilterResult> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final transient FileChannel channel;
+        private final long start;
+        private final long end;
+        private final boolean mappedFlag;
+        private final transient InputEncoding encoding;
+
+        ChunkTask(FileChannel channel, long start, long end, boolean mappedFlag, InputEncoding encoding) {
+            this.channel = channel;
+            this.start = start;
+            this.end = end;
+            this.mappedFlag = mappedFlag;
+            this.encoding = encoding;
+        }
+
+        @Override
+        protected FilterResult compute() {
+            FilterResult result = new FilterResult();
+
+            if (mappedFlag) {
+                try {
+                    int trailingEmptyRows = MappedFileProcessor.filterRange(channel, start, end, encoding, result);
+                    result.setTrailingEmptyRows(trailingEmptyRows);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                return result;
+            }
+
+            InputStream in = new RangeInputStream(channel, start, end);
+
+            try {
+                int trailingEmptyRows = ByteRowScanner.filterStream(in, readBufferSize, encoding, result);
+                result.setTrailingEmptyRows(trailingEmptyRows);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return result;
+        }
+    }
+
+    /**
+     * Поток байтов диапазона файла, читаемый позиционным чтением из общего {@link FileChannel}.
+     *
+     * <p> Позиционное чтение не изменяет позицию канала, поэтому несколько потоков могут читать разные диапазоны
+     * одного канала одновременно.
+     */
+
+    private static class RangeInputStream extends InputStream {
+
+        private final FileChannel channel;
+        private final byte[] single = new byte[1];
+        private long position;
+        private final long end;
+
+        RangeInputStream(FileChannel channel, long start, long end) {
+            this.channel = channel;
+            this.position = start;
+            this.end = end;
+        }
+
+        @Override
+        public int read() throws IOException {
+            return read(single, 0, 1) == -1 ? -1 : single[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (position >= end) {
+                return -1;
+            }
+            int toRead = (int) Math.min(len, end - position);
+            int read = channel.read(ByteBuffer.wrap(b, off, toRead), position);
+            if (read <= 0) {
+                return -1;
+            }
+            position += read;
+            return read;
+        }
+    }
+}
@@ -0,0 +1,89 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.SocketChannel;
+
+/**
+ * Класс клиента, который передаёт аргументы запуска демону {@link DaemonServer} и выводит его ответ.
+ *
+ * <p> Клиент не разбирает аргументы и не загружает классы обработки: он передаёт аргументы и рабочую директорию,
+ * записывает кадры ответа в стандартный вывод и стандартный поток ошибок по мере их получения и возвращает код
+ * завершения запуска. Формат запроса и ответа описан в {@link DaemonServer}.
+ */
+
+public class DaemonClient {
+
+    private static final int bufferSize = 64 * 1024;
+
+    /**
+     * Выполняет запуск на демоне.
+     *
+     * @param socketPath Путь файла сокета демона в формате {@code String}.
+     * @param args Аргументы запуска.
+     * @return Код завершения запуска или {@code 1}, если не удалось получить ответ демона.
+     */
+
+    public static int run(String socketPath, String[] args) {
+        SocketChannel channel;
+        try {
+            channel = SocketChannel.open(UnixDomainSocketAddress.of(socketPath));
+        } catch (IOException | RuntimeException e) {
+            System.err.printf("Unable to connect to the daemon at \"%s\". Start it with --daemon.\n", socketPath);
+            return 1;
+        }
+
+        try (channel) {
+            DataOutputStream request = new DataOutputStream(
+                    new BufferedOutputStream(Channels.newOutputStream(channel)));
+            request.writeUTF(DaemonServer.protocolHeader);
+            request.writeUTF(System.getProperty("user.dir"));
+            request.writeInt(args.length);
+            for (String arg : args) {
+                request.writeUTF(arg);
+            }
+            request.flush();
+
+            DataInputStream response = new DataInputStream(
+                    new BufferedInputStream(Channels.newInputStream(channel), bufferSize));
+            FileOutputStream stdout = new FileOutputStream(FileDescriptor.out);
+            FileOutputStream stderr = new FileOutputStream(FileDescriptor.err);
+            byte[] buffer = new byte[bufferSize];
+
+            while (true) {
+                byte type = response.readByte();
+                int length = response.readInt();
+                if (type == DaemonServer.exitFrame) {
+                    return response.readInt();
+                }
+
+                FileOutputStream target = type == DaemonServer.outFrame ? stdout : stderr;
+                while (length > 0) {
+                    int read = response.read(buffer, 0, Math.min(length, buffer.length));
+                    if (read < 0) {
+                        throw new EOFException();
+                    }
+                    try {
+                        target.write(buffer, 0, read);
+                    } catch (IOException e) {
+                        System.err.println("Unable to write to the standard output.");
+                        return 1;
+                    }
+                    length -= read;
+                }
+            }
+        } catch (EOFException e) {
+            System.err.println("The daemon closed the connection before the run was completed.");
+            return 1;
+        } catch (IOException e) {
+            System.err.println("The connection to the daemon was interrupted. Please try again.");
+            return 1;
+        }
+    }
+}
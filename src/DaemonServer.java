@@ -0,0 +1,266 @@
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Класс демона, который выполняет запуски утилиты по запросам клиентов {@link DaemonClient} в одном процессе.
+ *
+ * <p> Демон нужен для частых запусков на небольших входных данных, в которых запуск JVM, загрузка классов и
+ * разбор аргументов занимают больше времени, чем сама фильтрация. Демон запускается один раз и слушает сокет Unix,
+ * а каждый запрос выполняется при помощи {@link Main#run} в уже прогретой JVM. Аргументы запроса разбираются так же,
+ * как аргументы командной строки, пути разрешаются относительно рабочей директории клиента.
+ *
+ * <p> Каждое соединение - один запрос. Запросы выполняются одновременно, каждый в отдельном потоке платформы.
+ * Виртуальные потоки не используются: фильтрация занимает процессор без блокировок, и виртуальный поток не отпускал бы
+ * поток-носитель до конца запроса, поэтому при малом количестве процессоров запросы выполнялись бы по очереди.
+ * Запуски не имеют общего изменяемого состояния, но одновременные запросы с одними и теми же выходными файлами
+ * перезаписывают результаты друг друга так же, как одновременные запуски утилиты.
+ *
+ * <p> Формат запроса - {@link java.io.DataOutputStream}: заголовок {@code txt-filter-util daemon 1}, рабочая
+ * директория клиента, количество аргументов и сами аргументы, строки записываются при помощи
+ * {@link java.io.DataOutputStream#writeUTF(String)}.
+ *
+ * <p> Ответ состоит из кадров: байт типа кадра, длина данных {@code int} и данные. Кадры типа {@code 1} содержат
+ * стандартный вывод запуска, в том числе отфильтрованные данные в режиме {@code -c}, кадры типа {@code 2} -
+ * стандартный поток ошибок, последний кадр типа {@code 3} содержит код завершения. Стандартный ввод клиента демону не
+ * передаётся, поэтому входные данные {@code -} не поддерживаются. Исключения, которые при обычном запуске завершили бы
+ * процесс, выводятся в поток ошибок запроса с кодом завершения {@code 1}.
+ *
+ * <p> Запрос выполняется с правами владельца демона: клиент передаёт рабочую директорию и любые аргументы, в том
+ * числе {@code -o} и {@code -a}, поэтому может прочитать и перезаписать любые файлы, доступные демону. Поэтому
+ * подключаться к сокету может только владелец демона: сокет создаётся во временной директории с правами {@code 0700},
+ * получает права {@code 0600} и только после этого переименовывается в заданный путь, так что ни в какой момент не
+ * доступен другим пользователям с правами по умолчанию из umask. В файловых системах без прав POSIX сокет создаётся
+ * сразу по заданному пути, и доступ к нему определяется правами директории.
+ *
+ * <p> Если файл сокета уже существует и его никто не слушает, он удаляется. Файл сокета удаляется при завершении
+ * демона.
+ */
+
+public class DaemonServer {
+
+    static final String protocolHeader = "txt-filter-util daemon 1";
+
+    static final byte outFrame = 1;
+    static final byte errFrame = 2;
+    static final byte exitFrame = 3;
+
+    private static final int maxArguments = 1 << 16;
+
+    /**
+     * Запускает демон и принимает запросы до завершения процесса.
+     *
+     * @param socketPath Путь файла сокета в формате {@code String}.
+     * @throws IOException Если не удалось создать сокет или принять соединение.
+     * @throws RuntimeException Если другой демон уже слушает сокет.
+     */
+
+    public static void serve(String socketPath) throws IOException {
+        Path path = Paths.get(socketPath).toAbsolutePath();
+        UnixDomainSocketAddress address = UnixDomainSocketAddress.of(path);
+
+        if (Files.exists(path)) {
+            if (isListening(address)) {
+                throw new RuntimeException(String.format("A daemon is already listening on \"%s\".", path));
+            }
+            Files.delete(path);
+        }
+
+        ServerSocketChannel server = bindPrivate(path);
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            try {
+                Files.deleteIfExists(path);
+            } catch (IOException ignored) {
+            }
+        }));
+        System.out.println(String.format("The daemon is listening on \"%s\".", path));
+
+        ExecutorService executor = Executors.newCachedThreadPool(
+                Thread.ofPlatform().name("daemon-request-", 0).daemon().factory());
+        while (true) {
+            SocketChannel client = server.accept();
+            executor.execute(() -> handle(client));
+        }
+    }
+
+    /**
+     * Читает запрос, выполняет запуск и отправляет его вывод и код завершения клиенту.
+     *
+     * <p> Для внутриклассового использования.
+     *
+     * @param client Соединение с клиентом {@link SocketChannel}.
+     */
+
+    private static void handle(SocketChannel client) {
+        try (client) {
+            DataInputStream in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(client)));
+            FrameWriter frames = new FrameWriter(client);
+            PrintStream out = new PrintStream(frames.stream(outFrame), false, System.out.charset());
+            PrintStream err = new PrintStream(frames.stream(errFrame), false, System.err.charset());
+
+            if (!in.readUTF().equals(protocolHeader)) {
+                err.println("The client version does not match the daemon version.");
+                frames.writeExit(1);
+                return;
+            }
+            String workDir = in.readUTF();
+            int count = in.readInt();
+            if (count < 0 || count > maxArguments) {
+                throw new IOException("Invalid number of arguments.");
+            }
+            String[] args = new String[count];
+            for (int i = 0; i < count; i++) {
+                args[i] = in.readUTF();
+            }
+
+            int exitCode;
+            try {
+                exitCode = Main.run(args, workDir, false, frames.channel(outFrame), out, err);
+            } catch (Throwable e) {
+                e.printStackTrace(err);
+                exitCode = 1;
+            }
+            out.flush();
+            err.flush();
+            frames.writeExit(exitCode);
+        } catch (IOException ignored) {
+            // Клиент закрыл соединение, ответ отправлять некому.
+        }
+    }
+
+    /**
+     * Создаёт сокет, к которому может подключиться только владелец процесса.
+     *
+     * <p> Сокет создаётся во временной директории с правами {@code 0700} рядом с заданным путём, получает права
+     * {@code 0600} и переименовывается в заданный путь. Переименование не изменяет сам файл сокета, поэтому
+     * подключения по новому пути принимаются тем же каналом.
+     *
+     * <p> Для внутриклассового использования.
+     *
+     * @param path Абсолютный путь файла сокета {@link Path}.
+     * @return Канал, принимающий подключения по заданному пути.
+     * @throws IOException Если не удалось создать сокет или изменить его права.
+     */
+
+    private static ServerSocketChannel bindPrivate(Path path) throws IOException {
+        ServerSocketChannel server = ServerSocketChannel.open(StandardProtocolFamily.UNIX);
+        try {
+            if (!FileSystems.getDefault().supportedFileAttributeViews().contains("posix")) {
+                server.bind(UnixDomainSocketAddress.of(path));
+                return server;
+            }
+
+            Path directory = Files.createTempDirectory(path.getParent(), ".txt-filter-daemon-",
+                    PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rwx------")));
+            Path privatePath = directory.resolve("socket");
+            try {
+                server.bind(UnixDomainSocketAddress.of(privatePath));
+                Files.setPosixFilePermissions(privatePath, PosixFilePermissions.fromString("rw-------"));
+                Files.move(privatePath, path, StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                Files.deleteIfExists(privatePath);
+                Files.delete(directory);
+            }
+            return server;
+        } catch (IOException | RuntimeException e) {
+            server.close();
+            throw e;
+        }
+    }
+
+    private static boolean isListening(UnixDomainSocketAddress address) {
+        SocketChannel probe;
+        try {
+            probe = SocketChannel.open(address);
+        } catch (IOException e) {
+            return false;
+        }
+        try {
+            probe.close();
+        } catch (IOException ignored) {
+        }
+        return true;
+    }
+
+    /**
+     * Запись кадров ответа в соединение. Кадры разных потоков вывода записываются целиком и не перемешиваются, так
+     * как отфильтрованные данные в режиме {@code -c} записываются отдельным потоком {@link StdoutWriter}.
+     */
+
+    private static final class FrameWriter {
+
+        private final SocketChannel channel;
+
+        FrameWriter(SocketChannel channel) {
+            this.channel = channel;
+        }
+
+        synchronized void write(byte type, ByteBuffer data) throws IOException {
+            ByteBuffer header = ByteBuffer.allocate(5).put(type).putInt(data.remaining()).flip();
+            ByteBuffer[] frame = {header, data};
+            while (data.hasRemaining() || header.hasRemaining()) {
+                channel.write(frame);
+            }
+        }
+
+        void writeExit(int exitCode) throws IOException {
+            write(exitFrame, ByteBuffer.allocate(4).putInt(exitCode).flip());
+        }
+
+        WritableByteChannel channel(byte type) {
+            return new WritableByteChannel() {
+                private volatile boolean open = true;
+
+                @Override
+                public int write(ByteBuffer src) throws IOException {
+                    int length = src.remaining();
+                    FrameWriter.this.write(type, src);
+                    return length;
+                }
+
+                @Override
+                public boolean isOpen() {
+                    return open;
+                }
+
+                @Override
+                public void close() {
+                    open = false;
+                }
+            };
+        }
+
+        OutputStream stream(byte type) {
+            return new OutputStream() {
+                @Override
+                public void write(int b) throws IOException {
+                    write(new byte[]{(byte) b}, 0, 1);
+                }
+
+                @Override
+                public void write(byte[] b, int off, int len) throws IOException {
+                    if (len > 0) {
+                        FrameWriter.this.write(type, ByteBuffer.wrap(b, off, len));
+                    }
+                }
+            };
+        }
+    }
+}
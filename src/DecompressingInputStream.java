@@ -0,0 +1,157 @@
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Класс для чтения сжатого gzip входного файла с распаковкой в отдельном потоке.
+ *
+ * <p> Файл читается и распаковывается виртуальным потоком блоками по {@code 64} КБ, которые передаются читателю через
+ * ограниченную очередь на {@code 4} блока. Поэтому распаковка следующих блоков выполняется одновременно с
+ * классификацией строк уже распакованных блоков, а распакованные данные не записываются на диск. Если классификация
+ * не успевает, очередь заполняется и распаковка приостанавливается.
+ *
+ * <p> Поддерживаются файлы из нескольких последовательных членов gzip, например полученные дозаписью в режиме
+ * {@code -a}. Пустой файл считается пустыми входными данными.
+ *
+ * <p> Ошибка чтения или распаковки выбрасывается читателю при чтении следующего блока.
+ *
+ * <p> Методы чтения должны вызываться из одного потока.
+ */
+
+public class DecompressingInputStream extends InputStream {
+
+    private static final int chunkSize = 64 * 1024;
+    private static final int queueCapacity = 4;
+
+    private static final byte[] endOfData = new byte[0];
+
+    private final ArrayBlockingQueue<byte[]> queue = new ArrayBlockingQueue<>(queueCapacity);
+    private final Thread thread;
+
+    private volatile IOException error = null;
+    private volatile boolean closed = false;
+
+    private byte[] chunk = null;
+    private int chunkLength = 0;
+    private int position = 0;
+    private boolean finished = false;
+
+    /**
+     * Открывает сжатый файл и запускает поток распаковки.
+     *
+     * @param path Путь сжатого входного файла в формате {@code String}.
+     * @throws IOException Если не удалось открыть файл.
+     */
+
+    public DecompressingInputStream(String path) throws IOException {
+        FileInputStream in = new FileInputStream(path);
+        this.thread = Thread.ofVirtual().name("gzip-reader").start(() -> decompress(in));
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (!fillChunk()) {
+            return -1;
+        }
+        return chunk[position++] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        if (!fillChunk()) {
+            return -1;
+        }
+        int count = Math.min(len, chunkLength - position);
+        System.arraycopy(chunk, position, b, off, count);
+        position += count;
+        return count;
+    }
+
+    /**
+     * Останавливает поток распаковки и закрывает файл.
+     */
+
+    @Override
+    public void close() {
+        closed = true;
+        thread.interrupt();
+        queue.clear();
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Получает следующий распакованный блок, если текущий прочитан.
+     *
+     * @return {@code true}, если в текущем блоке есть непрочитанные байты, и {@code false} в конце данных.
+     * @throws IOException Если произошла ошибка при чтении или распаковке файла.
+     */
+
+    private boolean fillChunk() throws IOException {
+        while (!finished && (chunk == null || position == chunkLength)) {
+            byte[] next;
+            try {
+                next = queue.take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Decompression was interrupted.", e);
+            }
+            if (next == endOfData) {
+                finished = true;
+                if (error != null) {
+                    throw error;
+                }
+                break;
+            }
+            chunk = next;
+            chunkLength = next.length;
+            position = 0;
+        }
+        return !finished;
+    }
+
+    /**
+     * Читает и распаковывает файл, передавая блоки в очередь.
+     *
+     * <p> Выполняется в потоке распаковки.
+     *
+     * @param in Поток чтения сжатого файла.
+     */
+
+    private void decompress(FileInputStream in) {
+        try (in) {
+            if (in.getChannel().size() > 0) {
+                try (GZIPInputStream gzip = new GZIPInputStream(in, chunkSize)) {
+                    while (!closed) {
+                        byte[] next = new byte[chunkSize];
+                        int length = gzip.readNBytes(next, 0, chunkSize);
+                        if (length == 0) {
+                            break;
+                        }
+                        queue.put(length == chunkSize ? next : Arrays.copyOf(next, length));
+                    }
+                }
+            }
+        } catch (IOException e) {
+            error = e;
+        } catch (InterruptedException e) {
+            return;
+        }
+        if (!closed) {
+            try {
+                queue.put(endOfData);
+            } catch (InterruptedException ignored) {
+                // Читатель закрыл поток, конец данных больше не нужен.
+            }
+        }
+    }
+}
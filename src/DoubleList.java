@@ -0,0 +1,94 @@
+import java.util.Arrays;
+
+/**
+ * Класс растущего списка значений типа {@code double} без упаковки в объекты.
+ *
+ * <p> Класс был создан для замены {@code ArrayList<Double>}: каждый элемент хранится в примитивном массиве и занимает
+ * 8 байт вместо объекта {@link Double} и ссылки на него.
+ *
+ * <p> Элементы хранятся в блоках фиксированного размера. При заполнении блока выделяется следующий, а уже
+ * записанные элементы не копируются, поэтому на больших объёмах данных нет пиков памяти и задержек, связанных
+ * с удвоением массива. Блоки выделяются только при добавлении элементов, поэтому пустой список почти не занимает
+ * памяти.
+ *
+ * <p> Первый блок выделяется на {@code 16} элементов и удваивается до полного размера блока, поэтому маленькие списки,
+ * например результаты фильтрации небольших входных файлов, не занимают целый блок.
+ *
+ * <p> Список содержит не более {@link Integer#MAX_VALUE} элементов, при попытке добавить больше выбрасывается
+ * исключение.
+ *
+ * <p> Класс не является потокобезопасным.
+ */
+
+public class DoubleList {
+
+    private static final int blockShift = 14;
+    private static final int blockSize = 1 << blockShift;
+    private static final int blockMask = blockSize - 1;
+    private static final int initialBlockSize = 16;
+
+    private double[][] blocks = new double[8][];
+    private int size = 0;
+
+    /**
+     * Добавляет элемент в конец списка.
+     *
+     * @param value Добавляемое значение.
+     * @throws IllegalStateException Если список уже содержит {@link Integer#MAX_VALUE} элементов.
+     */
+
+    public void add(double value) {
+        if (size == Integer.MAX_VALUE) {
+            throw new IllegalStateException("Unable to accumulate more than " + Integer.MAX_VALUE + " values " +
+                    "of one type in memory. Use -w to write the results to the output files without " +
+                    "accumulating them.");
+        }
+        int blockIndex = size >>> blockShift;
+
+        if (blockIndex == blocks.length) {
+            double[][] grownBlocks = new double[blocks.length * 2][];
+            System.arraycopy(blocks, 0, grownBlocks, 0, blocks.length);
+            blocks = grownBlocks;
+        }
+        if (blocks[blockIndex] == null) {
+            blocks[blockIndex] = new double[blockIndex == 0 ? initialBlockSize : blockSize];
+        } else if (blockIndex == 0 && size == blocks[0].length) {
+            blocks[0] = Arrays.copyOf(blocks[0], size * 2);
+        }
+        blocks[blockIndex][size & blockMask] = value;
+        size++;
+    }
+
+    /**
+     * Добавляет все элементы другого списка в конец списка.
+     *
+     * @param other Список, элементы которого добавляются.
+     */
+
+    public void addAll(DoubleList other) {
+        for (int i = 0; i < other.size; i++) {
+            add(other.get(i));
+        }
+    }
+
+    /**
+     * Возвращает элемент по индексу.
+     *
+     * <p> Ответственность за валидность индекса передается на вышестоящий уровень абстракции.
+     *
+     * @param index Индекс элемента.
+     * @return Значение элемента в формате {@code double}.
+     */
+
+    public double get(int index) {
+        return blocks[index >>> blockShift][index & blockMask];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+}
@@ -1,25 +1,26 @@
 import java.io.*;
+import java.nio.charset.CharacterCodingException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.util.ArrayList;
-import java.util.regex.Pattern;
 
 /**
  * Класс для обработки файлов с входными данными и сохранения результатов обработки.
  *
- * <p> В классе содержатся два статических поля с регулярными выражениями для обнаружения целых и вещественных чисел.
- * Также содержатся три статических метода для:
+ * <p> В классе содержатся статические методы для:
  * <ul>
- *      <li>Загрузки данных из входного файла.</li>
- *      <li>Фильтрации данных по типам из загруженных данных.</li>
- *      <li>Сохранения результата фильтрации в выходных файлах.</li>
+ *      <li>Потоковой фильтрации входного файла без его полной загрузки в память.</li>
+ *      <li>Построчной фильтрации данных из {@link BufferedReader}.</li>
+ *      <li>Открытия и создания выходных файлов.</li>
  * </ul>
  *
- * Фильтрация данных происходит при помощи регулярных выражений по аналогии с классом {@link java.util.Scanner}.
+ * <p> Результаты фильтрации записываются в выходные файлы при помощи {@link OutputWriter}.
+ *
+ * Фильтрация данных происходит за один проход по символам строки при помощи {@link RowClassifier}, который
+ * одновременно определяет тип строки и разбирает её числовое значение.
  *
  *<p> Для целочисленных типов предполагается, что они могут быть как положительными, так и отрицательными и помещаются
- * в тип {@code long}.
+ * в тип {@code long}. Целые числа, не помещающиеся в тип {@code long}, определяются как строковый тип данных.
  *
  *<p> Для вещественных типов предполагается, что они могут быть отрицательными и положительными, разделителем может быть
  * как точка, так и запятая, могут быть записаны в обычном и экспоненциальном виде и помещаются в тип {@code double}.
@@ -30,116 +31,277 @@ import java.util.regex.Pattern;
 
 public class FileProcessor {
 
-    private static final String integerPattern = "^[-+]?\\d+$";
-    private static final String floatPattern = "^[-+]?[\\d]+[.,][\\d]+(?:[eE][+-]?[\\d]+)?$";
+    private static final int readBufferSize = 64 * 1024;
+
+    static final String stdinPath = "-";
 
     /**
-     * Загружает данные из файла по переданному пути.
+     * Потоково фильтрует входной файл в кодировке по умолчанию {@link InputEncoding#DEFAULT} по трём типам и передаёт
+     * их получателю.
+     *
+     * @param path Путь входного файла в формате {@code String}.
+     * @param sink Получатель отфильтрованных строк {@link RowSink}.
+     */
+
+    public static void filterFile(
+            String path,
+            RowSink sink
+    ) {
+        filterFile(path, InputEncoding.DEFAULT, sink);
+    }
+
+    /**
+     * Потоково фильтрует входной файл по трём типам и передаёт их получателю.
+     *
+     * <p> Файл не загружается в память целиком: чтение производится блоками, и каждая строка классифицируется сразу
+     * после чтения. Пиковое потребление памяти на чтение не зависит от размера входного файла. Буфер чтения не больше
+     * размера файла, поэтому на маленькие файлы не выделяется буфер полного размера.
      *
-     * <p> Чтение происходит при помощи {@link FileReader} путём формирования строки из всех символов, входящих в файл.
+     * <p> Для байт-совместимых кодировок строки ищутся и классифицируются прямо по байтам при помощи
+     * {@link ByteRowScanner}, а декодируются только строки, определённые как строковый тип данных. Остальные кодировки
+     * читаются построчно через {@link BufferedReader} с полным декодированием.
+     *
+     * <p> Файлы {@code .gz} распаковываются в отдельном потоке при помощи {@link DecompressingInputStream} одновременно
+     * с классификацией строк. Путь {@code -} означает стандартный ввод, который читается до конца и не закрывается.
+     *
+     * <p> Строки разделяются символом {@code \n}, один завершающий {@code \r} отбрасывается, поэтому разделитель
+     * {@code \r\n} обрабатывается так же, как {@code \n}. Пустые строки в конце файла отбрасываются: пустые строки
+     * накапливаются в счётчике и добавляются только перед следующей непустой строкой.
+     *
+     * <p> Результат отличается от загрузки файла целиком и разбиения при помощи {@code split("\n")}, которые
+     * использовались раньше, в двух случаях:
+     * <ul>
+     *      <li>Пустые строки в конце файла с разделителями {@code \r\n} отбрасываются, а {@code split} оставлял их как
+     *      строки {@code \r}, которые записывались пустыми строками.</li>
+     *      <li>Пустой файл не даёт ни одной строки, а {@code split} возвращал для него одну пустую строку.</li>
+     * </ul>
      *
      * @param path Путь входного файла в формате {@code String}.
-     * @return Содержимое входного файла в формате {@code String}.
+     * @param encoding Кодировка входных данных {@link InputEncoding}.
+     * @param sink Получатель отфильтрованных строк {@link RowSink}.
      */
 
-    public static String loadFile(String path) {
-        String data = null;
+    public static void filterFile(
+            String path,
+            InputEncoding encoding,
+            RowSink sink
+    ) {
+        if (isStandardInput(path)) {
+            try {
+                filterStream(System.in, readBufferSize, encoding, sink);
+            } catch (CharacterCodingException e) {
+                throw encoding.malformedInputError(path, e);
+            } catch (IOException e) {
+                throw new RuntimeException("Unable to read the standard input. Please try again.", e);
+            }
+            return;
+        }
 
-        try (FileReader fr = new FileReader(path)) {
-            data = fr.readAllAsString();
+        if (isCompressed(path)) {
+            try (DecompressingInputStream in = new DecompressingInputStream(path)) {
+                filterStream(in, readBufferSize, encoding, sink);
+            } catch (CharacterCodingException e) {
+                throw encoding.malformedInputError(path, e);
+            } catch (IOException e) {
+                throw new RuntimeException(String.format(
+                        "Unable to decompress the input file \"%s\". Please try again.", path), e);
+            }
+            return;
+        }
+
+        try (FileInputStream in = new FileInputStream(path)) {
+            int bufferSize = (int) Math.max(1, Math.min(readBufferSize, in.getChannel().size()));
+            filterStream(in, bufferSize, encoding, sink);
+        } catch (CharacterCodingException e) {
+            throw encoding.malformedInputError(path, e);
         } catch (IOException e) {
             throw new RuntimeException(e);
         }
-        return data;
     }
 
     /**
-     * Фильтрует входные данные по трём спискам, соответствующим своим типам.
+     * Фильтрует поток байт входных данных по байтам или через {@link BufferedReader} в зависимости от кодировки.
+     *
+     * <p> Для внутриклассового использования.
      *
-     * <p> Входная строка разбивается на строки по разделителю {@code \n}.
+     * @param in Поток байт входных данных.
+     * @param bufferSize Размер буфера чтения.
+     * @param encoding Кодировка входных данных {@link InputEncoding}.
+     * @param sink Получатель отфильтрованных строк {@link RowSink}.
+     * @throws IOException Если произошла ошибка при чтении или декодировании данных.
+     */
+
+    private static void filterStream(
+            InputStream in,
+            int bufferSize,
+            InputEncoding encoding,
+            RowSink sink
+    ) throws IOException {
+        if (encoding.isByteCompatible()) {
+            ByteRowScanner.filterStream(in, bufferSize, encoding, sink);
+        } else {
+            filterReader(encoding.newReader(in, bufferSize), encoding, sink);
+        }
+    }
+
+    /**
+     * Проверяет, сжат ли файл при помощи gzip, по расширению {@code .gz}.
      *
-     * <p>Далее проверяется соответствие каждой строки паттерну целого или вещественного числа.
-     * Строки, не соответствующие ни одному паттерну, определяются как строковый тип данных. Строки приводятся к
-     * соответствующему типу и добавляются в список.
+     * <p> Сжатые входные файлы читаются только потоково через {@link #filterFile(String, RowSink)}: они не
+     * отображаются в память и не разбиваются на части.
      *
-     * @param data Содержимое входного файла в формате {@code String}.
-     * @param integerList Список целочисленных типов {@code ArrayList<Long>}.
-     * @param floatList Список вещественных типов {@code ArrayList<Double>}.
-     * @param stringList Список строковых типов {@code ArrayList<String>}.
+     * @param path Путь файла в формате {@code String}.
+     * @return {@code true}, если файл сжат.
      */
 
-    public static void filter(
-            String data,
-            ArrayList<Long> integerList,
-            ArrayList<Double> floatList,
-            ArrayList<String> stringList
-    ) {
-        String[] rows = data.split("\n");
-
-        for (String row : rows) {
-            String trimRow = row.trim();
-            if (Pattern.matches(integerPattern, trimRow)) {
-                long numInt = Long.parseLong(trimRow);
-                integerList.add(numInt);
-            } else if (Pattern.matches(floatPattern, trimRow)) {
-                trimRow = trimRow.replace(",", ".");
-                double numFloat = Double.parseDouble(trimRow);
-                floatList.add(numFloat);
-            } else {
-                stringList.add(trimRow);
+    public static boolean isCompressed(String path) {
+        return path.endsWith(".gz");
+    }
+
+    /**
+     * Проверяет, обозначает ли путь стандартный ввод.
+     *
+     * @param path Путь в формате {@code String}.
+     * @return {@code true}, если путь равен {@code -}.
+     */
+
+    public static boolean isStandardInput(String path) {
+        return path.equals(stdinPath);
+    }
+
+    /**
+     * Проверяет, можно ли прочитать входные данные только последовательно. Это сжатые файлы и стандартный ввод: они
+     * не отображаются в память и не разбиваются на части.
+     *
+     * @param path Путь в формате {@code String}.
+     * @return {@code true}, если данные читаются только через {@link #filterFile(String, RowSink)}.
+     */
+
+    public static boolean isSequentialOnly(String path) {
+        return isCompressed(path) || isStandardInput(path);
+    }
+
+    /**
+     * Построчно фильтрует данные из переданного {@link BufferedReader} и передаёт их получателю.
+     *
+     * <p> Пустые строки накапливаются в счётчике и передаются получателю как строковый тип только перед следующей
+     * непустой строкой. Количество пустых строк в конце данных, которые не были добавлены, возвращается, чтобы
+     * при обработке файла по частям их можно было добавить, если в следующей части найдутся непустые строки.
+     *
+     * <p> Обработка исключений передаётся на вышестоящий уровень абстракции.
+     *
+     * @param br Источник строк входных данных.
+     * @param sink Получатель отфильтрованных строк {@link RowSink}.
+     * @return Количество пустых строк в конце данных, не переданных получателю.
+     * @throws IOException Если произошла ошибка при чтении данных.
+     */
+
+    public static int filterReader(
+            BufferedReader br,
+            RowSink sink
+    ) throws IOException {
+        return filterReader(br, InputEncoding.DEFAULT, sink);
+    }
+
+    /**
+     * Построчно фильтрует данные из переданного {@link BufferedReader} с учётом политики обработки некорректных
+     * последовательностей байт.
+     *
+     * <p> Поведение совпадает с {@link #filterReader(BufferedReader, RowSink)}. При политике
+     * {@link InputEncoding.MalformedPolicy#SKIP} строки, содержащие символ замены {@code U+FFFD}, пропускаются.
+     *
+     * @param br Источник строк входных данных, созданный {@link InputEncoding#newReader(InputStream, int)}.
+     * @param encoding Кодировка входных данных {@link InputEncoding}.
+     * @param sink Получатель отфильтрованных строк {@link RowSink}.
+     * @return Количество пустых строк в конце данных, не переданных получателю.
+     * @throws IOException Если произошла ошибка при чтении или декодировании данных.
+     */
+
+    public static int filterReader(
+            BufferedReader br,
+            InputEncoding encoding,
+            RowSink sink
+    ) throws IOException {
+        RowClassifier classifier = new RowClassifier();
+        boolean skipMalformed = encoding.getMalformedPolicy() == InputEncoding.MalformedPolicy.SKIP;
+        int pendingEmptyRows = 0;
+        String row;
+
+        while ((row = br.readLine()) != null) {
+            if (row.isEmpty()) {
+                pendingEmptyRows++;
+                continue;
+            }
+            if (skipMalformed && row.indexOf('\uFFFD') >= 0) {
+                continue;
+            }
+            for (; pendingEmptyRows > 0; pendingEmptyRows--) {
+                sink.addString("");
             }
+            classifyRow(row, classifier, sink);
         }
+        return pendingEmptyRows;
     }
 
     /**
-     * Записывает данные в файлы по заданному пути.
+     * Определяет тип одной строки входных данных и передаёт её получателю.
      *
-     * <p> Если переданный на вход список не содержит ни одного элемента, то возвращается {@code false}, иначе запись
-     * продолжается.
+     * <p> Тип строки и её числовое значение определяются за один проход при помощи {@link RowClassifier}.
+     * Обрезанная копия строки создаётся только для строкового типа данных.
+     *
+     * <p> Для внутриклассового использования.
+     *
+     * @param row Строка входных данных в формате {@code String}.
+     * @param classifier Классификатор строк, переиспользуемый в пределах одного прохода.
+     * @param sink Получатель отфильтрованных строк {@link RowSink}.
+     */
+
+    private static void classifyRow(
+            String row,
+            RowClassifier classifier,
+            RowSink sink
+    ) {
+        switch (classifier.classify(row)) {
+            case INTEGER -> sink.addInteger(classifier.getIntegerValue());
+            case FLOAT -> sink.addFloat(classifier.getFloatValue());
+            case STRING -> sink.addString(row.trim());
+        }
+    }
+
+    /**
+     * Открывает файл по заданному пути для записи.
      *
      * <p> Если директории или файла по заданному пути не существует, они создаются при
      * помощи {@link FileSystemManager}.
      *
-     * <p> Запись производится построчно при помощи {@link BufferedWriter} и {@link FileWriter}.
+     * @param outputPathStr Путь для записи файла с выходными данными в формате {@code String}.
+     * @param appendFlag Режим добавления выходных данных в существующие файлы в формате {@code boolean}.
+     * @return {@link BufferedWriter} для записи в файл.
+     * @throws IOException Если не удалось открыть файл для записи.
+     */
+
+    public static BufferedWriter openWriter(String outputPathStr, boolean appendFlag) throws IOException {
+        createOutputFile(outputPathStr);
+        return new BufferedWriter(new FileWriter(outputPathStr, appendFlag));
+    }
+
+    /**
+     * Создаёт выходной файл и директории по заданному пути, если их не существует.
      *
-     * <p> Если не возникло ошибок во время записи, то возвращается {@code true}.
+     * <p> Создание производится при помощи {@link FileSystemManager}. Используется также в {@link ChannelWriter}.
      *
-     * @param dataList Список с отфильтрованными данными {@code ArrayList<T>}.
-     * @param outputPathStr Путь для записи файла с выходными данными в формате {@code String}.
-     * @param appendFlag Режим добавления выходных данных в существующие файлы в формате {@code boolean}. Если принимает
-     * {@code false}, то существующий файл будет перезаписан, если {@code true}, данные будут добавлены в существующий
-     * файл.
-     * @return Возвращает {@code true}, если данные были успешно записаны в файл, и {@code false} в ином случае.
+     * @param outputPathStr Путь файла с выходными данными в формате {@code String}.
      */
 
-    public static <T> boolean writeFile(
-            ArrayList<T> dataList,
-            String outputPathStr,
-            boolean appendFlag
-    ) {
+    public static void createOutputFile(String outputPathStr) {
         Path outputPath = Paths.get(outputPathStr);
 
-        if (dataList.isEmpty()) {
-            return false;
-        } else {
-            if (!Files.exists(outputPath)) {
-                try {
-                    FileSystemManager.createFileAndDirs(outputPath);
-                } catch (IOException e) {
-                    throw new RuntimeException("Unable to create a file at the specified path. Please try again.", e);
-                }
-            }
-
-            try (BufferedWriter bw = new BufferedWriter(new FileWriter(outputPathStr, appendFlag))) {
-                for (T element : dataList) {
-                    bw.write(element.toString());
-                    bw.newLine();
-                }
-                return true;
+        if (!Files.exists(outputPath)) {
+            try {
+                FileSystemManager.createFileAndDirs(outputPath);
             } catch (IOException e) {
-                throw new RuntimeException(
-                        "Error during file recording. Please try again.", e);
+                throw new RuntimeException("Unable to create a file at the specified path. Please try again.", e);
             }
         }
     }
-}
\ No newline at end of file
+}
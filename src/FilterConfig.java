@@ -0,0 +1,510 @@
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Класс неизменяемой конфигурации одного запуска фильтрации {@link FilterJob}.
+ *
+ * <p> Конфигурация содержит входные данные, пути выходных файлов и режимы работы - то же, что задаётся опциями
+ * командной строки. Создаётся при помощи {@link Builder}, который проверяет совместимость режимов и рассчитывает
+ * значения по умолчанию. После создания конфигурация не изменяется, поэтому одну конфигурацию можно передавать в
+ * несколько запусков, в том числе выполняемых одновременно.
+ *
+ * <p> Входные данные задаются так же, как операнды командной строки: пути файлов {@code .txt} и {@code .txt.gz},
+ * директории, шаблоны glob, файлы со списками путей {@code @listfile} и {@code -} для стандартного ввода. Они
+ * разрешаются относительно рабочей директории и перечисляются только при запуске.
+ *
+ * <p> В командной строке конфигурация создаётся {@link ArgumentsHandler} после проверки аргументов.
+ */
+
+public final class FilterConfig {
+
+    private final String workDir;
+    private final List<String> inputs;
+
+    private final String pathIntegers;
+    private final String pathFloats;
+    private final String pathStrings;
+
+    private final boolean appendFlag;
+    private final boolean simpleStatsFlag;
+    private final boolean fullStatsFlag;
+    private final boolean histogramFlag;
+
+    private final int threads;
+    private final int queueDepth;
+    private final long splitThreshold;
+    private final int splitParallelism;
+    private final boolean mappedFlag;
+    private final int virtualLimit;
+
+    private final boolean streamFlag;
+    private final boolean metricsFlag;
+    private final String metricsPath;
+    private final ChannelWriter.FsyncPolicy fsyncPolicy;
+    private final StdoutWriter.Selection stdoutSelection;
+    private final InputEncoding inputEncoding;
+    private final String checkpointPath;
+    private final boolean sortFlag;
+    private final boolean uniqueFlag;
+    private final long sortMemory;
+
+    private FilterConfig(Builder builder) {
+        this.workDir = builder.workDir;
+        this.inputs = List.copyOf(builder.inputs);
+        this.pathIntegers = builder.pathIntegers;
+        this.pathFloats = builder.pathFloats;
+        this.pathStrings = builder.pathStrings;
+        this.appendFlag = builder.appendFlag;
+        this.simpleStatsFlag = builder.simpleStatsFlag || builder.fullStatsFlag;
+        this.fullStatsFlag = builder.fullStatsFlag;
+        this.histogramFlag = builder.histogramFlag;
+        this.threads = builder.threads;
+        this.queueDepth = builder.queueDepth > 0
+                ? builder.queueDepth
+                : (builder.virtualLimit > 0 ? builder.virtualLimit : builder.threads) * 2;
+        this.splitThreshold = builder.splitThreshold;
+        this.splitParallelism = builder.splitParallelism > 0
+                ? builder.splitParallelism
+                : Runtime.getRuntime().availableProcessors();
+        this.mappedFlag = builder.mappedFlag;
+        this.virtualLimit = builder.virtualLimit;
+        this.streamFlag = builder.streamFlag || builder.checkpointPath != null;
+        this.metricsFlag = builder.metricsFlag;
+        this.metricsPath = builder.metricsPath;
+        this.fsyncPolicy = builder.fsyncPolicy;
+        this.stdoutSelection = builder.stdoutSelection;
+        this.inputEncoding = builder.inputEncoding;
+        this.checkpointPath = builder.checkpointPath;
+        this.sortFlag = builder.sortFlag;
+        this.uniqueFlag = builder.uniqueFlag;
+        this.sortMemory = builder.sortMemory > 0 ? builder.sortMemory : Runtime.getRuntime().maxMemory() / 4;
+    }
+
+    /**
+     * Создаёт построитель конфигурации с рабочей директорией процесса.
+     *
+     * @return Построитель {@link Builder}.
+     */
+
+    public static Builder builder() {
+        return new Builder(System.getProperty("user.dir"));
+    }
+
+    /**
+     * Создаёт построитель конфигурации с заданной рабочей директорией.
+     *
+     * @param workDir Рабочая директория, относительно которой разрешаются входные данные.
+     * @return Построитель {@link Builder}.
+     */
+
+    public static Builder builder(String workDir) {
+        return new Builder(workDir);
+    }
+
+    public String getWorkDir() {
+        return workDir;
+    }
+
+    /**
+     * @return Неизменяемый список входных данных в порядке передачи.
+     */
+
+    public List<String> getInputs() {
+        return inputs;
+    }
+
+    public String getPathIntegers() {
+        return pathIntegers;
+    }
+
+    public String getPathFloats() {
+        return pathFloats;
+    }
+
+    public String getPathStrings() {
+        return pathStrings;
+    }
+
+    public boolean isAppendFlag() {
+        return appendFlag;
+    }
+
+    public boolean isSimpleStatsFlag() {
+        return simpleStatsFlag;
+    }
+
+    public boolean isFullStatsFlag() {
+        return fullStatsFlag;
+    }
+
+    public boolean isHistogramFlag() {
+        return histogramFlag;
+    }
+
+    public int getThreads() {
+        return threads;
+    }
+
+    public int getQueueDepth() {
+        return queueDepth;
+    }
+
+    public long getSplitThreshold() {
+        return splitThreshold;
+    }
+
+    public int getSplitParallelism() {
+        return splitParallelism;
+    }
+
+    public boolean isMappedFlag() {
+        return mappedFlag;
+    }
+
+    public boolean isVirtualFlag() {
+        return virtualLimit > 0;
+    }
+
+    public int getVirtualLimit() {
+        return virtualLimit;
+    }
+
+    public boolean isStreamFlag() {
+        return streamFlag;
+    }
+
+    public boolean isMetricsFlag() {
+        return metricsFlag;
+    }
+
+    public String getMetricsPath() {
+        return metricsPath;
+    }
+
+    public ChannelWriter.FsyncPolicy getFsyncPolicy() {
+        return fsyncPolicy;
+    }
+
+    public StdoutWriter.Selection getStdoutSelection() {
+        return stdoutSelection;
+    }
+
+    public InputEncoding getInputEncoding() {
+        return inputEncoding;
+    }
+
+    public String getCheckpointPath() {
+        return checkpointPath;
+    }
+
+    public boolean isSortFlag() {
+        return sortFlag;
+    }
+
+    public boolean isUniqueFlag() {
+        return uniqueFlag;
+    }
+
+    /**
+     * Возвращает объём памяти, который запуск может занять буферами сортировки в режимах {@code -n} и {@code -u}.
+     *
+     * <p> Если объём не задан, используется четверть максимального размера кучи. При одновременном выполнении
+     * нескольких запусков в одном процессе объём стоит задавать явно, чтобы их сумма помещалась в кучу.
+     *
+     * @return Объём памяти в байтах в формате {@code long}.
+     */
+
+    public long getSortMemory() {
+        return sortMemory;
+    }
+
+    /**
+     * Построитель конфигурации. Не является потокобезопасным.
+     *
+     * <p> Значения по умолчанию совпадают с запуском утилиты без опций: выходные файлы {@code integers.txt},
+     * {@code floats.txt} и {@code strings.txt} в рабочей директории, последовательная обработка, накопление
+     * результатов в памяти и вывод без статистики.
+     */
+
+    public static final class Builder {
+
+        private final String workDir;
+        private final ArrayList<String> inputs = new ArrayList<>();
+
+        private String pathIntegers;
+        private String pathFloats;
+        private String pathStrings;
+
+        private boolean appendFlag = false;
+        private boolean simpleStatsFlag = false;
+        private boolean fullStatsFlag = false;
+        private boolean histogramFlag = false;
+
+        private int threads = 1;
+        private int queueDepth = 0;
+        private long splitThreshold = 64L * 1024 * 1024;
+        private int splitParallelism = 0;
+        private boolean mappedFlag = false;
+        private int virtualLimit = 0;
+
+        private boolean streamFlag = false;
+        private boolean metricsFlag = false;
+        private String metricsPath = null;
+        private ChannelWriter.FsyncPolicy fsyncPolicy = ChannelWriter.FsyncPolicy.NONE;
+        private StdoutWriter.Selection stdoutSelection = null;
+        private InputEncoding inputEncoding = InputEncoding.DEFAULT;
+        private String checkpointPath = null;
+        private boolean sortFlag = false;
+        private boolean uniqueFlag = false;
+        private long sortMemory = 0;
+
+        private Builder(String workDir) {
+            this.workDir = workDir;
+            outputDirectory(workDir);
+        }
+
+        /**
+         * Добавляет входные данные: пути файлов, директории, шаблоны glob, файлы со списками путей {@code @listfile}
+         * или {@code -} для стандартного ввода.
+         *
+         * @param inputs Входные данные относительно рабочей директории.
+         * @return Этот построитель.
+         */
+
+        public Builder inputs(String... inputs) {
+            return inputs(Arrays.asList(inputs));
+        }
+
+        /**
+         * Добавляет входные данные в порядке списка.
+         *
+         * @param inputs Входные данные относительно рабочей директории.
+         * @return Этот построитель.
+         */
+
+        public Builder inputs(List<String> inputs) {
+            this.inputs.addAll(inputs);
+            return this;
+        }
+
+        /**
+         * Задаёт директорию для выходных файлов с базовыми названиями.
+         *
+         * @param directory Путь директории.
+         * @return Этот построитель.
+         */
+
+        public Builder outputDirectory(String directory) {
+            return outputPaths(Paths.get(directory, "integers.txt").toString(),
+                    Paths.get(directory, "floats.txt").toString(),
+                    Paths.get(directory, "strings.txt").toString());
+        }
+
+        /**
+         * Задаёт пути выходных файлов. Файлы, пути которых оканчиваются на {@code .gz}, сжимаются gzip.
+         *
+         * @param pathIntegers Путь файла целочисленных данных.
+         * @param pathFloats Путь файла вещественных данных.
+         * @param pathStrings Путь файла строковых данных.
+         * @return Этот построитель.
+         */
+
+        public Builder outputPaths(String pathIntegers, String pathFloats, String pathStrings) {
+            this.pathIntegers = pathIntegers;
+            this.pathFloats = pathFloats;
+            this.pathStrings = pathStrings;
+            return this;
+        }
+
+        public Builder append(boolean appendFlag) {
+            this.appendFlag = appendFlag;
+            return this;
+        }
+
+        public Builder simpleStats(boolean simpleStatsFlag) {
+            this.simpleStatsFlag = simpleStatsFlag;
+            return this;
+        }
+
+        /**
+         * Включает полную статистику, краткая статистика при этом включается тоже.
+         */
+
+        public Builder fullStats(boolean fullStatsFlag) {
+            this.fullStatsFlag = fullStatsFlag;
+            return this;
+        }
+
+        public Builder histogram(boolean histogramFlag) {
+            this.histogramFlag = histogramFlag;
+            return this;
+        }
+
+        public Builder threads(int threads) {
+            this.threads = threads;
+            return this;
+        }
+
+        /**
+         * @param queueDepth Глубина очереди параллельной обработки или {@code 0}, чтобы использовать удвоенное
+         * количество потоков.
+         */
+
+        public Builder queueDepth(int queueDepth) {
+            this.queueDepth = queueDepth;
+            return this;
+        }
+
+        /**
+         * @param splitThreshold Размер файла в байтах, начиная с которого файл обрабатывается параллельно по частям.
+         */
+
+        public Builder splitThreshold(long splitThreshold) {
+            this.splitThreshold = splitThreshold;
+            return this;
+        }
+
+        /**
+         * @param splitParallelism Количество потоков для обработки одного файла по частям или {@code 0}, чтобы
+         * использовать все доступные процессоры.
+         */
+
+        public Builder splitParallelism(int splitParallelism) {
+            this.splitParallelism = splitParallelism;
+            return this;
+        }
+
+        public Builder mapped(boolean mappedFlag) {
+            this.mappedFlag = mappedFlag;
+            return this;
+        }
+
+        /**
+         * @param virtualLimit Максимальное количество файлов, одновременно обрабатываемых в виртуальных потоках, или
+         * {@code 0}, чтобы не использовать виртуальные потоки.
+         */
+
+        public Builder virtualThreads(int virtualLimit) {
+            this.virtualLimit = virtualLimit;
+            return this;
+        }
+
+        public Builder stream(boolean streamFlag) {
+            this.streamFlag = streamFlag;
+            return this;
+        }
+
+        public Builder metrics(boolean metricsFlag) {
+            this.metricsFlag = metricsFlag;
+            return this;
+        }
+
+        public Builder metricsPath(String metricsPath) {
+            this.metricsPath = metricsPath;
+            return this;
+        }
+
+        public Builder fsyncPolicy(ChannelWriter.FsyncPolicy fsyncPolicy) {
+            this.fsyncPolicy = fsyncPolicy;
+            return this;
+        }
+
+        /**
+         * @param stdoutSelection Типы данных, которые записываются в стандартный вывод вместо выходных файлов, или
+         * {@code null}.
+         */
+
+        public Builder stdout(StdoutWriter.Selection stdoutSelection) {
+            this.stdoutSelection = stdoutSelection;
+            return this;
+        }
+
+        public Builder encoding(InputEncoding inputEncoding) {
+            this.inputEncoding = inputEncoding;
+            return this;
+        }
+
+        /**
+         * Задаёт журнал контрольных точек, режим потоковой записи при этом включается.
+         */
+
+        public Builder checkpoint(String checkpointPath) {
+            this.checkpointPath = checkpointPath;
+            return this;
+        }
+
+        public Builder sort(boolean sortFlag) {
+            this.sortFlag = sortFlag;
+            return this;
+        }
+
+        public Builder unique(boolean uniqueFlag) {
+            this.uniqueFlag = uniqueFlag;
+            return this;
+        }
+
+        /**
+         * @param sortMemory Объём памяти в байтах для буферов сортировки всех сортируемых типов вместе или {@code 0},
+         * чтобы использовать четверть максимального размера кучи.
+         */
+
+        public Builder sortMemory(long sortMemory) {
+            this.sortMemory = sortMemory;
+            return this;
+        }
+
+        /**
+         * Проверяет совместимость режимов и создаёт конфигурацию.
+         *
+         * @return Неизменяемая конфигурация {@link FilterConfig}.
+         * @throws IllegalArgumentException Если режимы несовместимы или значения некорректны.
+         */
+
+        public FilterConfig build() {
+            if (inputs.isEmpty()) {
+                throw new IllegalArgumentException("No input data was specified.");
+            }
+            if (threads < 1 || queueDepth < 0 || splitThreshold < 1 || splitParallelism < 0 || virtualLimit < 0
+                    || sortMemory < 0) {
+                throw new IllegalArgumentException("Thread counts, queue depth, split threshold and sort memory " +
+                        "must be positive.");
+            }
+            if (fsyncPolicy == null || inputEncoding == null) {
+                throw new IllegalArgumentException("The fsync policy and the input encoding must be set.");
+            }
+            if (virtualLimit > 0 && threads > 1) {
+                throw new IllegalArgumentException("Virtual threads cannot be used with a thread pool.");
+            }
+
+            boolean compressed = pathIntegers.endsWith(".gz") || pathFloats.endsWith(".gz")
+                    || pathStrings.endsWith(".gz");
+            int stdinInputs = 0;
+            for (String input : inputs) {
+                if (FileProcessor.isStandardInput(input)) {
+                    stdinInputs++;
+                }
+            }
+
+            if (stdinInputs > 1) {
+                throw new IllegalArgumentException("The standard input can be read only once.");
+            }
+            if (stdoutSelection != null && (appendFlag || compressed)) {
+                throw new IllegalArgumentException("The standard output cannot be used with append mode " +
+                        "or compressed output files.");
+            }
+            if (checkpointPath != null && (stdoutSelection != null || compressed || stdinInputs > 0)) {
+                throw new IllegalArgumentException("Checkpoints cannot be used with the standard output, " +
+                        "compressed output files or the standard input.");
+            }
+            if ((sortFlag || uniqueFlag) && (stdoutSelection != null || checkpointPath != null)) {
+                throw new IllegalArgumentException("Sorting cannot be used with the standard output or checkpoints.");
+            }
+            if (histogramFlag && !fullStatsFlag) {
+                throw new IllegalArgumentException("Histograms require the full statistics.");
+            }
+            return new FilterConfig(this);
+        }
+    }
+}
@@ -0,0 +1,90 @@
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Класс для выполнения нескольких запусков фильтрации {@link FilterJob} в одном процессе.
+ *
+ * <p> Предназначен для встраивания утилиты в другие приложения: запуски передаются в {@link #submit(FilterConfig)}
+ * и выполняются в пуле потоков платформы, результат возвращается в {@link CompletableFuture}. Запуски не имеют общего
+ * изменяемого состояния, поэтому объект можно использовать из нескольких потоков. Одновременные запуски с одними и
+ * теми же выходными файлами перезаписывают результаты друг друга так же, как одновременные запуски утилиты.
+ *
+ * <p> Виртуальные потоки для запусков не используются по той же причине, что и в {@link DaemonServer}: фильтрация
+ * занимает процессор без блокировок. Параллельная обработка внутри запуска задаётся его конфигурацией, поэтому при
+ * выборе количества потоков пула стоит учитывать потоки, которые создают сами запуски. Память буферов сортировки
+ * также задаётся на запуск {@link FilterConfig#getSortMemory()}, поэтому при одновременных запусках с сортировкой её
+ * стоит уменьшить так, чтобы сумма помещалась в кучу.
+ *
+ * <p> {@link #close()} дожидается завершения переданных запусков.
+ */
+
+public class FilterEngine implements AutoCloseable {
+
+    private final ExecutorService executor;
+
+    /**
+     * Создаёт пул, в котором одновременно выполняется не больше одного запуска на доступный процессор.
+     */
+
+    public FilterEngine() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Создаёт пул с заданным количеством одновременных запусков.
+     *
+     * @param parallelism Максимальное количество одновременных запусков в формате {@code int}.
+     * @throws IllegalArgumentException Если количество не положительное.
+     */
+
+    public FilterEngine(int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("The number of concurrent jobs must be a positive integer.");
+        }
+        this.executor = Executors.newFixedThreadPool(parallelism,
+                Thread.ofPlatform().name("filter-job-", 0).daemon().factory());
+    }
+
+    /**
+     * Передаёт запуск с заданной конфигурацией на выполнение. Сообщения запуска выводятся в {@link System#err}.
+     *
+     * @param config Конфигурация запуска {@link FilterConfig}.
+     * @return Результат запуска {@link FilterReport}, который станет доступен после его завершения. Если запуск
+     * завершился исключением, результат завершается этим исключением.
+     */
+
+    public CompletableFuture<FilterReport> submit(FilterConfig config) {
+        return submit(new FilterJob(config));
+    }
+
+    /**
+     * Передаёт запуск на выполнение.
+     *
+     * @param job Запуск {@link FilterJob}, который ещё не выполнялся.
+     * @return Результат запуска {@link FilterReport}, который станет доступен после его завершения. Если запуск
+     * завершился исключением, результат завершается этим исключением.
+     */
+
+    public CompletableFuture<FilterReport> submit(FilterJob job) {
+        return CompletableFuture.supplyAsync(job::run, executor);
+    }
+
+    /**
+     * Прекращает приём запусков и дожидается завершения переданных.
+     */
+
+    @Override
+    public void close() {
+        executor.shutdown();
+        try {
+            while (!executor.awaitTermination(1, TimeUnit.MINUTES)) {
+                // Запуски продолжают выполняться.
+            }
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+}
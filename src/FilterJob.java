@@ -0,0 +1,426 @@
+import java.io.File;
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * Класс одного запуска фильтрации по конфигурации {@link FilterConfig}.
+ *
+ * <p> Запуск читает входные данные, записывает отфильтрованные данные в выходные файлы или в стандартный вывод и
+ * возвращает результат {@link FilterReport} со статистикой, метриками и итоговым выводом. Всё состояние запуска
+ * хранится в объекте запуска и в объектах, созданных для него, а общих изменяемых статических полей у классов
+ * обработки нет, поэтому несколько запусков могут выполняться в одном процессе одновременно, например при помощи
+ * {@link FilterEngine}. Каждый объект выполняется один раз.
+ *
+ * <p> Запуск выполняется в два шага. {@link #prepare()} проверяет входные данные и открывает журнал контрольных точек,
+ * ошибки этого шага сообщают о некорректной конфигурации и не изменяют выходные файлы. {@link #run()} выполняет
+ * фильтрацию и при необходимости сам вызывает {@link #prepare()}.
+ *
+ * <p> Сообщения о несуществующих входных файлах и некорректных операндах выводятся в поток ошибок, переданный в
+ * конструктор. Итоговый вывод не печатается, а возвращается в {@link FilterReport#view()}.
+ */
+
+public class FilterJob {
+
+    private final FilterConfig config;
+    private final PrintStream err;
+    private WritableByteChannel stdout;
+
+    private InputPaths inputPaths = null;
+    private CheckpointJournal journal = null;
+    private boolean started = false;
+
+    /**
+     * Создаёт запуск, который записывает отфильтрованные данные в режиме {@code -c} в стандартный вывод процесса, а
+     * сообщения - в {@link System#err}.
+     *
+     * @param config Конфигурация запуска {@link FilterConfig}.
+     */
+
+    public FilterJob(FilterConfig config) {
+        this(config, null, System.err);
+    }
+
+    /**
+     * Создаёт запуск с заданными потоками вывода.
+     *
+     * @param config Конфигурация запуска {@link FilterConfig}.
+     * @param stdout Канал для записи отфильтрованных данных в режиме {@code -c} {@link WritableByteChannel}. Если
+     * передан {@code null}, используется стандартный вывод процесса.
+     * @param err Поток для вывода сообщений о несуществующих входных файлах и некорректных операндах
+     * {@link PrintStream}.
+     */
+
+    public FilterJob(FilterConfig config, WritableByteChannel stdout, PrintStream err) {
+        if (config == null || err == null) {
+            throw new IllegalArgumentException("The configuration and the error stream must be set.");
+        }
+        this.config = config;
+        this.stdout = stdout;
+        this.err = err;
+    }
+
+    /**
+     * Проверяет входные данные и открывает журнал контрольных точек.
+     *
+     * <p> Входные данные перечисляются при помощи {@link InputPaths}, выходные файлы и журнал исключаются из входных
+     * данных. Если журнал уже существует, выходные файлы обрезаются до последней контрольной точки, а входные файлы,
+     * обработанные до неё, пропускаются.
+     *
+     * <p> Повторный вызов ничего не делает.
+     *
+     * @throws IllegalArgumentException Если ни одного входного файла не найдено.
+     * @throws RuntimeException Если журнал контрольных точек повреждён или не соответствует выходным файлам.
+     */
+
+    public void prepare() {
+        if (inputPaths != null) {
+            return;
+        }
+
+        InputPaths paths = new InputPaths(err);
+        paths.addOperands(config.getWorkDir(), config.getInputs(), config.getVirtualLimit());
+        paths.exclude(config.getPathIntegers(), config.getPathFloats(), config.getPathStrings());
+        if (config.getCheckpointPath() != null) {
+            paths.exclude(config.getCheckpointPath());
+        }
+
+        if (!paths.hasNext()) {
+            throw new IllegalArgumentException("The input data has not been transmitted. " +
+                    "Use --help for usage information.");
+        }
+
+//  -- Открытие журнала контрольных точек --
+//  Если журнал уже существует, выходные файлы обрезаются до последней контрольной точки и дописываются с неё, а входные
+//  файлы, обработанные до контрольной точки, пропускаются.
+
+        if (config.getCheckpointPath() != null) {
+            CheckpointJournal opened = CheckpointJournal.open(config.getCheckpointPath(),
+                    config.getPathIntegers(), config.getPathFloats(), config.getPathStrings(), config.isAppendFlag());
+            try {
+                opened.skipCompleted(paths, err);
+            } catch (RuntimeException e) {
+                closeQuietly(opened);
+                throw e;
+            }
+            journal = opened;
+        }
+        inputPaths = paths;
+    }
+
+    /**
+     * Выполняет фильтрацию, запись результатов и формирование итогового вывода.
+     *
+     * @return Результат запуска {@link FilterReport}.
+     * @throws IllegalStateException Если запуск уже выполнялся.
+     * @throws IllegalArgumentException Если ни одного входного файла не найдено.
+     * @throws RuntimeException Если не удалось прочитать входные данные или записать результаты.
+     */
+
+    public FilterReport run() {
+        if (started) {
+            throw new IllegalStateException("The filter job has already been run.");
+        }
+        started = true;
+        prepare();
+        try {
+            return execute();
+        } finally {
+            if (journal != null) {
+                closeQuietly(journal);
+            }
+        }
+    }
+
+    /**
+     * Выполняет подготовленный запуск. Если запуск прерван исключением, журнал контрольных точек закрывается в
+     * {@link #run()} и сохраняет последнюю контрольную точку.
+     *
+     * <p> Для внутриклассового использования.
+     *
+     * @return Результат запуска {@link FilterReport}.
+     */
+
+    private FilterReport execute() {
+
+//  -- Объявление флагов и путей --
+
+        String outputPathIntegers;
+        String outputPathFloats;
+        String outputPathStrings;
+
+        boolean appendFlag;
+        ChannelWriter.FsyncPolicy fsyncPolicy;
+
+        boolean simpleStatsFlag;
+        boolean fullStatsFlag;
+        boolean histogramFlag;
+
+        boolean integersWritten;
+        boolean floatsWritten;
+        boolean stringsWritten;
+
+        InputPaths pathList;
+
+        int threads;
+        int queueDepth;
+
+        long splitThreshold;
+        int splitParallelism;
+
+        boolean mappedFlag;
+        boolean virtualFlag;
+        int virtualLimit;
+        boolean streamFlag;
+
+        boolean metricsFlag;
+        String metricsPath;
+
+        StdoutWriter.Selection stdoutSelection;
+
+        InputEncoding encoding;
+
+        boolean sortFlag;
+        boolean uniqueFlag;
+
+//  -- Извлечение выходных путей для отфильтрованных данных --
+
+        outputPathIntegers = config.getPathIntegers();
+        outputPathFloats = config.getPathFloats();
+        outputPathStrings = config.getPathStrings();
+        appendFlag = config.isAppendFlag();
+        fsyncPolicy = config.getFsyncPolicy();
+        stdoutSelection = config.getStdoutSelection();
+
+        boolean[] appendFlags = journal != null
+                ? journal.getAppendFlags()
+                : new boolean[]{appendFlag, appendFlag, appendFlag};
+
+//  -- Включение сбора метрик выполнения --
+
+        metricsFlag = config.isMetricsFlag();
+        metricsPath = config.getMetricsPath();
+
+        Metrics metrics = new Metrics(metricsFlag || metricsPath != null);
+        if (stdoutSelection == null) {
+            metrics.startOutputs(appendFlag || journal != null,
+                    outputPathIntegers, outputPathFloats, outputPathStrings);
+        }
+
+//  -- Объявление и инициализация получателя результатов фильтрации --
+//  В режиме потоковой записи результаты сразу записываются в файлы, иначе накапливаются в результирующих массивах.
+//  Статистика в обоих режимах рассчитывается во время фильтрации, скетчи расширенной статистики создаются только
+//  в режиме полной статистики. В режиме записи в стандартный вывод результаты сразу передаются в стандартный вывод.
+//  В режиме контрольных точек после каждого входного файла выходные файлы сбрасываются на диск и записываются в журнал.
+//  В режимах сортировки и удаления повторов значения сортируемых типов накапливаются с ограничением памяти и
+//  записываются после фильтрации, остальные сразу записываются в файлы.
+
+        streamFlag = config.isStreamFlag();
+        fullStatsFlag = config.isFullStatsFlag();
+        histogramFlag = config.isHistogramFlag();
+        sortFlag = config.isSortFlag();
+        uniqueFlag = config.isUniqueFlag();
+
+        FilterResult filterResult = new FilterResult();
+        OutputWriter outputWriter = new OutputWriter(
+                outputPathIntegers, outputPathFloats, outputPathStrings, appendFlags, fsyncPolicy);
+        StdoutWriter stdoutWriter = stdoutSelection != null ? new StdoutWriter(stdoutSelection, getStdoutChannel()) : null;
+        SortedOutputWriter sortedWriter = sortFlag || uniqueFlag
+                ? new SortedOutputWriter(outputPathIntegers, outputPathFloats, outputPathStrings,
+                appendFlag, fsyncPolicy, sortFlag, uniqueFlag, config.getSortMemory(), outputWriter)
+                : null;
+        RowSink target = stdoutWriter != null ? stdoutWriter
+                : sortedWriter != null ? sortedWriter
+                : journal != null ? journal.wrap(outputWriter)
+                : streamFlag ? outputWriter : filterResult;
+        StatisticsAccumulator stats = new StatisticsAccumulator(target, fullStatsFlag, histogramFlag);
+        RowSink sink = stats;
+
+//  -- Потоковое чтение входных данных и их фильтрация в цикле --
+//  Директории, шаблоны и списки путей перечисляются по мере обработки файлов.
+
+        pathList = inputPaths;
+        threads = config.getThreads();
+        queueDepth = config.getQueueDepth();
+        splitThreshold = config.getSplitThreshold();
+        splitParallelism = config.getSplitParallelism();
+        mappedFlag = config.isMappedFlag();
+        virtualFlag = config.isVirtualFlag();
+        virtualLimit = config.getVirtualLimit();
+        encoding = config.getInputEncoding();
+
+//  Параллельная обработка передаёт значения каждого файла или каждой части файла сгруппированными по типам, поэтому в
+//  режиме записи всех типов в стандартный вывод, где важен порядок строк разных типов, файлы обрабатываются
+//  последовательно и без разбиения на части.
+
+        boolean orderedFlag = stdoutSelection == StdoutWriter.Selection.ALL;
+
+        boolean filtered = false;
+        metrics.startStage(Metrics.Stage.FILTER);
+        try {
+            if (!orderedFlag && virtualFlag && pathList.hasAtLeast(2)) {
+                ParallelProcessor.filterFiles(
+                        pathList, virtualLimit, queueDepth, mappedFlag, true, encoding, sink, metrics);
+            } else if (!orderedFlag && threads > 1 && pathList.hasAtLeast(2)) {
+                ParallelProcessor.filterFiles(
+                        pathList, threads, queueDepth, mappedFlag, false, encoding, sink, metrics);
+            } else {
+                for (int i = 0; pathList.hasNext(); i++) {
+                    String path = pathList.next();
+                    Metrics.FileProbe probe = metrics.startFile(i, path, stats);
+
+                    if (FileProcessor.isSequentialOnly(path) || !encoding.isByteCompatible()) {
+                        FileProcessor.filterFile(path, encoding, sink);
+                    } else if (!orderedFlag && splitParallelism > 1 && new File(path).length() >= splitThreshold) {
+                        ChunkedProcessor.filterFile(path, splitParallelism, mappedFlag, encoding, sink);
+                    } else if (mappedFlag) {
+                        MappedFileProcessor.filterFile(path, encoding, sink);
+                    } else {
+                        FileProcessor.filterFile(path, encoding, sink);
+                    }
+                    sink.finishFile(path);
+
+                    if (probe != null) {
+                        probe.finish(stats);
+                    }
+                }
+            }
+            filtered = true;
+        } finally {
+            metrics.stopStage(Metrics.Stage.FILTER);
+            metrics.startStage(Metrics.Stage.WRITE);
+            boolean closed = false;
+            try {
+                outputWriter.close();
+                if (stdoutWriter != null) {
+                    stdoutWriter.close();
+                }
+                closed = true;
+            } finally {
+                // Если фильтрация не завершилась, серии сортировки не будут слиты: фоновые потоки останавливаются, а
+                // временные файлы удаляются.
+                if (sortedWriter != null && !(filtered && closed)) {
+                    sortedWriter.abort();
+                }
+            }
+        }
+
+//  -- Запись отфильтрованных данных в файлы --
+//  Каждый выходной файл записывается в отдельном потоке, поэтому три файла записываются параллельно. В режиме
+//  потоковой записи запись выполнялась одновременно с фильтрацией и завершается при закрытии получателя. В режимах
+//  сортировки отсортированные значения и серии сливаются и записываются при закрытии получателя.
+
+        if (stdoutWriter != null) {
+            integersWritten = stdoutWriter.isIntegersWritten();
+            floatsWritten = stdoutWriter.isFloatsWritten();
+            stringsWritten = stdoutWriter.isStringsWritten();
+        } else if (sortedWriter != null) {
+            sortedWriter.close();
+            integersWritten = sortedWriter.isIntegersWritten();
+            floatsWritten = sortedWriter.isFloatsWritten();
+            stringsWritten = sortedWriter.isStringsWritten();
+        } else if (streamFlag) {
+            integersWritten = outputWriter.isIntegersWritten();
+            floatsWritten = outputWriter.isFloatsWritten();
+            stringsWritten = outputWriter.isStringsWritten();
+        } else {
+            OutputWriter resultWriter = new OutputWriter(
+                    outputPathIntegers, outputPathFloats, outputPathStrings, appendFlag, fsyncPolicy);
+            try {
+                resultWriter.addIntegers(filterResult.getIntegerList());
+                resultWriter.addFloats(filterResult.getFloatList());
+                resultWriter.addStrings(filterResult.getStringArena());
+            } finally {
+                resultWriter.close();
+            }
+            integersWritten = resultWriter.isIntegersWritten();
+            floatsWritten = resultWriter.isFloatsWritten();
+            stringsWritten = resultWriter.isStringsWritten();
+        }
+        if (journal != null) {
+            journal.finish();
+        }
+        metrics.stopStage(Metrics.Stage.WRITE);
+        if (stdoutWriter != null) {
+            metrics.setBytesWritten(stdoutWriter.getBytesWritten());
+        } else {
+            metrics.finishOutputs(integersWritten, floatsWritten, stringsWritten);
+        }
+
+//  -- Формирование вывода в консоль --
+
+        simpleStatsFlag = config.isSimpleStatsFlag();
+
+        ViewHandler viewHandler = new ViewHandler();
+
+        metrics.startStage(Metrics.Stage.STATISTICS);
+
+        if (simpleStatsFlag) {
+            if (integersWritten) {
+                viewHandler.addSimpleStatsIntegers(stats.getIntegersCount());
+            }
+
+            if (floatsWritten) {
+                viewHandler.addSimpleStatsFloats(stats.getFloatsCount());
+            }
+
+            if (stringsWritten) {
+                viewHandler.addSimpleStatsStrings(stats.getStringsCount());
+            }
+        }
+
+        if (fullStatsFlag) {
+            if (integersWritten) {
+                viewHandler.addFullStatsIntegers(stats);
+            }
+
+            if (floatsWritten) {
+                viewHandler.addFullStatsFloats(stats);
+            }
+
+            if (stringsWritten) {
+                viewHandler.addFullStatsStrings(stats);
+            }
+        }
+        metrics.stopStage(Metrics.Stage.STATISTICS);
+
+//  -- Вывод и сохранение метрик выполнения --
+
+        if (metricsFlag) {
+            viewHandler.addMetrics(metrics);
+        }
+
+        if (metricsPath != null) {
+            metrics.writeFile(metricsPath);
+        }
+
+        viewHandler.createFinalView();
+        return new FilterReport(integersWritten, floatsWritten, stringsWritten, stats, metrics,
+                viewHandler.getFinalView());
+    }
+
+    /**
+     * Возвращает канал для записи отфильтрованных данных в режиме {@code -c}. Канал стандартного вывода процесса
+     * открывается только при первом обращении.
+     *
+     * <p> Для внутриклассового использования.
+     *
+     * @return Канал {@link WritableByteChannel}.
+     */
+
+    private WritableByteChannel getStdoutChannel() {
+        if (stdout == null) {
+            stdout = new FileOutputStream(FileDescriptor.out).getChannel();
+        }
+        return stdout;
+    }
+
+    private static void closeQuietly(CheckpointJournal journal) {
+        try {
+            journal.close();
+        } catch (IOException ignored) {
+        }
+    }
+}
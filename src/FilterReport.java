@@ -0,0 +1,26 @@
+/**
+ * Результат запуска фильтрации {@link FilterJob}.
+ *
+ * <p> Содержит признаки записи выходных файлов по типам, статистику, рассчитанную во время фильтрации, метрики
+ * выполнения и итоговый вывод, который утилита выводит в консоль. После завершения запуска статистика и метрики не
+ * изменяются, поэтому результат можно передавать между потоками.
+ *
+ * @param integersWritten {@code true}, если были найдены и записаны целочисленные данные.
+ * @param floatsWritten {@code true}, если были найдены и записаны вещественные данные.
+ * @param stringsWritten {@code true}, если были найдены и записаны строковые данные.
+ * @param statistics Статистика {@link StatisticsAccumulator}. Расширенная статистика рассчитывается, только если
+ * включена полная статистика. В режиме удаления повторов статистика описывает все отфильтрованные значения, а не
+ * записанные без повторов.
+ * @param metrics Метрики выполнения {@link Metrics}. Измеряются, только если включён их вывод или сохранение.
+ * @param view Итоговый вывод: уведомление об успешном выполнении, статистика и метрики в выбранных режимах.
+ */
+
+public record FilterReport(
+        boolean integersWritten,
+        boolean floatsWritten,
+        boolean stringsWritten,
+        StatisticsAccumulator statistics,
+        Metrics metrics,
+        String view
+) {
+}
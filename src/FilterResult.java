@@ -0,0 +1,89 @@
+/**
+ * Класс для хранения результата фильтрации отдельной части входных данных.
+ *
+ * <p> Класс является получателем {@link RowSink}, накапливающим значения в списках. Используется для параллельной
+ * обработки: каждая задача фильтрует свою часть входных данных в собственный экземпляр, а затем результаты
+ * передаются итоговому получателю в исходном порядке при помощи {@link #mergeInto(RowSink)}. Также используется как
+ * итоговый получатель, если результаты фильтрации записываются в файлы после обработки всех входных данных.
+ *
+ * <p> Класс содержит три списка, соответствующих типам данных:
+ * <ul>
+ *      <li>Список целочисленных типов.</li>
+ *      <li>Список вещественных типов.</li>
+ *      <li>Список строковых типов {@link StringArena}, в котором строки хранятся в байтовых блоках без отдельного
+ *      объекта на каждую строку.</li>
+ * </ul>
+ *
+ * <p> Также хранится количество пустых строк в конце части, которые не были добавлены в список строковых типов.
+ * Они добавляются при объединении, только если в последующих частях найдутся непустые строки.
+ */
+
+public class FilterResult implements RowSink {
+
+    private final LongList integerList = new LongList();
+    private final DoubleList floatList = new DoubleList();
+    private final StringArena stringArena = new StringArena();
+
+    private int trailingEmptyRows = 0;
+
+    @Override
+    public void addInteger(long value) {
+        integerList.add(value);
+    }
+
+    @Override
+    public void addFloat(double value) {
+        floatList.add(value);
+    }
+
+    @Override
+    public void addString(String value) {
+        stringArena.add(value);
+    }
+
+    /**
+     * Передаёт элементы результата итоговому получателю по типам: сначала все целые числа, затем все вещественные
+     * числа, затем все строки. Порядок элементов сохраняется только внутри каждого типа, порядок строк разных типов
+     * относительно друг друга не сохраняется.
+     *
+     * @param sink Итоговый получатель {@link RowSink}.
+     */
+
+    public void mergeInto(RowSink sink) {
+        for (int i = 0; i < integerList.size(); i++) {
+            sink.addInteger(integerList.get(i));
+        }
+        for (int i = 0; i < floatList.size(); i++) {
+            sink.addFloat(floatList.get(i));
+        }
+        stringArena.forEach(sink::addString);
+    }
+
+    public LongList getIntegerList() {
+        return integerList;
+    }
+
+    public DoubleList getFloatList() {
+        return floatList;
+    }
+
+    public StringArena getStringArena() {
+        return stringArena;
+    }
+
+    /**
+     * @return {@code true}, если результат не содержит ни одного элемента.
+     */
+
+    public boolean isEmpty() {
+        return integerList.isEmpty() && floatList.isEmpty() && stringArena.isEmpty();
+    }
+
+    public int getTrailingEmptyRows() {
+        return trailingEmptyRows;
+    }
+
+    public void setTrailingEmptyRows(int trailingEmptyRows) {
+        this.trailingEmptyRows = trailingEmptyRows;
+    }
+}
@@ -0,0 +1,223 @@
+import java.io.BufferedReader;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Класс, описывающий кодировку входных данных и политику обработки некорректных последовательностей байт.
+ *
+ * <p> По умолчанию входные данные читаются в UTF-8 независимо от кодировки по умолчанию системы, а некорректные
+ * последовательности байт заменяются символом {@code U+FFFD}.
+ *
+ * <p> Кодировка называется байт-совместимой, если это UTF-8 или однобайтовая кодировка, в которой байты
+ * {@code 0x00-0x7F} означают те же символы, что и в ASCII. В таких кодировках байт {@code \n} всегда означает конец
+ * строки, а байты цифр, знаков и пробельных символов не встречаются внутри других символов. Поэтому строки можно
+ * искать и классифицировать прямо по байтам при помощи {@link ByteRowScanner}, а декодировать только строки,
+ * определённые как строковый тип данных. Входные данные в остальных кодировках, например UTF-16, читаются через
+ * {@link java.io.Reader} с полным декодированием.
+ *
+ * <p> Объект неизменяемый и может использоваться из нескольких потоков. Декодеры {@link RowDecoder} создаются для
+ * каждого потока отдельно.
+ */
+
+public final class InputEncoding {
+
+    /**
+     * Политика обработки последовательностей байт, некорректных в кодировке входных данных.
+     */
+
+    public enum MalformedPolicy {
+        /**
+         * Некорректные последовательности заменяются символом {@code U+FFFD}.
+         */
+        REPLACE,
+        /**
+         * Строки с некорректными последовательностями пропускаются.
+         */
+        SKIP,
+        /**
+         * Обработка прерывается ошибкой.
+         */
+        FAIL
+    }
+
+    /**
+     * Кодировка по умолчанию: UTF-8 с заменой некорректных последовательностей.
+     */
+
+    public static final InputEncoding DEFAULT = new InputEncoding(StandardCharsets.UTF_8, MalformedPolicy.REPLACE);
+
+    private final Charset charset;
+    private final MalformedPolicy malformedPolicy;
+    private final boolean byteCompatible;
+
+    /**
+     * @param charset Кодировка входных данных {@link Charset}.
+     * @param malformedPolicy Политика обработки некорректных последовательностей {@link MalformedPolicy}.
+     */
+
+    public InputEncoding(Charset charset, MalformedPolicy malformedPolicy) {
+        this.charset = charset;
+        this.malformedPolicy = malformedPolicy;
+        this.byteCompatible = isByteCompatible(charset);
+    }
+
+    public Charset getCharset() {
+        return charset;
+    }
+
+    public MalformedPolicy getMalformedPolicy() {
+        return malformedPolicy;
+    }
+
+    /**
+     * @return {@code true}, если строки можно искать и классифицировать по байтам без декодирования.
+     */
+
+    public boolean isByteCompatible() {
+        return byteCompatible;
+    }
+
+    /**
+     * Создаёт декодер строковых данных для байт-совместимой кодировки. Декодер не является потокобезопасным.
+     *
+     * @return Декодер {@link RowDecoder}.
+     */
+
+    public RowDecoder newDecoder() {
+        return new RowDecoder();
+    }
+
+    /**
+     * Создаёт построчное чтение с полным декодированием для кодировок, которые не являются байт-совместимыми.
+     *
+     * <p> При политике {@link MalformedPolicy#SKIP} некорректные последовательности заменяются символом
+     * {@code U+FFFD}, а строки с этим символом пропускаются в
+     * {@link FileProcessor#filterReader(BufferedReader, InputEncoding, RowSink)}.
+     *
+     * @param in Поток байт входных данных.
+     * @param bufferSize Размер буфера чтения в символах.
+     * @return Построчное чтение {@link BufferedReader}.
+     */
+
+    public BufferedReader newReader(InputStream in, int bufferSize) {
+        CodingErrorAction action = malformedPolicy == MalformedPolicy.FAIL
+                ? CodingErrorAction.REPORT
+                : CodingErrorAction.REPLACE;
+        CharsetDecoder decoder = charset.newDecoder()
+                .onMalformedInput(action)
+                .onUnmappableCharacter(action);
+        return new BufferedReader(new InputStreamReader(in, decoder), bufferSize);
+    }
+
+    /**
+     * Формирует ошибку о некорректной последовательности байт во входном файле.
+     *
+     * @param path Путь входного файла в формате {@code String}.
+     * @param e Исключение декодирования.
+     * @return Исключение с сообщением для пользователя.
+     */
+
+    public RuntimeException malformedInputError(String path, CharacterCodingException e) {
+        return new RuntimeException(String.format(
+                "The input file \"%s\" contains bytes that are not valid %s. " +
+                        "Use --malformed replace or --malformed skip to process it anyway.", path, charset.name()), e);
+    }
+
+    /**
+     * Разбирает название политики обработки некорректных последовательностей.
+     *
+     * @param name Название политики: {@code replace}, {@code skip} или {@code fail}.
+     * @return Политика {@link MalformedPolicy} или {@code null}, если название не распознано.
+     */
+
+    public static MalformedPolicy parseMalformedPolicy(String name) {
+        return switch (name) {
+            case "replace" -> MalformedPolicy.REPLACE;
+            case "skip" -> MalformedPolicy.SKIP;
+            case "fail" -> MalformedPolicy.FAIL;
+            default -> null;
+        };
+    }
+
+    /**
+     * Проверяет, является ли кодировка байт-совместимой.
+     *
+     * <p> Для внутриклассового использования.
+     *
+     * @param charset Кодировка {@link Charset}.
+     * @return {@code true} для UTF-8 и однобайтовых кодировок, совпадающих с ASCII на байтах {@code 0x00-0x7F}.
+     */
+
+    private static boolean isByteCompatible(Charset charset) {
+        if (charset.equals(StandardCharsets.UTF_8)) {
+            return true;
+        }
+        if (!charset.canEncode() || charset.newEncoder().maxBytesPerChar() != 1f) {
+            return false;
+        }
+        byte[] ascii = new byte[0x80];
+        for (int i = 0; i < ascii.length; i++) {
+            ascii[i] = (byte) i;
+        }
+        return new String(ascii, charset).equals(new String(ascii, StandardCharsets.US_ASCII));
+    }
+
+    /**
+     * Декодер строковых данных байт-совместимой кодировки.
+     *
+     * <p> Строки, состоящие только из байт ASCII, копируются в {@code String} без декодера. Остальные декодируются
+     * согласно политике {@link MalformedPolicy}: при замене - конструктором {@link String}, иначе - декодером,
+     * сообщающим о некорректных последовательностях.
+     */
+
+    public final class RowDecoder {
+
+        private final CharsetDecoder strictDecoder = charset.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPORT)
+                .onUnmappableCharacter(CodingErrorAction.REPORT);
+
+        private RowDecoder() {
+        }
+
+        /**
+         * Декодирует строку из массива байт.
+         *
+         * @param bytes Массив байт.
+         * @param offset Позиция начала строки.
+         * @param length Длина строки в байтах.
+         * @return Декодированная строка или {@code null}, если строка содержит некорректные последовательности и
+         * должна быть пропущена.
+         * @throws CharacterCodingException Если строка содержит некорректные последовательности и политика -
+         * {@link MalformedPolicy#FAIL}.
+         */
+
+        public String decode(byte[] bytes, int offset, int length) throws CharacterCodingException {
+            int end = offset + length;
+            int i = offset;
+            while (i < end && bytes[i] >= 0) {
+                i++;
+            }
+            if (i == end) {
+                return new String(bytes, offset, length, StandardCharsets.ISO_8859_1);
+            }
+
+            if (malformedPolicy == MalformedPolicy.REPLACE) {
+                return new String(bytes, offset, length, charset);
+            }
+            try {
+                return strictDecoder.decode(ByteBuffer.wrap(bytes, offset, length)).toString();
+            } catch (CharacterCodingException e) {
+                if (malformedPolicy == MalformedPolicy.SKIP) {
+                    return null;
+                }
+                throw e;
+            }
+        }
+    }
+}
@@ -0,0 +1,441 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.regex.Pattern;
+
+/**
+ * Класс для ленивого перечисления путей входных файлов.
+ *
+ * <p> Пути формируются из источников в порядке их добавления:
+ * <ul>
+ *      <li>Явно переданные и уже проверенные пути входных файлов.</li>
+ *      <li>Директории: рекурсивно перечисляются все файлы с расширениями {@code .txt} и {@code .txt.gz}.</li>
+ *      <li>Шаблоны glob, например {@code data/**}{@code /*.txt}: перечисляются все файлы, относительный путь которых
+ *      от неизменяемой части шаблона совпадает с шаблоном.</li>
+ *      <li>Файлы со списком путей {@code @listfile}: каждая непустая строка проверяется так же, как явно переданный
+ *      входной файл.</li>
+ * </ul>
+ *
+ * <p> Директории и файлы со списками читаются только по мере запроса следующего пути, поэтому обработка первых
+ * входных файлов начинается до завершения обхода, а количество путей не ограничено длиной командной строки. В каждой
+ * директории записи обходятся в порядке имён, поэтому порядок входных файлов и выходные данные не зависят от файловой
+ * системы, а продолжение с контрольной точки {@code -k} пропускает те же файлы, что были обработаны до сбоя. Для этого
+ * имена записей директории читаются целиком и сортируются при входе в неё: память на обход пропорциональна количеству
+ * записей в директориях текущего пути обхода, а обработка файлов директории начинается только после чтения всех её
+ * записей. Файлы со списками читаются построчно без этого ограничения, поэтому для плоской директории с миллионами
+ * файлов лучше подходит список путей {@code @listfile}. Символические ссылки на директории не обходятся. Выходные файлы утилиты исключаются
+ * из обхода директорий и шаблонов, чтобы не читать файлы, в которые одновременно идёт запись.
+ *
+ * <p> Ошибки чтения директорий и файлов со списками выбрасываются при запросе следующего пути. Сообщения о
+ * некорректных путях в файлах со списками выводятся в заданный поток ошибок.
+ *
+ * <p> Класс не является потокобезопасным.
+ */
+
+public class InputPaths implements Iterator<String> {
+
+    static final Pattern dataPattern = Pattern.compile(".+\\.txt(?:\\.gz)?$");
+
+    private static final Pattern globPattern = Pattern.compile("[*?\\[{]");
+
+    private final ArrayDeque<Iterator<String>> sources = new ArrayDeque<>();
+    private final ArrayDeque<String> lookahead = new ArrayDeque<>();
+    private final HashSet<Path> excludedPaths = new HashSet<>();
+
+    private final PrintStream err;
+
+    /**
+     * @param err Поток для вывода сообщений о некорректных путях {@link PrintStream}.
+     */
+
+    public InputPaths(PrintStream err) {
+        this.err = err;
+    }
+
+    /**
+     * Проверяет операнды и добавляет их в источники путей в порядке передачи.
+     *
+     * <p> Операнд может быть:
+     * <ul>
+     *      <li>Путём входного файла {@code .txt} или сжатого файла {@code .txt.gz}, существование которого
+     *      проверяется сразу.</li>
+     *      <li>Путём файла со списком путей входных файлов, перед которым указан символ {@code @}.</li>
+     *      <li>Шаблоном glob, содержащим символы {@code * ? [ {}.</li>
+     *      <li>Путём директории, все файлы {@code .txt} и {@code .txt.gz} которой обрабатываются рекурсивно.</li>
+     *      <li>Символом {@code -}, который обозначает стандартный ввод.</li>
+     * </ul>
+     *
+     * <p> Если задано ограничение {@code checkLimit}, существование файлов проверяется в виртуальных потоках, не более
+     * {@code checkLimit} проверок одновременно. Сообщения о несуществующих файлах и некорректных операндах выводятся
+     * в порядке операндов.
+     *
+     * @param workDir Рабочая директория, относительно которой разрешаются операнды.
+     * @param operands Операнды в порядке передачи.
+     * @param checkLimit Количество одновременных проверок в виртуальных потоках или {@code 0} для
+     * последовательной проверки.
+     */
+
+    public void addOperands(String workDir, List<String> operands, int checkLimit) {
+        Path[] filePaths = new Path[operands.size()];
+        boolean[] exists = new boolean[operands.size()];
+
+        for (int i = 0; i < operands.size(); i++) {
+            String operand = operands.get(i);
+            if (!operand.startsWith("@") && !isGlob(operand) && dataPattern.matcher(operand).matches()) {
+                filePaths[i] = Paths.get(workDir, operand);
+            }
+        }
+
+        if (checkLimit > 0) {
+            Semaphore permits = new Semaphore(checkLimit);
+            try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+                for (int i = 0; i < filePaths.length; i++) {
+                    if (filePaths[i] == null) {
+                        continue;
+                    }
+                    int index = i;
+                    executor.submit(() -> {
+                        permits.acquire();
+                        try {
+                            exists[index] = Files.exists(filePaths[index]);
+                        } finally {
+                            permits.release();
+                        }
+                        return null;
+                    });
+                }
+            }
+        } else {
+            for (int i = 0; i < filePaths.length; i++) {
+                exists[i] = filePaths[i] != null && Files.exists(filePaths[i]);
+            }
+        }
+
+        ArrayList<String> files = new ArrayList<>();
+
+        for (int i = 0; i < operands.size(); i++) {
+            String operand = operands.get(i);
+
+            if (FileProcessor.isStandardInput(operand)) {
+                files.add(operand);
+            } else if (filePaths[i] != null) {
+                if (exists[i]) {
+                    files.add(filePaths[i].toString());
+                } else {
+                    err.printf("The passed input file \"%s\" does not exist.\n", operand);
+                }
+            } else if (operand.startsWith("@")) {
+                Path listFile = Paths.get(workDir, operand.substring(1));
+                if (Files.isRegularFile(listFile)) {
+                    addFiles(files);
+                    files.clear();
+                    addListFile(workDir, listFile);
+                } else {
+                    err.printf("The passed list file \"%s\" does not exist.\n", operand.substring(1));
+                }
+            } else if (isGlob(operand)) {
+                addFiles(files);
+                files.clear();
+                addGlob(workDir, operand);
+            } else if (Files.isDirectory(Paths.get(workDir, operand))) {
+                addFiles(files);
+                files.clear();
+                addDirectory(Paths.get(workDir, operand));
+            } else {
+                err.printf("Invalid operand passed \"%s\".\n", operand);
+            }
+        }
+        addFiles(files);
+    }
+
+    /**
+     * Добавляет уже проверенные пути входных файлов.
+     *
+     * @param paths Пути входных файлов в формате {@code ArrayList<String>}.
+     */
+
+    public void addFiles(ArrayList<String> paths) {
+        if (!paths.isEmpty()) {
+            sources.add(new ArrayList<>(paths).iterator());
+        }
+    }
+
+    /**
+     * Добавляет директорию, все файлы {@code .txt} и {@code .txt.gz} которой будут перечислены рекурсивно.
+     *
+     * @param directory Путь директории {@link Path}.
+     */
+
+    public void addDirectory(Path directory) {
+        sources.add(new FileTreeIterator(directory, Integer.MAX_VALUE, file ->
+                dataPattern.matcher(file.getFileName().toString()).matches() && !isExcluded(file)));
+    }
+
+    /**
+     * Добавляет шаблон glob.
+     *
+     * <p> Шаблон разделяется на неизменяемую часть - директории до первого элемента пути со специальными символами -
+     * и остаток, который сравнивается с путями файлов относительно неизменяемой части. Если остаток не содержит
+     * {@code **}, глубина обхода ограничивается количеством его элементов.
+     *
+     * @param workDir Рабочая директория, относительно которой разрешается шаблон.
+     * @param glob Шаблон в формате {@code String}.
+     */
+
+    public void addGlob(String workDir, String glob) {
+        String[] parts = glob.replace('\\', '/').split("/");
+        int firstGlobPart = 0;
+        while (firstGlobPart < parts.length - 1 && !isGlob(parts[firstGlobPart])) {
+            firstGlobPart++;
+        }
+
+        Path base = Paths.get(workDir, String.join("/", Arrays.copyOfRange(parts, 0, firstGlobPart)));
+        String rest = String.join("/", Arrays.copyOfRange(parts, firstGlobPart, parts.length));
+        int maxDepth = rest.contains("**") ? Integer.MAX_VALUE : parts.length - firstGlobPart;
+        PathMatcher matcher = FileSystems.getDefault().getPathMatcher("glob:" + rest);
+
+        if (Files.isDirectory(base)) {
+            sources.add(new FileTreeIterator(base, maxDepth, file ->
+                    matcher.matches(base.relativize(file)) && !isExcluded(file)));
+        }
+    }
+
+    /**
+     * Добавляет файл со списком путей входных файлов, по одному пути в строке.
+     *
+     * @param workDir Рабочая директория, относительно которой разрешаются пути из списка.
+     * @param listFile Путь файла со списком {@link Path}.
+     */
+
+    public void addListFile(String workDir, Path listFile) {
+        sources.add(new ListFileIterator(workDir, listFile, err));
+    }
+
+    /**
+     * Исключает пути из обхода директорий и шаблонов glob.
+     *
+     * @param paths Исключаемые пути в формате {@code String}.
+     */
+
+    public void exclude(String... paths) {
+        for (String path : paths) {
+            excludedPaths.add(Paths.get(path).toAbsolutePath().normalize());
+        }
+    }
+
+    /**
+     * Проверяет, содержит ли операнд специальные символы шаблона glob.
+     *
+     * @param operand Операнд в формате {@code String}.
+     * @return {@code true}, если операнд является шаблоном glob.
+     */
+
+    public static boolean isGlob(String operand) {
+        return globPattern.matcher(operand).find();
+    }
+
+    @Override
+    public boolean hasNext() {
+        return hasAtLeast(1);
+    }
+
+    @Override
+    public String next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        return lookahead.poll();
+    }
+
+    /**
+     * Проверяет, осталось ли не меньше заданного количества путей.
+     *
+     * <p> Для проверки перечисляется не больше {@code count} путей, которые затем возвращаются из {@link #next()}.
+     *
+     * @param count Количество путей.
+     * @return {@code true}, если осталось не меньше {@code count} путей.
+     */
+
+    public boolean hasAtLeast(int count) {
+        while (lookahead.size() < count && !sources.isEmpty()) {
+            Iterator<String> source = sources.peek();
+            if (source.hasNext()) {
+                lookahead.add(source.next());
+            } else {
+                sources.poll();
+            }
+        }
+        return lookahead.size() >= count;
+    }
+
+    private boolean isExcluded(Path file) {
+        return !excludedPaths.isEmpty() && excludedPaths.contains(file.toAbsolutePath().normalize());
+    }
+
+    /**
+     * Условие отбора файлов при обходе директории.
+     */
+
+    @FunctionalInterface
+    private interface FileFilter {
+        boolean accept(Path file);
+    }
+
+    /**
+     * Ленивый обход дерева директорий в глубину.
+     *
+     * <p> Содержимое каждой директории, включая корневую, читается целиком и сортируется по имени только при входе
+     * в неё, поэтому в памяти находятся только записи директорий текущего пути обхода. Хранятся только имена записей,
+     * а пути создаются по мере обхода.
+     */
+
+    private static final class FileTreeIterator implements Iterator<String> {
+
+        private final ArrayDeque<Iterator<Path>> stack = new ArrayDeque<>();
+        private final int maxDepth;
+        private final FileFilter filter;
+
+        private Path root;
+        private String nextPath = null;
+
+        FileTreeIterator(Path root, int maxDepth, FileFilter filter) {
+            this.root = root;
+            this.maxDepth = maxDepth;
+            this.filter = filter;
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (root != null) {
+                stack.push(listDirectory(root));
+                root = null;
+            }
+            while (nextPath == null && !stack.isEmpty()) {
+                Iterator<Path> entries = stack.peek();
+                if (!entries.hasNext()) {
+                    stack.pop();
+                    continue;
+                }
+                Path entry = entries.next();
+                if (Files.isDirectory(entry, LinkOption.NOFOLLOW_LINKS)) {
+                    if (stack.size() < maxDepth) {
+                        stack.push(listDirectory(entry));
+                    }
+                } else if (Files.isRegularFile(entry) && filter.accept(entry)) {
+                    nextPath = entry.toString();
+                }
+            }
+            return nextPath != null;
+        }
+
+        @Override
+        public String next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            String path = nextPath;
+            nextPath = null;
+            return path;
+        }
+
+        private static Iterator<Path> listDirectory(Path directory) {
+            ArrayList<String> names = new ArrayList<>();
+
+            try (DirectoryStream<Path> ds = Files.newDirectoryStream(directory)) {
+                for (Path entry : ds) {
+                    names.add(entry.getFileName().toString());
+                }
+            } catch (IOException e) {
+                throw new RuntimeException("Unable to read the input directory. Please try again.", e);
+            }
+            names.sort(Comparator.naturalOrder());
+            return names.stream().map(directory::resolve).iterator();
+        }
+    }
+
+    /**
+     * Ленивое чтение путей из файла со списком.
+     *
+     * <p> Файл открывается при запросе первого пути и закрывается после чтения последней строки.
+     */
+
+    private static final class ListFileIterator implements Iterator<String> {
+
+        private final String workDir;
+        private final Path listFile;
+        private final PrintStream err;
+
+        private BufferedReader br = null;
+        private boolean finished = false;
+        private String nextPath = null;
+
+        ListFileIterator(String workDir, Path listFile, PrintStream err) {
+            this.workDir = workDir;
+            this.listFile = listFile;
+            this.err = err;
+        }
+
+        @Override
+        public boolean hasNext() {
+            try {
+                if (br == null && !finished) {
+                    br = Files.newBufferedReader(listFile);
+                }
+                while (nextPath == null && !finished) {
+                    String line = br.readLine();
+                    if (line == null) {
+                        finished = true;
+                        br.close();
+                        break;
+                    }
+                    line = line.trim();
+                    if (line.isEmpty()) {
+                        continue;
+                    }
+                    if (!dataPattern.matcher(line).matches()) {
+                        err.printf("Invalid operand passed \"%s\".\n", line);
+                        continue;
+                    }
+                    Path filePath = Paths.get(workDir, line);
+                    if (Files.exists(filePath)) {
+                        nextPath = filePath.toString();
+                    } else {
+                        err.printf("The passed input file \"%s\" does not exist.\n", line);
+                    }
+                }
+            } catch (IOException e) {
+                finished = true;
+                throw new RuntimeException("Unable to read the list of input files. Please try again.", e);
+            }
+            return nextPath != null;
+        }
+
+        @Override
+        public String next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            String path = nextPath;
+            nextPath = null;
+            return path;
+        }
+    }
+}
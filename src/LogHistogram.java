@@ -0,0 +1,119 @@
+import java.util.ArrayList;
+
+/**
+ * Класс для построения гистограммы значений с логарифмическими корзинами в ограниченной памяти.
+ *
+ * <p> Каждая корзина соответствует диапазону {@code [2^e, 2^(e+1))} по модулю значения. Отрицательные
+ * и положительные значения учитываются в отдельных корзинах, нули и бесконечности — в отдельных счётчиках.
+ * Номер корзины определяется по двоичному порядку числа без логарифмов, поэтому добавление значения выполняется
+ * за {@code O(1)}.
+ *
+ * <p> Число корзин ограничено диапазоном порядков типа {@code double}, поэтому память не зависит от количества
+ * значений. Субнормальные числа попадают в корзину наименьшего нормального порядка.
+ *
+ * <p> Класс не является потокобезопасным.
+ */
+
+public class LogHistogram {
+
+    private static final int minExponent = Double.MIN_EXPONENT;
+    private static final int maxExponent = Double.MAX_EXPONENT;
+    private static final int bucketsCount = maxExponent - minExponent + 1;
+
+    private final long[] positiveBuckets = new long[bucketsCount];
+    private final long[] negativeBuckets = new long[bucketsCount];
+
+    private long zeroCount = 0;
+    private long positiveInfinityCount = 0;
+    private long negativeInfinityCount = 0;
+
+    /**
+     * Добавляет целочисленное значение. Порядок рассчитывается точно, без приведения к {@code double}.
+     *
+     * @param value Значение в формате {@code long}.
+     */
+
+    public void add(long value) {
+        if (value == 0) {
+            zeroCount++;
+            return;
+        }
+        // Для Long.MIN_VALUE модуль переполняется, но число ведущих нулей остаётся верным: порядок равен 63.
+        int exponent = 63 - Long.numberOfLeadingZeros(value < 0 ? -value : value);
+        (value < 0 ? negativeBuckets : positiveBuckets)[exponent - minExponent]++;
+    }
+
+    /**
+     * Добавляет вещественное значение. Значения {@code NaN} игнорируются.
+     *
+     * @param value Значение в формате {@code double}.
+     */
+
+    public void add(double value) {
+        if (Double.isNaN(value)) {
+            return;
+        }
+        if (value == 0d) {
+            zeroCount++;
+        } else if (value == Double.POSITIVE_INFINITY) {
+            positiveInfinityCount++;
+        } else if (value == Double.NEGATIVE_INFINITY) {
+            negativeInfinityCount++;
+        } else {
+            int exponent = Math.max(Math.getExponent(value), minExponent);
+            (value < 0 ? negativeBuckets : positiveBuckets)[exponent - minExponent]++;
+        }
+    }
+
+    /**
+     * Формирует строки вывода для всех непустых корзин в порядке возрастания значений.
+     *
+     * <p> Границы корзин с порядком от {@code 0} до {@code 62} выводятся числами, остальные — в виде {@code 2^e}.
+     *
+     * @param indent Отступ перед каждой строкой в формате {@code String}.
+     * @return Строки гистограммы, каждая из которых завершается переводом строки.
+     */
+
+    public String format(String indent) {
+        ArrayList<String> labels = new ArrayList<>();
+        ArrayList<Long> counts = new ArrayList<>();
+
+        addRow(labels, counts, "-inf", negativeInfinityCount);
+        for (int i = bucketsCount - 1; i >= 0; i--) {
+            int exponent = i + minExponent;
+            addRow(labels, counts,
+                    "(-%s, -%s]".formatted(bound(exponent + 1), bound(exponent)), negativeBuckets[i]);
+        }
+        addRow(labels, counts, "0", zeroCount);
+        for (int i = 0; i < bucketsCount; i++) {
+            int exponent = i + minExponent;
+            addRow(labels, counts,
+                    "[%s, %s)".formatted(bound(exponent), bound(exponent + 1)), positiveBuckets[i]);
+        }
+        addRow(labels, counts, "+inf", positiveInfinityCount);
+
+        int width = 0;
+        for (String label : labels) {
+            width = Math.max(width, label.length() + 1);
+        }
+        StringBuilder result = new StringBuilder();
+        for (int i = 0; i < labels.size(); i++) {
+            result.append(indent).append(("- %-" + width + "s %d\n").formatted(labels.get(i) + ":", counts.get(i)));
+        }
+        return result.toString();
+    }
+
+    private static void addRow(ArrayList<String> labels, ArrayList<Long> counts, String label, long count) {
+        if (count > 0) {
+            labels.add(label);
+            counts.add(count);
+        }
+    }
+
+    private static String bound(int exponent) {
+        if (exponent >= 0 && exponent <= 62) {
+            return Long.toString(1L << exponent);
+        }
+        return "2^" + exponent;
+    }
+}
@@ -1,93 +1,107 @@
-import java.util.ArrayList;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.channels.WritableByteChannel;
+import java.util.Arrays;
 
 public class Main {
 
     static void main(String[] args) {
 
-//  -- Объявление и инициализация результирующих массивов --
+//  -- Режимы демона и клиента --
+//  Демон принимает запросы клиентов через сокет Unix и выполняет их в одном процессе, клиент передаёт демону
+//  аргументы и рабочую директорию и выводит полученный ответ.
 
-        ArrayList<Long> integerList = new ArrayList<>();
-        ArrayList<Double> floatList = new ArrayList<>();
-        ArrayList<String> stringList = new ArrayList<>();
-
-//  -- Объявление флагов, путей и массива с путями к входным данным --
-
-        String outputPathIntegers;
-        String outputPathFloats;
-        String outputPathStrings;
+        if (args.length > 0 && args[0].equals("--daemon")) {
+            if (args.length != 2) {
+                System.err.println("The --daemon option takes the socket path and no other arguments. " +
+                        "Use --help for usage information.");
+                System.exit(1);
+            }
+            try {
+                DaemonServer.serve(args[1]);
+            } catch (IOException | RuntimeException e) {
+                System.err.println(e.getMessage());
+                System.exit(1);
+            }
+            return;
+        }
 
-        boolean appendFlag;
+        if (args.length > 0 && args[0].equals("--client")) {
+            if (args.length < 2) {
+                System.err.println("The --client option takes the socket path. Use --help for usage information.");
+                System.exit(1);
+            }
+            System.exit(DaemonClient.run(args[1], Arrays.copyOfRange(args, 2, args.length)));
+        }
 
-        boolean simpleStatsFlag;
-        boolean fullStatsFlag;
+//  -- Обычный запуск --
 
-        boolean integersWritten;
-        boolean floatsWritten;
-        boolean stringsWritten;
+        int exitCode = run(args, System.getProperty("user.dir"), true, null, System.out, System.err);
+        if (exitCode != 0) {
+            System.exit(exitCode);
+        }
+    }
 
-        ArrayList<String> pathList;
+    /**
+     * Выполняет один запуск утилиты с заданными аргументами.
+     *
+     * <p> Аргументы разбираются в конфигурацию {@link FilterConfig} при помощи {@link ArgumentsHandler}, после чего
+     * запуск выполняется {@link FilterJob}, а его итоговый вывод печатается. Состояние запуска не хранится в общих
+     * полях, поэтому несколько запусков могут выполняться в одном процессе одновременно. Ошибки в аргументах, во
+     * входных данных и в журнале контрольных точек выводятся в поток ошибок и возвращаются кодом завершения,
+     * остальные исключения передаются вызывающей стороне.
+     *
+     * @param args Аргументы запуска.
+     * @param workDir Рабочая директория, относительно которой разрешаются пути из аргументов.
+     * @param stdinAvailable {@code true}, если входные данные можно читать из стандартного ввода процесса.
+     * @param stdout Канал для записи отфильтрованных данных в режиме {@code -c} {@link WritableByteChannel}. Если
+     * передан {@code null}, используется стандартный вывод процесса.
+     * @param out Поток для вывода справки и итогового вывода {@link PrintStream}.
+     * @param err Поток для вывода сообщений об ошибках {@link PrintStream}.
+     * @return Код завершения: {@code 0} при успешном выполнении, {@code 1} при ошибке в аргументах.
+     */
+
+    static int run(
+            String[] args,
+            String workDir,
+            boolean stdinAvailable,
+            WritableByteChannel stdout,
+            PrintStream out,
+            PrintStream err
+    ) {
 
 //  -- Обработка аргументов, переданных на вход утилиты --
 
+        ArgumentsHandler argumentsHandler = new ArgumentsHandler(workDir, stdinAvailable);
         try {
-            ArgumentsHandler.parseArgs(args);
+            argumentsHandler.parseArgs(args);
         } catch (Exception e) {
-            System.err.println(e.getMessage());
-            System.exit(1);
+            err.println(e.getMessage());
+            return 1;
         }
 
-//  -- Загрузка входных данных и их фильтрация в цикле --
-
-        pathList = ArgumentsHandler.getDataPaths();
-        for (String path : pathList) {
-            String data = FileProcessor.loadFile(path);
-            FileProcessor.filter(data, integerList, floatList, stringList);
+        if (argumentsHandler.isHelpFlag()) {
+            out.println(ArgumentsHandler.getHelp());
+            return 0;
         }
 
-//  -- Извлечение выходных путей для отфильтрованных данных и их запись в файлы --
-
-        outputPathIntegers = ArgumentsHandler.getPathIntegers();
-        outputPathFloats = ArgumentsHandler.getPathFloats();
-        outputPathStrings = ArgumentsHandler.getPathStrings();
-        appendFlag = ArgumentsHandler.isAppendFlag();
-
-        integersWritten = FileProcessor.writeFile(integerList, outputPathIntegers, appendFlag);
-        floatsWritten = FileProcessor.writeFile(floatList, outputPathFloats, appendFlag);
-        stringsWritten = FileProcessor.writeFile(stringList, outputPathStrings, appendFlag);
-
-//  -- Формирование вывода в консоль --
+//  -- Проверка входных данных и открытие журнала контрольных точек --
 
-        simpleStatsFlag = ArgumentsHandler.isSimpleStatsFlag();
-        fullStatsFlag = ArgumentsHandler.isFullStatsFlag();
-
-        if (simpleStatsFlag) {
-            if (integersWritten) {
-                ViewHandler.addSimpleStatsIntegers(integerList);
-            }
-
-            if (floatsWritten) {
-                ViewHandler.addSimpleStatsFloats(floatList);
-            }
-
-            if (stringsWritten) {
-                ViewHandler.addSimpleStatsStrings(stringList);
-            }
+        FilterConfig config = argumentsHandler.getConfig();
+        FilterJob job = new FilterJob(config, stdout, err);
+        try {
+            job.prepare();
+        } catch (RuntimeException e) {
+            err.println(e.getMessage());
+            return 1;
         }
 
-        if (fullStatsFlag) {
-            if (integersWritten) {
-                ViewHandler.addFullStatsIntegers(integerList);
-            }
-
-            if (floatsWritten) {
-                ViewHandler.addFullStatsFloats(floatList);
-            }
+//  -- Фильтрация и вывод в консоль --
+//  Если стандартный вывод занят отфильтрованными данными, итоговый вывод печатается в поток ошибок.
 
-            if (stringsWritten) {
-                ViewHandler.addFullStatsStrings(stringList);
-            }
-        }
-        ViewHandler.createFinalView();
-        ViewHandler.showFinalView();
+        FilterReport report = job.run();
+        PrintStream viewStream = config.getStdoutSelection() != null ? err : out;
+        viewStream.println(report.view());
+        return 0;
     }
-}
\ No newline at end of file
+}
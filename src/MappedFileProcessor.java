@@ -0,0 +1,110 @@
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharacterCodingException;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Класс для фильтрации входных файлов, отображённых в память.
+ *
+ * <p> Файл отображается в память при помощи {@link FileChannel#map(FileChannel.MapMode, long, long)} окнами
+ * фиксированного размера, и байты просматриваются напрямую при помощи {@link ByteRowScanner}: границы строк ищутся
+ * по байту {@code \n}, а числовые строки классифицируются и разбираются прямо по байтам отображения. Декодирование
+ * байтов в {@code String} выполняется только для строк, определённых как строковый тип данных.
+ *
+ * <p> Отображение в память допустимо только для байт-совместимых кодировок, см.
+ * {@link InputEncoding#isByteCompatible()}. Пустые строки в конце данных отбрасываются.
+ */
+
+public class MappedFileProcessor {
+
+    private static final long mapWindowSize = 256L * 1024 * 1024;
+
+    /**
+     * Фильтрует входной файл в кодировке по умолчанию {@link InputEncoding#DEFAULT}, отображённый в память, и передаёт
+     * строки получателю.
+     *
+     * @param path Путь входного файла в формате {@code String}.
+     * @param sink Получатель отфильтрованных строк {@link RowSink}.
+     */
+
+    public static void filterFile(
+            String path,
+            RowSink sink
+    ) {
+        filterFile(path, InputEncoding.DEFAULT, sink);
+    }
+
+    /**
+     * Фильтрует входной файл, отображённый в память, и передаёт строки получателю.
+     *
+     * @param path Путь входного файла в формате {@code String}.
+     * @param encoding Байт-совместимая кодировка входных данных {@link InputEncoding}.
+     * @param sink Получатель отфильтрованных строк {@link RowSink}.
+     */
+
+    public static void filterFile(
+            String path,
+            InputEncoding encoding,
+            RowSink sink
+    ) {
+        try (FileChannel channel = FileChannel.open(Paths.get(path), StandardOpenOption.READ)) {
+            filterRange(channel, 0, channel.size(), encoding, sink);
+        } catch (CharacterCodingException e) {
+            throw encoding.malformedInputError(path, e);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Фильтрует диапазон байтов входного файла, отображая его в память окнами.
+     *
+     * <p> Окно отображения всегда начинается с начала строки. Незавершённая строка в конце окна переносится
+     * в начало следующего окна. Если окно не содержит ни одного символа {@code \n}, его размер удваивается.
+     *
+     * <p> Обработка исключений передаётся на вышестоящий уровень абстракции.
+     *
+     * @param channel Канал входного файла.
+     * @param start Позиция начала диапазона, совпадающая с началом строки.
+     * @param end Позиция конца диапазона, совпадающая с концом строки или файла.
+     * @param encoding Байт-совместимая кодировка входных данных {@link InputEncoding}.
+     * @param sink Получатель отфильтрованных строк {@link RowSink}.
+     * @return Количество пустых строк в конце диапазона, не переданных получателю.
+     * @throws IOException Если произошла ошибка при отображении файла, строка длиннее 2 ГБ или строка содержит
+     * некорректные последовательности байт при политике {@link InputEncoding.MalformedPolicy#FAIL}.
+     */
+
+    public static int filterRange(
+            FileChannel channel,
+            long start,
+            long end,
+            InputEncoding encoding,
+            RowSink sink
+    ) throws IOException {
+        ByteRowScanner scanner = new ByteRowScanner(sink, encoding);
+        long windowStart = start;
+        long windowSize = mapWindowSize;
+
+        while (windowStart < end) {
+            int length = (int) Math.min(windowSize, end - windowStart);
+            boolean lastWindow = windowStart + length == end;
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, windowStart, length);
+
+            int consumed = scanner.scan(buffer, length, lastWindow);
+            if (lastWindow) {
+                break;
+            }
+            if (consumed == 0) {
+                if (windowSize >= Integer.MAX_VALUE) {
+                    throw new IOException("A line longer than 2 GB cannot be mapped into memory.");
+                }
+                windowSize = Math.min(windowSize * 2, Integer.MAX_VALUE);
+                continue;
+            }
+            windowStart += consumed;
+        }
+        return scanner.getPendingEmptyRows();
+    }
+}
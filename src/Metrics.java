@@ -0,0 +1,558 @@
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.Locale;
+
+/**
+ * Класс для сбора метрик выполнения утилиты по этапам и входным файлам.
+ *
+ * <p> Для каждого этапа {@link Stage} измеряются время выполнения и процессорное время всего процесса, поэтому в
+ * процессорное время входит работа всех потоков обработки. Для каждого входного файла сохраняются размер, количество
+ * строк по типам, время выполнения и процессорное время его обработки. Также считается количество байт, записанных
+ * в выходные файлы.
+ *
+ * <p> Количество прочитанных байт - это сумма размеров входных файлов на диске, а не количество байт, переданных
+ * классификации: для файлов {@code .txt.gz} учитывается размер сжатого файла, а размер стандартного ввода {@code -}
+ * неизвестен и не учитывается. Процессорное время файла, обработанного в виртуальном потоке в режиме {@code -v}, не
+ * измеряется, так как процессорное время потока доступно только для потоков платформы. Если в процессе одновременно выполняется несколько запусков, например в {@link FilterEngine} или
+ * {@link DaemonServer}, процессорное время каждого запуска включает работу остальных.
+ *
+ * <p> Измерения выполняются один раз на этап и один раз на файл, а не на каждую строку, поэтому сбор метрик не влияет
+ * на скорость фильтрации. Если сбор метрик не включён, методы класса ничего не делают, а классы {@code java.lang.management}
+ * не загружаются.
+ *
+ * <p> Метрики выводятся в консоль при помощи {@link ViewHandler} и могут быть сохранены в файл в формате JSON или
+ * в текстовом формате Prometheus.
+ *
+ * <p> Метод {@link #recordFile} потокобезопасен, остальные методы вызываются из основного потока.
+ */
+
+public class Metrics {
+
+    /**
+     * Этапы выполнения утилиты.
+     */
+
+    public enum Stage {
+        FILTER("filter"),
+        WRITE("write"),
+        STATISTICS("statistics");
+
+        private final String label;
+
+        Stage(String label) {
+            this.label = label;
+        }
+
+        public String getLabel() {
+            return label;
+        }
+    }
+
+    /**
+     * Метрики обработки одного входного файла.
+     *
+     * @param index Порядковый номер файла среди входных файлов.
+     * @param path Путь входного файла.
+     * @param bytes Размер файла на диске в байтах, для сжатого файла - размер сжатых данных, или {@code -1} для
+     * стандартного ввода.
+     * @param integers Количество целочисленных строк.
+     * @param floats Количество вещественных строк.
+     * @param strings Количество строковых строк.
+     * @param wallNanos Время обработки в наносекундах.
+     * @param cpuNanos Процессорное время обработки в наносекундах или {@code -1}, если оно недоступно.
+     */
+
+    public record FileMetrics(
+            int index,
+            String path,
+            long bytes,
+            long integers,
+            long floats,
+            long strings,
+            long wallNanos,
+            long cpuNanos
+    ) {
+        public long getLines() {
+            return integers + floats + strings;
+        }
+    }
+
+    /**
+     * Замер обработки одного файла в основном потоке. Количество строк рассчитывается по разнице счётчиков
+     * {@link StatisticsAccumulator} до и после обработки.
+     */
+
+    public class FileProbe {
+
+        private final int index;
+        private final String path;
+        private final long integersBefore;
+        private final long floatsBefore;
+        private final long stringsBefore;
+        private final long wallStart;
+        private final long cpuStart;
+
+        private FileProbe(int index, String path, StatisticsAccumulator stats) {
+            this.index = index;
+            this.path = path;
+            this.integersBefore = stats.getIntegersCount();
+            this.floatsBefore = stats.getFloatsCount();
+            this.stringsBefore = stats.getStringsCount();
+            this.wallStart = System.nanoTime();
+            this.cpuStart = getProcessCpuTime();
+        }
+
+        /**
+         * Завершает замер и сохраняет метрики файла.
+         *
+         * @param stats Накопитель статистики, переданный при начале замера.
+         */
+
+        public void finish(StatisticsAccumulator stats) {
+            long cpuEnd = getProcessCpuTime();
+            recordFile(index, path,
+                    stats.getIntegersCount() - integersBefore,
+                    stats.getFloatsCount() - floatsBefore,
+                    stats.getStringsCount() - stringsBefore,
+                    System.nanoTime() - wallStart,
+                    cpuStart < 0 || cpuEnd < 0 ? -1 : cpuEnd - cpuStart);
+        }
+    }
+
+    private final boolean enabled;
+
+    private final EnumMap<Stage, Long> stageWallNanos = new EnumMap<>(Stage.class);
+    private final EnumMap<Stage, Long> stageCpuNanos = new EnumMap<>(Stage.class);
+    private final EnumMap<Stage, long[]> stageStarts = new EnumMap<>(Stage.class);
+
+    private final ArrayList<FileMetrics> files = new ArrayList<>();
+
+    private boolean outputAppendFlag;
+    private String[] outputPaths = new String[0];
+    private long[] outputSizesBefore = new long[0];
+    private long bytesWritten = 0;
+
+    /**
+     * Создаёт объект для сбора метрик.
+     *
+     * @param enabled Режим сбора метрик в формате {@code boolean}. Если принимает {@code false}, методы класса
+     * ничего не делают.
+     */
+
+    public Metrics(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Начинает замер этапа.
+     *
+     * @param stage Этап выполнения {@link Stage}.
+     */
+
+    public void startStage(Stage stage) {
+        if (!enabled) {
+            return;
+        }
+        stageStarts.put(stage, new long[]{System.nanoTime(), getProcessCpuTime()});
+    }
+
+    /**
+     * Завершает замер этапа. Повторные замеры одного этапа суммируются.
+     *
+     * @param stage Этап выполнения {@link Stage}.
+     */
+
+    public void stopStage(Stage stage) {
+        if (!enabled) {
+            return;
+        }
+        long[] start = stageStarts.remove(stage);
+        if (start == null) {
+            return;
+        }
+        long cpuEnd = getProcessCpuTime();
+        stageWallNanos.merge(stage, System.nanoTime() - start[0], Long::sum);
+        if (start[1] >= 0 && cpuEnd >= 0) {
+            stageCpuNanos.merge(stage, cpuEnd - start[1], Long::sum);
+        }
+    }
+
+    /**
+     * Начинает замер обработки файла в текущем потоке.
+     *
+     * @param index Порядковый номер файла среди входных файлов.
+     * @param path Путь входного файла.
+     * @param stats Накопитель статистики, через который проходят строки файла.
+     * @return Замер {@link FileProbe} или {@code null}, если сбор метрик не включён.
+     */
+
+    public FileProbe startFile(int index, String path, StatisticsAccumulator stats) {
+        if (!enabled) {
+            return null;
+        }
+        return new FileProbe(index, path, stats);
+    }
+
+    /**
+     * Сохраняет метрики обработки файла. Размер файла на диске определяется по пути, для стандартного ввода
+     * сохраняется {@code -1}.
+     *
+     * @param index Порядковый номер файла среди входных файлов.
+     * @param path Путь входного файла.
+     * @param integers Количество целочисленных строк.
+     * @param floats Количество вещественных строк.
+     * @param strings Количество строковых строк.
+     * @param wallNanos Время обработки в наносекундах.
+     * @param cpuNanos Процессорное время обработки в наносекундах или {@code -1}, если оно недоступно.
+     */
+
+    public void recordFile(
+            int index,
+            String path,
+            long integers,
+            long floats,
+            long strings,
+            long wallNanos,
+            long cpuNanos
+    ) {
+        if (!enabled) {
+            return;
+        }
+        long bytes = FileProcessor.isStandardInput(path) ? -1 : new File(path).length();
+        FileMetrics fileMetrics = new FileMetrics(
+                index, path, bytes, integers, floats, strings, wallNanos, cpuNanos);
+        synchronized (files) {
+            files.add(fileMetrics);
+        }
+    }
+
+    /**
+     * Запоминает размеры выходных файлов до записи, чтобы после записи рассчитать количество записанных байт.
+     *
+     * @param appendFlag Режим добавления выходных данных в существующие файлы.
+     * @param paths Пути выходных файлов.
+     */
+
+    public void startOutputs(boolean appendFlag, String... paths) {
+        if (!enabled) {
+            return;
+        }
+        outputAppendFlag = appendFlag;
+        outputPaths = paths;
+        outputSizesBefore = new long[paths.length];
+        for (int i = 0; i < paths.length; i++) {
+            outputSizesBefore[i] = new File(paths[i]).length();
+        }
+    }
+
+    /**
+     * Рассчитывает количество записанных байт по размерам выходных файлов. Файлы, в которые ничего не было записано,
+     * не учитываются.
+     *
+     * @param writtenFlags Признаки записи для каждого пути, переданного в {@link #startOutputs}.
+     */
+
+    public void finishOutputs(boolean... writtenFlags) {
+        if (!enabled) {
+            return;
+        }
+        bytesWritten = 0;
+        for (int i = 0; i < outputPaths.length; i++) {
+            if (writtenFlags[i]) {
+                bytesWritten += new File(outputPaths[i]).length() - (outputAppendFlag ? outputSizesBefore[i] : 0);
+            }
+        }
+    }
+
+    /**
+     * Задаёт количество записанных байт, если данные записывались не в выходные файлы, а в стандартный вывод.
+     *
+     * @param bytes Количество записанных байт.
+     */
+
+    public void setBytesWritten(long bytes) {
+        if (enabled) {
+            bytesWritten = bytes;
+        }
+    }
+
+    /**
+     * @return Метрики входных файлов в порядке их передачи.
+     */
+
+    public ArrayList<FileMetrics> getFiles() {
+        ArrayList<FileMetrics> result;
+        synchronized (files) {
+            result = new ArrayList<>(files);
+        }
+        result.sort(Comparator.comparingInt(FileMetrics::index));
+        return result;
+    }
+
+    /**
+     * @param stage Этап выполнения {@link Stage}.
+     * @return Время выполнения этапа в наносекундах.
+     */
+
+    public long getStageWallNanos(Stage stage) {
+        return stageWallNanos.getOrDefault(stage, 0L);
+    }
+
+    /**
+     * @param stage Этап выполнения {@link Stage}.
+     * @return Процессорное время этапа в наносекундах или {@code -1}, если оно недоступно.
+     */
+
+    public long getStageCpuNanos(Stage stage) {
+        return stageCpuNanos.getOrDefault(stage, -1L);
+    }
+
+    /**
+     * @return Сумма размеров входных файлов на диске без стандартного ввода.
+     */
+
+    public long getBytesRead() {
+        long result = 0;
+        for (FileMetrics file : getFiles()) {
+            if (file.bytes() >= 0) {
+                result += file.bytes();
+            }
+        }
+        return result;
+    }
+
+    public long getBytesWritten() {
+        return bytesWritten;
+    }
+
+    public long getIntegers() {
+        long result = 0;
+        for (FileMetrics file : getFiles()) {
+            result += file.integers();
+        }
+        return result;
+    }
+
+    public long getFloats() {
+        long result = 0;
+        for (FileMetrics file : getFiles()) {
+            result += file.floats();
+        }
+        return result;
+    }
+
+    public long getStrings() {
+        long result = 0;
+        for (FileMetrics file : getFiles()) {
+            result += file.strings();
+        }
+        return result;
+    }
+
+    /**
+     * Сохраняет метрики в файл. Если имя файла оканчивается на {@code .json}, используется формат JSON, иначе
+     * текстовый формат Prometheus.
+     *
+     * <p> Если директории или файла по заданному пути не существует, они создаются при
+     * помощи {@link FileSystemManager}.
+     *
+     * @param path Путь файла метрик в формате {@code String}.
+     */
+
+    public void writeFile(String path) {
+        String content = path.toLowerCase(Locale.ROOT).endsWith(".json") ? toJson() : toPrometheus();
+
+        try (BufferedWriter bw = FileProcessor.openWriter(path, false)) {
+            bw.write(content);
+        } catch (IOException e) {
+            throw new RuntimeException("Error during metrics recording. Please try again.", e);
+        }
+    }
+
+    /**
+     * Формирует метрики в формате JSON. Время указывается в секундах.
+     *
+     * @return Метрики в формате JSON.
+     */
+
+    public String toJson() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("{\n");
+        sb.append("  \"bytes_read\": ").append(getBytesRead()).append(",\n");
+        sb.append("  \"bytes_written\": ").append(getBytesWritten()).append(",\n");
+        sb.append("  \"lines\": {\"integer\": ").append(getIntegers())
+                .append(", \"float\": ").append(getFloats())
+                .append(", \"string\": ").append(getStrings()).append("},\n");
+
+        sb.append("  \"stages\": {");
+        Stage[] stages = Stage.values();
+        for (int i = 0; i < stages.length; i++) {
+            sb.append(i == 0 ? "\n" : ",\n");
+            sb.append("    \"").append(stages[i].getLabel()).append("\": {\"wall_seconds\": ")
+                    .append(seconds(getStageWallNanos(stages[i])))
+                    .append(", \"cpu_seconds\": ").append(seconds(getStageCpuNanos(stages[i]))).append('}');
+        }
+        sb.append("\n  },\n");
+
+        sb.append("  \"files\": [");
+        ArrayList<FileMetrics> fileList = getFiles();
+        for (int i = 0; i < fileList.size(); i++) {
+            FileMetrics file = fileList.get(i);
+            sb.append(i == 0 ? "\n" : ",\n");
+            sb.append("    {\"path\": \"").append(escapeJson(file.path())).append('"')
+                    .append(", \"bytes\": ").append(file.bytes() >= 0 ? String.valueOf(file.bytes()) : "null")
+                    .append(", \"lines\": {\"integer\": ").append(file.integers())
+                    .append(", \"float\": ").append(file.floats())
+                    .append(", \"string\": ").append(file.strings()).append('}')
+                    .append(", \"wall_seconds\": ").append(seconds(file.wallNanos()))
+                    .append(", \"cpu_seconds\": ").append(seconds(file.cpuNanos())).append('}');
+        }
+        sb.append(fileList.isEmpty() ? "]\n" : "\n  ]\n");
+        sb.append("}\n");
+        return sb.toString();
+    }
+
+    /**
+     * Формирует метрики в текстовом формате Prometheus. Время указывается в секундах.
+     *
+     * @return Метрики в текстовом формате Prometheus.
+     */
+
+    public String toPrometheus() {
+        StringBuilder sb = new StringBuilder();
+
+        appendHeader(sb, "txt_filter_bytes_read_total", "counter",
+                "On-disk size of input files, compressed for .gz, excluding the standard input.");
+        sb.append("txt_filter_bytes_read_total ").append(getBytesRead()).append('\n');
+        appendHeader(sb, "txt_filter_bytes_written_total", "counter", "Bytes written to output files.");
+        sb.append("txt_filter_bytes_written_total ").append(getBytesWritten()).append('\n');
+
+        appendHeader(sb, "txt_filter_lines_total", "counter", "Classified lines by type.");
+        sb.append("txt_filter_lines_total{type=\"integer\"} ").append(getIntegers()).append('\n');
+        sb.append("txt_filter_lines_total{type=\"float\"} ").append(getFloats()).append('\n');
+        sb.append("txt_filter_lines_total{type=\"string\"} ").append(getStrings()).append('\n');
+
+        appendHeader(sb, "txt_filter_stage_wall_seconds", "gauge", "Wall-clock time of each stage.");
+        for (Stage stage : Stage.values()) {
+            sb.append("txt_filter_stage_wall_seconds{stage=\"").append(stage.getLabel()).append("\"} ")
+                    .append(seconds(getStageWallNanos(stage))).append('\n');
+        }
+        appendHeader(sb, "txt_filter_stage_cpu_seconds", "gauge", "Process CPU time of each stage.");
+        for (Stage stage : Stage.values()) {
+            if (getStageCpuNanos(stage) >= 0) {
+                sb.append("txt_filter_stage_cpu_seconds{stage=\"").append(stage.getLabel()).append("\"} ")
+                        .append(seconds(getStageCpuNanos(stage))).append('\n');
+            }
+        }
+
+        ArrayList<FileMetrics> fileList = getFiles();
+        appendHeader(sb, "txt_filter_file_bytes", "gauge", "On-disk size of each input file, compressed for .gz.");
+        for (FileMetrics file : fileList) {
+            if (file.bytes() >= 0) {
+                sb.append("txt_filter_file_bytes{file=\"").append(escapeLabel(file.path())).append("\"} ")
+                        .append(file.bytes()).append('\n');
+            }
+        }
+        appendHeader(sb, "txt_filter_file_lines", "gauge", "Classified lines of each input file by type.");
+        for (FileMetrics file : fileList) {
+            String label = escapeLabel(file.path());
+            sb.append("txt_filter_file_lines{file=\"").append(label).append("\",type=\"integer\"} ")
+                    .append(file.integers()).append('\n');
+            sb.append("txt_filter_file_lines{file=\"").append(label).append("\",type=\"float\"} ")
+                    .append(file.floats()).append('\n');
+            sb.append("txt_filter_file_lines{file=\"").append(label).append("\",type=\"string\"} ")
+                    .append(file.strings()).append('\n');
+        }
+        appendHeader(sb, "txt_filter_file_wall_seconds", "gauge", "Wall-clock time of each input file.");
+        for (FileMetrics file : fileList) {
+            sb.append("txt_filter_file_wall_seconds{file=\"").append(escapeLabel(file.path())).append("\"} ")
+                    .append(seconds(file.wallNanos())).append('\n');
+        }
+        appendHeader(sb, "txt_filter_file_cpu_seconds", "gauge", "CPU time of each input file.");
+        for (FileMetrics file : fileList) {
+            if (file.cpuNanos() >= 0) {
+                sb.append("txt_filter_file_cpu_seconds{file=\"").append(escapeLabel(file.path())).append("\"} ")
+                        .append(seconds(file.cpuNanos())).append('\n');
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Возвращает процессорное время всех потоков процесса.
+     *
+     * @return Процессорное время в наносекундах или {@code -1}, если оно недоступно.
+     */
+
+    public static long getProcessCpuTime() {
+        if (ManagementFactory.getOperatingSystemMXBean() instanceof com.sun.management.OperatingSystemMXBean bean) {
+            return bean.getProcessCpuTime();
+        }
+        return -1;
+    }
+
+    /**
+     * Возвращает процессорное время текущего потока.
+     *
+     * <p> Для виртуального потока возвращается {@code -1}: {@link ThreadMXBean} не измеряет процессорное время
+     * виртуальных потоков, а время потока-носителя включает работу других виртуальных потоков.
+     *
+     * @return Процессорное время в наносекундах или {@code -1}, если оно недоступно.
+     */
+
+    public static long getThreadCpuTime() {
+        if (Thread.currentThread().isVirtual()) {
+            return -1;
+        }
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        return bean.isCurrentThreadCpuTimeSupported() ? bean.getCurrentThreadCpuTime() : -1;
+    }
+
+    private static void appendHeader(StringBuilder sb, String name, String type, String help) {
+        sb.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        sb.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+    }
+
+    private static String seconds(long nanos) {
+        if (nanos < 0) {
+            return "null";
+        }
+        return String.format(Locale.ROOT, "%.6f", nanos / 1e9);
+    }
+
+    private static String escapeJson(String value) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"' -> sb.append("\\\"");
+                case '\\' -> sb.append("\\\\");
+                case '\n' -> sb.append("\\n");
+                case '\r' -> sb.append("\\r");
+                case '\t' -> sb.append("\\t");
+                default -> {
+                    if (c < ' ') {
+                        sb.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        sb.append(c);
+                    }
+                }
+            }
+        }
+        return sb.toString();
+    }
+
+    private static String escapeLabel(String value) {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+}
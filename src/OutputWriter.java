@@ -0,0 +1,454 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Класс для асинхронной записи отфильтрованных данных в выходные файлы.
+ *
+ * <p> Для каждого типа данных запускается отдельный виртуальный поток записи. Значения, полученные от фильтрации,
+ * собираются в пакеты по {@code 8192} значения, и каждый пакет передаётся потоку записи своего типа через
+ * ограниченную очередь. Поэтому классификация следующих строк и следующих входных файлов выполняется одновременно с
+ * записью предыдущих, а три выходных файла записываются параллельно. Если поток записи не успевает, очередь
+ * заполняется и фильтрация приостанавливается, поэтому размер памяти на запись ограничен и не зависит от объёма
+ * входных данных.
+ *
+ * <p> Готовые списки значений можно передать целиком методами {@link #addIntegers(LongList)},
+ * {@link #addFloats(DoubleList)} и {@link #addStrings(StringArena)}: так записываются результаты фильтрации,
+ * накопленные в памяти. Пакеты строк также собираются в {@link StringArena}, поэтому поток записи копирует их байты
+ * в буфер без повторного кодирования.
+ *
+ * <p> Поведение при записи:
+ * <ul>
+ *      <li>Файл открывается только при получении первого значения своего типа. Если значений данного типа не было,
+ *      файл не создаётся и не перезаписывается.</li>
+ *      <li>Если директории или файла по заданному пути не существует, они создаются при
+ *      помощи {@link FileSystemManager}.</li>
+ *      <li>Ошибка в потоке записи выбрасывается в потоке фильтрации при передаче следующего пакета или при
+ *      закрытии.</li>
+ * </ul>
+ *
+ * <p> Метод {@link #checkpoint()} дожидается записи всех переданных значений и возвращает размеры выходных файлов,
+ * сброшенных на диск. Он используется для контрольных точек {@link CheckpointJournal}.
+ *
+ * <p> Класс также считает количество переданных значений каждого типа, чтобы определить, какие файлы были записаны.
+ *
+ * <p> Методы передачи значений и {@link #close()} должны вызываться из одного потока.
+ */
+
+public class OutputWriter implements RowSink, Closeable {
+
+    private static final int batchSize = 8192;
+    private static final int queueCapacity = 4;
+
+    private final TypeWriter<LongList> integersWriter;
+    private final TypeWriter<DoubleList> floatsWriter;
+    private final TypeWriter<StringArena> stringsWriter;
+
+    private LongList integersBatch = new LongList();
+    private DoubleList floatsBatch = new DoubleList();
+    private StringArena stringsBatch = new StringArena();
+
+    private long integersCount = 0;
+    private long floatsCount = 0;
+    private long stringsCount = 0;
+
+    /**
+     * Создаёт получатель для записи в выходные файлы. Файлы при этом не открываются, потоки записи не запускаются.
+     *
+     * @param pathIntegers Путь файла целочисленных данных в формате {@code String}.
+     * @param pathFloats Путь файла вещественных данных в формате {@code String}.
+     * @param pathStrings Путь файла строковых данных в формате {@code String}.
+     * @param appendFlag Режим добавления выходных данных в существующие файлы в формате {@code boolean}.
+     */
+
+    public OutputWriter(String pathIntegers, String pathFloats, String pathStrings, boolean appendFlag) {
+        this(pathIntegers, pathFloats, pathStrings, appendFlag, ChannelWriter.FsyncPolicy.NONE);
+    }
+
+    /**
+     * Создаёт получатель для записи в выходные файлы с заданной политикой сброса на диск. Файлы при этом не
+     * открываются, потоки записи не запускаются.
+     *
+     * @param pathIntegers Путь файла целочисленных данных в формате {@code String}.
+     * @param pathFloats Путь файла вещественных данных в формате {@code String}.
+     * @param pathStrings Путь файла строковых данных в формате {@code String}.
+     * @param appendFlag Режим добавления выходных данных в существующие файлы в формате {@code boolean}.
+     * @param fsyncPolicy Политика сброса данных на диск {@link ChannelWriter.FsyncPolicy}.
+     */
+
+    public OutputWriter(
+            String pathIntegers,
+            String pathFloats,
+            String pathStrings,
+            boolean appendFlag,
+            ChannelWriter.FsyncPolicy fsyncPolicy
+    ) {
+        this(pathIntegers, pathFloats, pathStrings, new boolean[]{appendFlag, appendFlag, appendFlag}, fsyncPolicy);
+    }
+
+    /**
+     * Создаёт получатель для записи в выходные файлы с отдельным режимом добавления для каждого файла. Используется при
+     * продолжении обработки с контрольной точки, когда часть файлов уже обрезана до записанного размера. Файлы при
+     * этом не открываются, потоки записи не запускаются.
+     *
+     * @param pathIntegers Путь файла целочисленных данных в формате {@code String}.
+     * @param pathFloats Путь файла вещественных данных в формате {@code String}.
+     * @param pathStrings Путь файла строковых данных в формате {@code String}.
+     * @param appendFlags Режимы добавления для файлов целочисленных, вещественных и строковых данных.
+     * @param fsyncPolicy Политика сброса данных на диск {@link ChannelWriter.FsyncPolicy}.
+     */
+
+    public OutputWriter(
+            String pathIntegers,
+            String pathFloats,
+            String pathStrings,
+            boolean[] appendFlags,
+            ChannelWriter.FsyncPolicy fsyncPolicy
+    ) {
+        this.integersWriter = new TypeWriter<>("integers-writer", pathIntegers, appendFlags[0], fsyncPolicy,
+                (cw, batch) -> {
+                    for (int i = 0; i < batch.size(); i++) {
+                        cw.writeLong(batch.get(i));
+                        cw.newLine();
+                    }
+                });
+        this.floatsWriter = new TypeWriter<>("floats-writer", pathFloats, appendFlags[1], fsyncPolicy,
+                (cw, batch) -> {
+                    for (int i = 0; i < batch.size(); i++) {
+                        cw.writeDouble(batch.get(i));
+                        cw.newLine();
+                    }
+                });
+        this.stringsWriter = new TypeWriter<>("strings-writer", pathStrings, appendFlags[2], fsyncPolicy,
+                (cw, batch) -> batch.writeTo(cw));
+    }
+
+    @Override
+    public void addInteger(long value) {
+        integersBatch.add(value);
+        integersCount++;
+        if (integersBatch.size() == batchSize) {
+            integersWriter.submit(integersBatch);
+            integersBatch = new LongList();
+        }
+    }
+
+    @Override
+    public void addFloat(double value) {
+        floatsBatch.add(value);
+        floatsCount++;
+        if (floatsBatch.size() == batchSize) {
+            floatsWriter.submit(floatsBatch);
+            floatsBatch = new DoubleList();
+        }
+    }
+
+    @Override
+    public void addString(String value) {
+        stringsBatch.add(value);
+        stringsCount++;
+        if (stringsBatch.size() == batchSize) {
+            stringsWriter.submit(stringsBatch);
+            stringsBatch = new StringArena();
+        }
+    }
+
+    /**
+     * Передаёт потоку записи готовый список целочисленных значений целиком, без копирования.
+     *
+     * <p> Список не должен изменяться до закрытия получателя.
+     *
+     * @param values Список целочисленных значений {@link LongList}.
+     */
+
+    public void addIntegers(LongList values) {
+        if (values.isEmpty()) {
+            return;
+        }
+        if (!integersBatch.isEmpty()) {
+            integersWriter.submit(integersBatch);
+            integersBatch = new LongList();
+        }
+        integersWriter.submit(values);
+        integersCount += values.size();
+    }
+
+    /**
+     * Передаёт потоку записи готовый список вещественных значений целиком, без копирования.
+     *
+     * <p> Список не должен изменяться до закрытия получателя.
+     *
+     * @param values Список вещественных значений {@link DoubleList}.
+     */
+
+    public void addFloats(DoubleList values) {
+        if (values.isEmpty()) {
+            return;
+        }
+        if (!floatsBatch.isEmpty()) {
+            floatsWriter.submit(floatsBatch);
+            floatsBatch = new DoubleList();
+        }
+        floatsWriter.submit(values);
+        floatsCount += values.size();
+    }
+
+    /**
+     * Передаёт потоку записи готовый список строковых значений целиком, без копирования.
+     *
+     * <p> Список не должен изменяться до закрытия получателя.
+     *
+     * @param values Список строковых значений {@link StringArena}.
+     */
+
+    public void addStrings(StringArena values) {
+        if (values.isEmpty()) {
+            return;
+        }
+        if (!stringsBatch.isEmpty()) {
+            stringsWriter.submit(stringsBatch);
+            stringsBatch = new StringArena();
+        }
+        stringsWriter.submit(values);
+        stringsCount += values.size();
+    }
+
+    /**
+     * Передаёт накопленные пакеты и дожидается, пока потоки записи запишут их и сбросят выходные файлы на диск.
+     *
+     * @return Размеры файлов целочисленных, вещественных и строковых данных в байтах. Для файла, который ещё не был
+     * открыт, возвращается {@code -1}.
+     */
+
+    public long[] checkpoint() {
+        submitPending();
+        return new long[]{integersWriter.checkpoint(), floatsWriter.checkpoint(), stringsWriter.checkpoint()};
+    }
+
+    /**
+     * Передаёт оставшиеся пакеты, дожидается завершения записи и закрывает все открытые выходные файлы.
+     *
+     * <p> Ожидание выполняется для каждого потока записи, даже если в другом потоке произошла ошибка. Первая ошибка
+     * выбрасывается после завершения всех потоков, остальные добавляются к ней как подавленные.
+     */
+
+    @Override
+    public void close() {
+        RuntimeException error = null;
+
+        try {
+            submitPending();
+        } catch (RuntimeException e) {
+            error = e;
+        }
+
+        for (TypeWriter<?> writer : new TypeWriter<?>[]{integersWriter, floatsWriter, stringsWriter}) {
+            RuntimeException e = writer.finish();
+            if (e == null || e == error) {
+                continue;
+            }
+            if (error == null) {
+                error = e;
+            } else {
+                error.addSuppressed(e);
+            }
+        }
+        if (error != null) {
+            throw error;
+        }
+    }
+
+    private void submitPending() {
+        if (!integersBatch.isEmpty()) {
+            integersWriter.submit(integersBatch);
+            integersBatch = new LongList();
+        }
+        if (!floatsBatch.isEmpty()) {
+            floatsWriter.submit(floatsBatch);
+            floatsBatch = new DoubleList();
+        }
+        if (!stringsBatch.isEmpty()) {
+            stringsWriter.submit(stringsBatch);
+            stringsBatch = new StringArena();
+        }
+    }
+
+    public boolean isIntegersWritten() {
+        return integersCount > 0;
+    }
+
+    public boolean isFloatsWritten() {
+        return floatsCount > 0;
+    }
+
+    public boolean isStringsWritten() {
+        return stringsCount > 0;
+    }
+
+    /**
+     * Запись пакета значений одного типа в открытый {@link ChannelWriter}.
+     *
+     * @param <B> Тип пакета значений.
+     */
+
+    @FunctionalInterface
+    private interface BatchFormatter<B> {
+        void write(ChannelWriter cw, B batch) throws IOException;
+    }
+
+    /**
+     * Поток записи одного выходного файла с ограниченной очередью пакетов.
+     *
+     * <p> Поток запускается при передаче первого пакета, а файл открывается при записи первого пакета. После ошибки
+     * поток продолжает забирать пакеты из очереди без записи, чтобы поток фильтрации не заблокировался на заполненной
+     * очереди.
+     *
+     * <p> Контрольная точка передаётся через ту же очередь, поэтому она обрабатывается после всех ранее переданных
+     * пакетов.
+     *
+     * @param <B> Тип пакета значений.
+     */
+
+    private static final class TypeWriter<B> {
+
+        private static final Object endOfData = new Object();
+
+        private final String name;
+        private final String path;
+        private final boolean appendFlag;
+        private final ChannelWriter.FsyncPolicy fsyncPolicy;
+        private final BatchFormatter<B> formatter;
+        private final ArrayBlockingQueue<Object> queue = new ArrayBlockingQueue<>(queueCapacity);
+
+        private Thread thread = null;
+        private volatile RuntimeException error = null;
+
+        TypeWriter(
+                String name,
+                String path,
+                boolean appendFlag,
+                ChannelWriter.FsyncPolicy fsyncPolicy,
+                BatchFormatter<B> formatter
+        ) {
+            this.name = name;
+            this.path = path;
+            this.appendFlag = appendFlag;
+            this.fsyncPolicy = fsyncPolicy;
+            this.formatter = formatter;
+        }
+
+        void submit(B batch) {
+            RuntimeException e = error;
+            if (e != null) {
+                throw e;
+            }
+            if (thread == null) {
+                thread = Thread.ofVirtual().name(name).start(this::run);
+            }
+            put(batch);
+        }
+
+        long checkpoint() {
+            if (thread == null) {
+                return -1;
+            }
+            Checkpoint checkpoint = new Checkpoint();
+            put(checkpoint);
+            try {
+                checkpoint.done.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("File recording was interrupted.", e);
+            }
+            RuntimeException e = error;
+            if (e != null) {
+                throw e;
+            }
+            return checkpoint.size;
+        }
+
+        RuntimeException finish() {
+            if (thread == null) {
+                return null;
+            }
+            try {
+                queue.put(endOfData);
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return new RuntimeException("File recording was interrupted.", e);
+            }
+            return error;
+        }
+
+        private void put(Object item) {
+            try {
+                queue.put(item);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("File recording was interrupted.", e);
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        private void run() {
+            ChannelWriter cw = null;
+
+            try {
+                while (true) {
+                    Object item = queue.take();
+                    if (item == endOfData) {
+                        break;
+                    }
+                    if (item instanceof Checkpoint checkpoint) {
+                        try {
+                            if (error == null && cw != null) {
+                                checkpoint.size = cw.checkpoint();
+                            }
+                        } catch (IOException e) {
+                            error = new RuntimeException("Error during file recording. Please try again.", e);
+                        } finally {
+                            checkpoint.done.countDown();
+                        }
+                        continue;
+                    }
+                    if (error != null) {
+                        continue;
+                    }
+                    try {
+                        if (cw == null) {
+                            cw = new ChannelWriter(path, appendFlag, fsyncPolicy);
+                        }
+                        formatter.write(cw, (B) item);
+                    } catch (IOException e) {
+                        error = new RuntimeException("Error during file recording. Please try again.", e);
+                    } catch (RuntimeException e) {
+                        error = e;
+                    }
+                }
+            } catch (InterruptedException e) {
+                error = new RuntimeException("File recording was interrupted.", e);
+            } finally {
+                if (cw != null) {
+                    try {
+                        cw.close();
+                    } catch (IOException e) {
+                        if (error == null) {
+                            error = new RuntimeException("Error during file recording. Please try again.", e);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Запрос контрольной точки для потока записи.
+     */
+
+    private static final class Checkpoint {
+        final CountDownLatch done = new CountDownLatch(1);
+        volatile long size = -1;
+    }
+}
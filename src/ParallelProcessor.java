@@ -0,0 +1,194 @@
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Класс для параллельной фильтрации нескольких входных файлов.
+ *
+ * <p> Каждый входной файл фильтруется отдельной задачей в пуле потоков фиксированного размера в собственный
+ * {@link FilterResult}. Результаты передаются итоговому получателю строго в порядке путей входных файлов, поэтому
+ * выходные файлы совпадают с результатом последовательной обработки, в том числе в режиме добавления.
+ *
+ * <p> Количество одновременно обрабатываемых и ожидающих объединения файлов ограничено глубиной очереди. Если
+ * первый по порядку файл обрабатывается дольше остальных, новые задачи не запускаются, пока его результат не будет
+ * объединён, поэтому потребление памяти не зависит от количества входных файлов.
+ *
+ * <p> В режиме виртуальных потоков каждая задача выполняется в собственном виртуальном потоке. Такой режим подходит
+ * для большого количества маленьких файлов: обработка в основном ожидает открытия, чтения и закрытия файла, и при
+ * блокировке виртуального потока поток-носитель переходит к другим файлам. Количество одновременно обрабатываемых
+ * файлов ограничивается семафором.
+ *
+ * <p> При включённом сборе метрик время и процессорное время каждого файла измеряются в потоке, который его
+ * обрабатывает.
+ */
+
+public class ParallelProcessor {
+
+    /**
+     * Фильтрует входные файлы в пуле потоков и объединяет результаты в порядке путей.
+     *
+     * <p> Задачи запускаются скользящим окном: в любой момент запущено не более {@code queueDepth} задач, результаты
+     * которых ещё не объединены. Основной поток ожидает завершения самой ранней задачи окна, объединяет её результат
+     * и запускает следующую. После объединения результата файла получателю передаётся {@link RowSink#finishFile(String)}.
+     *
+     * <p> Ошибка при обработке любого файла прерывает обработку и передаётся на вышестоящий уровень абстракции.
+     *
+     * @param paths Пути входных файлов {@link Iterator}. Следующий путь запрашивается только при запуске новой
+     * задачи, поэтому ленивое перечисление путей выполняется одновременно с обработкой уже найденных файлов.
+     * @param threads Количество потоков обработки, а в режиме виртуальных потоков - максимальное количество
+     * одновременно обрабатываемых файлов.
+     * @param queueDepth Максимальное количество файлов, обрабатываемых или ожидающих объединения одновременно.
+     * @param mappedFlag Режим чтения файлов через отображение в память при помощи {@link MappedFileProcessor}.
+     * @param virtualFlag Режим обработки каждого файла в отдельном виртуальном потоке.
+     * @param sink Итоговый получатель отфильтрованных строк {@link RowSink}.
+     * @param metrics Метрики выполнения {@link Metrics}, в которые сохраняются время и количество строк каждого файла.
+     */
+
+    public static void filterFiles(
+            Iterator<String> paths,
+            int threads,
+            int queueDepth,
+            boolean mappedFlag,
+            boolean virtualFlag,
+            RowSink sink,
+            Metrics metrics
+    ) {
+        filterFiles(paths, threads, queueDepth, mappedFlag, virtualFlag, InputEncoding.DEFAULT, sink, metrics);
+    }
+
+    /**
+     * Фильтрует входные файлы в заданной кодировке в пуле потоков и объединяет результаты в порядке путей.
+     *
+     * <p> Поведение совпадает с {@link #filterFiles(Iterator, int, int, boolean, boolean, RowSink, Metrics)}. Если
+     * кодировка не является байт-совместимой, файлы не отображаются в память.
+     *
+     * @param paths Пути входных файлов {@link Iterator}.
+     * @param threads Количество потоков обработки, а в режиме виртуальных потоков - максимальное количество
+     * одновременно обрабатываемых файлов.
+     * @param queueDepth Максимальное количество файлов, обрабатываемых или ожидающих объединения одновременно.
+     * @param mappedFlag Режим чтения файлов через отображение в память при помощи {@link MappedFileProcessor}.
+     * @param virtualFlag Режим обработки каждого файла в отдельном виртуальном потоке.
+     * @param encoding Кодировка входных данных {@link InputEncoding}.
+     * @param sink Итоговый получатель отфильтрованных строк {@link RowSink}.
+     * @param metrics Метрики выполнения {@link Metrics}, в которые сохраняются время и количество строк каждого файла.
+     */
+
+    public static void filterFiles(
+            Iterator<String> paths,
+            int threads,
+            int queueDepth,
+            boolean mappedFlag,
+            boolean virtualFlag,
+            InputEncoding encoding,
+            RowSink sink,
+            Metrics metrics
+    ) {
+        boolean mapped = mappedFlag && encoding.isByteCompatible();
+        ExecutorService executor = virtualFlag
+                ? Executors.newVirtualThreadPerTaskExecutor()
+                : Executors.newFixedThreadPool(threads);
+        Semaphore permits = virtualFlag ? new Semaphore(threads) : null;
+        ArrayDeque<Future<FilterResult>> window = new ArrayDeque<>();
+        ArrayDeque<String> windowPaths = new ArrayDeque<>();
+        int nextIndex = 0;
+
+        try {
+            while (paths.hasNext() || !window.isEmpty()) {
+                while (window.size() < queueDepth && paths.hasNext()) {
+                    int index = nextIndex++;
+                    String path = paths.next();
+                    windowPaths.add(path);
+                    window.add(executor.submit(() -> {
+                        if (permits == null) {
+                            return filterFile(index, path, mapped, encoding, metrics);
+                        }
+                        permits.acquire();
+                        try {
+                            return filterFile(index, path, mapped, encoding, metrics);
+                        } finally {
+                            permits.release();
+                        }
+                    }));
+                }
+
+                FilterResult result = awaitResult(window.poll());
+                result.mergeInto(sink);
+                sink.finishFile(windowPaths.poll());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Фильтрует один входной файл в собственный {@link FilterResult} и сохраняет его метрики.
+     *
+     * <p> Для внутриклассового использования.
+     *
+     * @param index Порядковый номер входного файла.
+     * @param path Путь входного файла в формате {@code String}.
+     * @param mappedFlag Режим чтения файла через отображение в память при помощи {@link MappedFileProcessor}.
+     * @param encoding Кодировка входных данных {@link InputEncoding}.
+     * @param metrics Метрики выполнения {@link Metrics}.
+     * @return Результат фильтрации {@link FilterResult}.
+     */
+
+    private static FilterResult filterFile(
+            int index,
+            String path,
+            boolean mappedFlag,
+            InputEncoding encoding,
+            Metrics metrics
+    ) {
+        long wallStart = System.nanoTime();
+        long cpuStart = metrics.isEnabled() ? Metrics.getThreadCpuTime() : -1;
+
+        FilterResult result = new FilterResult();
+        if (mappedFlag && !FileProcessor.isSequentialOnly(path)) {
+            MappedFileProcessor.filterFile(path, encoding, result);
+        } else {
+            FileProcessor.filterFile(path, encoding, result);
+        }
+
+        if (metrics.isEnabled()) {
+            long cpuEnd = Metrics.getThreadCpuTime();
+            metrics.recordFile(index, path,
+                    result.getIntegerList().size(),
+                    result.getFloatList().size(),
+                    result.getStringArena().size(),
+                    System.nanoTime() - wallStart,
+                    cpuStart < 0 || cpuEnd < 0 ? -1 : cpuEnd - cpuStart);
+        }
+        return result;
+    }
+
+    /**
+     * Ожидает результат задачи фильтрации.
+     *
+     * <p> Для внутриклассового использования.
+     *
+     * <p> Исключение, возникшее в задаче, выбрасывается повторно без обёртки, чтобы сообщение об ошибке совпадало с
+     * последовательной обработкой.
+     *
+     * @param future Задача фильтрации.
+     * @return Результат фильтрации {@link FilterResult}.
+     */
+
+    private static FilterResult awaitResult(Future<FilterResult> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("File processing was interrupted.", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new RuntimeException(e.getCause());
+        }
+    }
+}
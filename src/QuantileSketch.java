@@ -0,0 +1,227 @@
+import java.util.Arrays;
+
+/**
+ * Класс для приближённого расчёта квантилей потока значений в ограниченной памяти.
+ *
+ * <p> Реализация основана на скетче KLL (Karnin, Lang, Liberty). Значения складываются в иерархию компакторов:
+ * компактор уровня {@code h} хранит значения с весом {@code 2^h}. При переполнении уровень сортируется, и каждое
+ * второе значение со случайным смещением переносится на следующий уровень, а остальные отбрасываются. Если значений на
+ * уровне нечётное количество, наибольшее из них остаётся на уровне, поэтому суммарный вес значений всегда равен их
+ * количеству, и ошибка ранга не растёт с количеством значений. Ёмкость уровней
+ * убывает геометрически от верхнего к нижнему, поэтому общий объём памяти равен {@code O(k)} и не зависит от
+ * количества значений.
+ *
+ * <p> Ошибка ранга при {@code k = 200} составляет около {@code 1.5%} от количества значений.
+ *
+ * <p> Генератор случайных смещений инициализируется постоянным значением, поэтому результат для одних и тех же
+ * входных данных воспроизводим.
+ *
+ * <p> Класс не является потокобезопасным.
+ */
+
+public class QuantileSketch {
+
+    private static final int defaultK = 200;
+    private static final double capacityRatio = 2d / 3d;
+    private static final int minCapacity = 8;
+
+    private final int k;
+
+    private double[][] levels = new double[1][];
+    private int[] sizes = new int[1];
+    private int[] capacities = new int[1];
+
+    private long count = 0;
+    private int retained = 0;
+    private int maxRetained;
+
+    private long randomState = 0x9E3779B97F4A7C15L;
+
+    /**
+     * Создаёт скетч с параметром точности по умолчанию {@code k = 200}.
+     */
+
+    public QuantileSketch() {
+        this(defaultK);
+    }
+
+    /**
+     * Создаёт скетч с заданным параметром точности.
+     *
+     * @param k Ёмкость верхнего уровня. Чем больше значение, тем точнее квантили и больше расход памяти.
+     */
+
+    public QuantileSketch(int k) {
+        this.k = k;
+        updateCapacities();
+        levels[0] = new double[capacities[0]];
+    }
+
+    /**
+     * Добавляет значение в скетч. Значения {@code NaN} игнорируются.
+     *
+     * @param value Значение в формате {@code double}.
+     */
+
+    public void add(double value) {
+        if (Double.isNaN(value)) {
+            return;
+        }
+        count++;
+        if (sizes[0] == levels[0].length) {
+            levels[0] = Arrays.copyOf(levels[0], levels[0].length * 2);
+        }
+        levels[0][sizes[0]++] = value;
+        retained++;
+
+        while (retained >= maxRetained) {
+            compress();
+        }
+    }
+
+    /**
+     * Находит приближённое значение квантиля.
+     *
+     * <p> Ответственность за наличие хотя бы одного значения передается на вышестоящий уровень абстракции.
+     *
+     * @param fraction Доля значений, не превышающих искомое, в диапазоне от {@code 0} до {@code 1}.
+     * @return Значение квантиля в формате {@code double} или {@code NaN}, если значений не было.
+     */
+
+    public double getQuantile(double fraction) {
+        if (count == 0) {
+            return Double.NaN;
+        }
+        double[][] sorted = new double[levels.length][];
+        long totalWeight = 0;
+
+        for (int level = 0; level < levels.length; level++) {
+            sorted[level] = Arrays.copyOf(levels[level], sizes[level]);
+            Arrays.sort(sorted[level]);
+            totalWeight += (long) sizes[level] << level;
+        }
+
+        double rank = fraction * totalWeight;
+        long cumulative = 0;
+        int[] positions = new int[levels.length];
+        double value = Double.NaN;
+
+        for (int i = 0; i < retained; i++) {
+            int next = nextLevel(sorted, positions);
+            value = sorted[next][positions[next]++];
+            cumulative += 1L << next;
+            if (cumulative >= rank) {
+                return value;
+            }
+        }
+        return value;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * Сжимает самый нижний переполненный уровень, перенося половину его значений на следующий уровень. При нечётном
+     * количестве значений наибольшее значение остаётся на уровне.
+     *
+     * <p> Для внутриклассового использования.
+     */
+
+    private void compress() {
+        for (int level = 0; level < levels.length; level++) {
+            if (sizes[level] < capacities[level]) {
+                continue;
+            }
+            if (level + 1 == levels.length) {
+                addLevel();
+            }
+            double[] source = levels[level];
+            int size = sizes[level];
+            Arrays.sort(source, 0, size);
+
+            int compacted = size & ~1;
+            int offset = nextBit();
+            for (int i = offset; i < compacted; i += 2) {
+                appendToLevel(level + 1, source[i]);
+            }
+            if (compacted < size) {
+                source[0] = source[size - 1];
+            }
+            sizes[level] = size - compacted;
+            retained -= compacted / 2;
+            return;
+        }
+    }
+
+    /**
+     * Добавляет новый верхний уровень. Ёмкости нижних уровней при этом уменьшаются.
+     *
+     * <p> Для внутриклассового использования.
+     */
+
+    private void addLevel() {
+        int height = levels.length + 1;
+        levels = Arrays.copyOf(levels, height);
+        sizes = Arrays.copyOf(sizes, height);
+        updateCapacities();
+        levels[height - 1] = new double[capacities[height - 1]];
+    }
+
+    private void appendToLevel(int level, double value) {
+        if (sizes[level] == levels[level].length) {
+            levels[level] = Arrays.copyOf(levels[level], Math.max(levels[level].length * 2, minCapacity));
+        }
+        levels[level][sizes[level]++] = value;
+    }
+
+    /**
+     * Пересчитывает ёмкости уровней {@code k * (2/3)^(H - 1 - h)}, но не меньше {@code 8}, и их сумму.
+     * Ёмкости меняются только при добавлении уровня, поэтому не рассчитываются при каждом сжатии.
+     *
+     * <p> Для внутриклассового использования.
+     */
+
+    private void updateCapacities() {
+        capacities = new int[levels.length];
+        maxRetained = 0;
+        double capacity = k;
+
+        for (int level = levels.length - 1; level >= 0; level--) {
+            capacities[level] = Math.max(minCapacity, (int) Math.ceil(capacity));
+            maxRetained += capacities[level];
+            capacity *= capacityRatio;
+        }
+    }
+
+    /**
+     * Возвращает случайный бит при помощи генератора xorshift.
+     *
+     * <p> Для внутриклассового использования.
+     */
+
+    private int nextBit() {
+        randomState ^= randomState << 13;
+        randomState ^= randomState >>> 7;
+        randomState ^= randomState << 17;
+        return (int) (randomState >>> 63);
+    }
+
+    /**
+     * Находит уровень, следующее значение которого наименьшее среди отсортированных уровней. Уровней не больше
+     * нескольких десятков, поэтому они сливаются без очереди с приоритетом и без упаковки значений.
+     *
+     * <p> Для внутриклассового использования.
+     */
+
+    private static int nextLevel(double[][] sorted, int[] positions) {
+        int next = -1;
+        for (int level = 0; level < sorted.length; level++) {
+            if (positions[level] < sorted[level].length && (next < 0
+                    || Double.compare(sorted[level][positions[level]], sorted[next][positions[next]]) < 0)) {
+                next = level;
+            }
+        }
+        return next;
+    }
+}
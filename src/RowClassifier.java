@@ -0,0 +1,213 @@
+/**
+ * Класс для определения типа строки входных данных и разбора её числового значения за один проход.
+ *
+ * <p> Класс заменяет проверку строк регулярными выражениями: символы строки просматриваются один раз, при этом
+ * одновременно проверяется формат и накапливается значение числа. Для строк, являющихся числами, не создаётся
+ * ни одного объекта: ни {@link java.util.regex.Matcher}, ни обрезанной копии строки, ни копии с заменённым
+ * разделителем.
+ *
+ * <p> Распознаваемые форматы совпадают с регулярными выражениями, которые использовались ранее:
+ * <ul>
+ *      <li>Целые числа: {@code ^[-+]?\d+$}.</li>
+ *      <li>Вещественные числа: {@code ^[-+]?[\d]+[.,][\d]+(?:[eE][+-]?[\d]+)?$}.</li>
+ * </ul>
+ * Пробельные символы в начале и в конце строки игнорируются так же, как это делает {@link String#trim()}.
+ *
+ * <p> Целые числа, которые не помещаются в тип {@code long}, определяются как строковый тип данных: их значение
+ * нельзя сохранить без потерь, а исходный текст строки при этом сохраняется в выходном файле строк без изменений.
+ *
+ * <p> Вещественное значение вычисляется точно, если мантисса содержит не более 15 значащих цифр, а десятичный
+ * порядок не превышает по модулю 22. В этом случае и мантисса, и степень десяти точно представимы в типе
+ * {@code double}, и одно умножение или деление даёт правильно округлённый результат. В остальных, редких, случаях
+ * значение разбирается при помощи {@link Double#parseDouble(String)}, чтобы результат совпадал с ним побитово.
+ *
+ * <p> Экземпляр класса хранит значение последней разобранной строки и не является потокобезопасным: каждый поток
+ * обработки должен использовать собственный экземпляр.
+ */
+
+public class RowClassifier {
+
+    /**
+     * Тип строки входных данных.
+     */
+
+    public enum RowType {
+        INTEGER,
+        FLOAT,
+        STRING
+    }
+
+    private static final int maxExactDigits = 15;
+    private static final int maxExactExponent = 22;
+    private static final int exponentLimit = 100_000;
+
+    private static final double[] powersOfTen = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10,
+            1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20,
+            1e21, 1e22
+    };
+
+    private long integerValue;
+    private double floatValue;
+
+    /**
+     * Определяет тип строки и разбирает её числовое значение.
+     *
+     * <p> Если строка является числом, его значение доступно через {@link #getIntegerValue()} или
+     * {@link #getFloatValue()} до следующего вызова метода.
+     *
+     * @param row Строка входных данных.
+     * @return Тип строки {@link RowType}.
+     */
+
+    public RowType classify(CharSequence row) {
+        int start = 0;
+        int end = row.length();
+
+        while (start < end && row.charAt(start) <= ' ') {
+            start++;
+        }
+        while (end > start && row.charAt(end - 1) <= ' ') {
+            end--;
+        }
+        if (start == end) {
+            return RowType.STRING;
+        }
+
+        int i = start;
+        boolean negative = false;
+        char c = row.charAt(i);
+
+        if (c == '-' || c == '+') {
+            negative = c == '-';
+            i++;
+        }
+
+        // Целая часть накапливается в отрицательном виде, как в Long.parseLong, чтобы вместить Long.MIN_VALUE.
+        long limit = negative ? Long.MIN_VALUE : -Long.MAX_VALUE;
+        long multiplyLimit = limit / 10;
+        long accumulator = 0;
+        boolean longOverflow = false;
+
+        long mantissa = 0;
+        int significantDigits = 0;
+
+        int integerStart = i;
+        while (i < end && (c = row.charAt(i)) >= '0' && c <= '9') {
+            int digit = c - '0';
+
+            if (!longOverflow) {
+                if (accumulator < multiplyLimit || accumulator * 10 < limit + digit) {
+                    longOverflow = true;
+                } else {
+                    accumulator = accumulator * 10 - digit;
+                }
+            }
+            if (significantDigits > 0 || digit != 0) {
+                significantDigits++;
+                if (significantDigits <= maxExactDigits) {
+                    mantissa = mantissa * 10 + digit;
+                }
+            }
+            i++;
+        }
+
+        if (i == integerStart) {
+            return RowType.STRING;
+        }
+
+        if (i == end) {
+            if (longOverflow) {
+                return RowType.STRING;
+            }
+            integerValue = negative ? accumulator : -accumulator;
+            return RowType.INTEGER;
+        }
+
+        if (c != '.' && c != ',') {
+            return RowType.STRING;
+        }
+        i++;
+
+        int fractionStart = i;
+        int fractionExactDigits = 0;
+        while (i < end && (c = row.charAt(i)) >= '0' && c <= '9') {
+            int digit = c - '0';
+
+            if (significantDigits > 0 || digit != 0) {
+                significantDigits++;
+                if (significantDigits <= maxExactDigits) {
+                    mantissa = mantissa * 10 + digit;
+                    fractionExactDigits++;
+                }
+            } else {
+                fractionExactDigits++;
+            }
+            i++;
+        }
+
+        if (i == fractionStart) {
+            return RowType.STRING;
+        }
+
+        int exponent = 0;
+        if (i < end) {
+            if (c != 'e' && c != 'E') {
+                return RowType.STRING;
+            }
+            i++;
+
+            boolean negativeExponent = false;
+            if (i < end && ((c = row.charAt(i)) == '-' || c == '+')) {
+                negativeExponent = c == '-';
+                i++;
+            }
+
+            int exponentStart = i;
+            while (i < end && (c = row.charAt(i)) >= '0' && c <= '9') {
+                if (exponent < exponentLimit) {
+                    exponent = exponent * 10 + (c - '0');
+                }
+                i++;
+            }
+
+            if (i == exponentStart || i != end) {
+                return RowType.STRING;
+            }
+            if (negativeExponent) {
+                exponent = -exponent;
+            }
+        }
+
+        int decimalExponent = exponent - fractionExactDigits;
+
+        if (significantDigits <= maxExactDigits
+                && decimalExponent >= -maxExactExponent
+                && decimalExponent <= maxExactExponent) {
+            double value = decimalExponent < 0
+                    ? mantissa / powersOfTen[-decimalExponent]
+                    : mantissa * powersOfTen[decimalExponent];
+            floatValue = negative ? -value : value;
+        } else {
+            String number = row.subSequence(start, end).toString().replace(',', '.');
+            floatValue = Double.parseDouble(number);
+        }
+        return RowType.FLOAT;
+    }
+
+    /**
+     * @return Значение последней строки, определённой как целое число, в формате {@code long}.
+     */
+
+    public long getIntegerValue() {
+        return integerValue;
+    }
+
+    /**
+     * @return Значение последней строки, определённой как вещественное число, в формате {@code double}.
+     */
+
+    public double getFloatValue() {
+        return floatValue;
+    }
+}
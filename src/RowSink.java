@@ -0,0 +1,58 @@
+/**
+ * Интерфейс получателя отфильтрованных строк входных данных.
+ *
+ * <p> Интерфейс был создан для отделения фильтрации от того, что происходит с её результатом. Классы фильтрации
+ * передают каждую классифицированную строку получателю сразу после её обработки, а получатель решает, накапливать ли
+ * значения в памяти или сразу записывать их в выходные файлы.
+ *
+ * <p> Реализации:
+ * <ul>
+ *      <li>{@link FilterResult} накапливает значения в списках.</li>
+ *      <li>{@link OutputWriter} сразу записывает значения в выходные файлы.</li>
+ *      <li>{@link StdoutWriter} сразу записывает значения в стандартный вывод.</li>
+ *      <li>{@link SortedOutputWriter} сортирует значения и записывает их в выходные файлы после фильтрации.</li>
+ *      <li>{@link StatisticsAccumulator} рассчитывает статистику и передаёт значения следующему получателю.</li>
+ * </ul>
+ *
+ * <p> Порядок вызовов для каждого типа данных совпадает с порядком строк во входных данных. После всех строк входного
+ * файла вызывается {@link #finishFile(String)}.
+ */
+
+public interface RowSink {
+
+    /**
+     * Принимает строку, определённую как целое число.
+     *
+     * @param value Значение в формате {@code long}.
+     */
+
+    void addInteger(long value);
+
+    /**
+     * Принимает строку, определённую как вещественное число.
+     *
+     * @param value Значение в формате {@code double}.
+     */
+
+    void addFloat(double value);
+
+    /**
+     * Принимает строку, определённую как строковый тип данных.
+     *
+     * @param value Обрезанная строка в формате {@code String}.
+     */
+
+    void addString(String value);
+
+    /**
+     * Сообщает, что все строки входного файла переданы получателю. Вызывается в порядке входных файлов при
+     * последовательной и параллельной обработке.
+     *
+     * <p> По умолчанию ничего не делает. Используется {@link CheckpointJournal} для записи контрольных точек.
+     *
+     * @param path Путь входного файла в формате {@code String}.
+     */
+
+    default void finishFile(String path) {
+    }
+}
@@ -0,0 +1,961 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Класс для записи отсортированных и очищенных от повторов выходных данных.
+ *
+ * <p> В режиме сортировки целые и вещественные числа записываются по возрастанию, в режиме удаления повторов строки
+ * записываются по возрастанию кодов символов без повторов. Если заданы оба режима, повторы удаляются и из чисел.
+ * Вещественные числа упорядочиваются так же, как {@link Double#compare(double, double)}. Значения типов, которые не
+ * сортируются, передаются в {@link OutputWriter} без изменений.
+ *
+ * <p> Значения каждого сортируемого типа накапливаются в буфере. Объём памяти для буферов задаётся на весь запуск и
+ * делится поровну между сортируемыми типами, а доля каждого типа - между заполняемым буфером и буферами серий,
+ * которые сортируются и записываются в фоне, поэтому буферы одного запуска не занимают больше заданного объёма. Числа
+ * хранятся в примитивном массиве {@code long}: вещественные числа переводятся в ключи, порядок которых совпадает с
+ * порядком чисел. Если все значения поместились в буфер, он сортируется в памяти при помощи
+ * {@link Arrays#parallelSort(long[], int, int)} и записывается в выходной файл. Иначе заполненный буфер передаётся
+ * пулу из двух фоновых потоков, который сортирует его и записывает во временный файл - серию, а фильтрация
+ * продолжается в новый буфер. У каждого типа одновременно сортируются и записываются до двух серий, поэтому серии
+ * создаются параллельно друг с другом и с фильтрацией. Серии сливаются {@code k}-путевым
+ * слиянием, не более {@code 64} серий за проход, поэтому объём памяти не зависит от объёма данных.
+ *
+ * <p> В режиме добавления существующий выходной файл считается отсортированным и сливается с новыми значениями во
+ * временный файл рядом с выходным, который затем заменяет выходной файл. Поэтому выходной файл остаётся
+ * отсортированным. Если существующий файл не отсортирован, выбрасывается ошибка.
+ *
+ * <p> Временные файлы создаются в директории выходного файла и удаляются после записи. Если запись не удалась или
+ * фильтрация прервана и вызван {@link #abort()}, фоновые потоки останавливаются, а временные файлы удаляются, поэтому
+ * после неудачных запусков в одном процессе не остаётся ни потоков, ни файлов.
+ *
+ * <p> Методы передачи значений и {@link #close()} должны вызываться из одного потока.
+ */
+
+public class SortedOutputWriter implements RowSink, Closeable {
+
+    private static final int maxFanIn = 64;
+    private static final int streamBufferSize = 64 * 1024;
+    private static final int maxBufferLength = 1 << 27;
+    private static final int stringOverhead = 48;
+    private static final long minBufferBytes = 1L << 20;
+    private static final int runThreads = 2;
+
+    private final OutputWriter passthrough;
+    private final ExecutorService runExecutor;
+
+    private final NumberSorter integersSorter;
+    private final NumberSorter floatsSorter;
+    private final StringSorter stringsSorter;
+
+    private boolean integersWritten = false;
+    private boolean floatsWritten = false;
+    private boolean stringsWritten = false;
+
+    /**
+     * Создаёт получатель для записи отсортированных выходных данных. Выходные файлы записываются при
+     * {@link #close()}.
+     *
+     * @param pathIntegers Путь файла целочисленных данных в формате {@code String}.
+     * @param pathFloats Путь файла вещественных данных в формате {@code String}.
+     * @param pathStrings Путь файла строковых данных в формате {@code String}.
+     * @param appendFlag Режим слияния выходных данных с существующими файлами в формате {@code boolean}.
+     * @param fsyncPolicy Политика сброса данных на диск {@link ChannelWriter.FsyncPolicy}.
+     * @param sortFlag Режим сортировки целых и вещественных чисел.
+     * @param uniqueFlag Режим удаления повторов строк, а вместе с сортировкой - и чисел.
+     * @param memoryBudget Объём памяти в байтах для буферов всех сортируемых типов. Каждый буфер занимает не меньше
+     * {@code 1} МБ.
+     * @param passthrough Получатель {@link OutputWriter} для значений типов, которые не сортируются.
+     */
+
+    public SortedOutputWriter(
+            String pathIntegers,
+            String pathFloats,
+            String pathStrings,
+            boolean appendFlag,
+            ChannelWriter.FsyncPolicy fsyncPolicy,
+            boolean sortFlag,
+            boolean uniqueFlag,
+            long memoryBudget,
+            OutputWriter passthrough
+    ) {
+        int activeSorters = (sortFlag ? 2 : 0) + (uniqueFlag ? 1 : 0);
+        long bufferBytes = Math.max(minBufferBytes, memoryBudget / Math.max(1, activeSorters) / (runThreads + 1));
+
+        this.passthrough = passthrough;
+        this.runExecutor = Executors.newFixedThreadPool(runThreads,
+                Thread.ofPlatform().name("sort-run-", 0).daemon().factory());
+        this.integersSorter = sortFlag
+                ? new NumberSorter(pathIntegers, false, uniqueFlag, appendFlag, fsyncPolicy, bufferBytes)
+                : null;
+        this.floatsSorter = sortFlag
+                ? new NumberSorter(pathFloats, true, uniqueFlag, appendFlag, fsyncPolicy, bufferBytes)
+                : null;
+        this.stringsSorter = uniqueFlag
+                ? new StringSorter(pathStrings, appendFlag, fsyncPolicy, bufferBytes)
+                : null;
+    }
+
+    @Override
+    public void addInteger(long value) {
+        if (integersSorter != null) {
+            integersSorter.add(value);
+        } else {
+            passthrough.addInteger(value);
+        }
+    }
+
+    @Override
+    public void addFloat(double value) {
+        if (floatsSorter != null) {
+            floatsSorter.add(toKey(value));
+        } else {
+            passthrough.addFloat(value);
+        }
+    }
+
+    @Override
+    public void addString(String value) {
+        if (stringsSorter != null) {
+            stringsSorter.add(value);
+        } else {
+            passthrough.addString(value);
+        }
+    }
+
+    /**
+     * Дожидается записи серий, сливает их и записывает отсортированные выходные файлы. Получатель {@link OutputWriter}
+     * для несортируемых типов не закрывается. Если запись не удалась, временные файлы удаляются так же, как в
+     * {@link #abort()}.
+     */
+
+    @Override
+    public void close() {
+        try {
+            if (integersSorter != null) {
+                integersWritten = integersSorter.finish();
+            }
+            if (floatsSorter != null) {
+                floatsWritten = floatsSorter.finish();
+            }
+            if (stringsSorter != null) {
+                stringsWritten = stringsSorter.finish();
+            }
+        } finally {
+            abort();
+        }
+    }
+
+    /**
+     * Прерывает сортировку без записи выходных файлов: дожидается фоновых потоков, останавливает их и удаляет все
+     * временные файлы серий. Повторный вызов и вызов после {@link #close()} ничего не делают.
+     */
+
+    public void abort() {
+        runExecutor.shutdown();
+        boolean interrupted = false;
+        while (true) {
+            try {
+                if (runExecutor.awaitTermination(1, TimeUnit.MINUTES)) {
+                    break;
+                }
+            } catch (InterruptedException e) {
+                interrupted = true;
+                runExecutor.shutdownNow();
+            }
+        }
+
+        if (integersSorter != null) {
+            integersSorter.discard();
+        }
+        if (floatsSorter != null) {
+            floatsSorter.discard();
+        }
+        if (stringsSorter != null) {
+            stringsSorter.discard();
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public boolean isIntegersWritten() {
+        return integersSorter != null ? integersWritten : passthrough.isIntegersWritten();
+    }
+
+    public boolean isFloatsWritten() {
+        return floatsSorter != null ? floatsWritten : passthrough.isFloatsWritten();
+    }
+
+    public boolean isStringsWritten() {
+        return stringsSorter != null ? stringsWritten : passthrough.isStringsWritten();
+    }
+
+    /**
+     * Переводит вещественное число в ключ {@code long}, порядок которого совпадает с
+     * {@link Double#compare(double, double)}: у отрицательных чисел инвертируются все биты, кроме знакового.
+     *
+     * @param value Значение в формате {@code double}.
+     * @return Ключ в формате {@code long}.
+     */
+
+    static long toKey(double value) {
+        long bits = Double.doubleToLongBits(value);
+        return bits ^ ((bits >> 63) & Long.MAX_VALUE);
+    }
+
+    /**
+     * Переводит ключ, полученный при помощи {@link #toKey(double)}, обратно в вещественное число.
+     *
+     * @param key Ключ в формате {@code long}.
+     * @return Значение в формате {@code double}.
+     */
+
+    static double fromKey(long key) {
+        return Double.longBitsToDouble(key ^ ((key >> 63) & Long.MAX_VALUE));
+    }
+
+    /**
+     * Общая часть сортировки одного выходного файла: фоновая запись серий, многопроходное слияние и замена
+     * выходного файла.
+     */
+
+    private abstract class Sorter {
+
+        final String path;
+        final boolean unique;
+        final boolean appendFlag;
+        final ChannelWriter.FsyncPolicy fsyncPolicy;
+        final Path directory;
+        final String fileName;
+
+        final ArrayList<Path> runs = new ArrayList<>();
+        final ArrayDeque<Future<Path>> pendingRuns = new ArrayDeque<>();
+        long count = 0;
+
+        Sorter(String path, boolean unique, boolean appendFlag, ChannelWriter.FsyncPolicy fsyncPolicy) {
+            this.path = path;
+            this.unique = unique;
+            this.appendFlag = appendFlag;
+            this.fsyncPolicy = fsyncPolicy;
+            Path outputPath = Paths.get(path).toAbsolutePath();
+            this.directory = outputPath.getParent();
+            this.fileName = outputPath.getFileName().toString();
+        }
+
+        /**
+         * Сортирует и записывает серию в фоновом потоке. Одновременно сортируется и записывается не больше
+         * {@code runThreads} серий этого типа: если их больше, сначала дожидается самой старой. Поэтому в памяти
+         * находится не больше {@code runThreads + 1} буферов типа.
+         */
+
+        void submitRun(RunTask task) {
+            while (pendingRuns.size() >= runThreads) {
+                awaitOldestRun();
+            }
+            pendingRuns.add(runExecutor.submit(task::write));
+        }
+
+        void awaitPendingRuns() {
+            while (!pendingRuns.isEmpty()) {
+                awaitOldestRun();
+            }
+        }
+
+        private void awaitOldestRun() {
+            try {
+                runs.add(pendingRuns.peek().get());
+            } catch (ExecutionException e) {
+                throw new RuntimeException("Unable to write a temporary sort file. Please try again.", e.getCause());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("Sorting was interrupted.", e);
+            } finally {
+                pendingRuns.poll();
+            }
+        }
+
+        /**
+         * Создаёт временный файл серии и записывает его. Если запись не удалась, файл удаляется.
+         */
+
+        Path writeRunFile(RunBody body) throws IOException {
+            Files.createDirectories(directory);
+            Path run = Files.createTempFile(directory, "." + fileName + "-", ".run");
+            try (DataOutputStream out = openRun(run)) {
+                body.write(out);
+            } catch (IOException | RuntimeException e) {
+                Files.deleteIfExists(run);
+                throw e;
+            }
+            return run;
+        }
+
+        /**
+         * Удаляет серии, в том числе записанные фоновыми потоками, которых ещё не дожидались. Вызывается после
+         * остановки фоновых потоков.
+         */
+
+        void discard() {
+            for (Future<Path> pending : pendingRuns) {
+                if (pending.state() == Future.State.SUCCESS) {
+                    runs.add(pending.resultNow());
+                }
+            }
+            pendingRuns.clear();
+            for (Path run : runs) {
+                try {
+                    Files.deleteIfExists(run);
+                } catch (IOException ignored) {
+                }
+            }
+            runs.clear();
+        }
+
+        /**
+         * Сливает серии и записывает выходной файл.
+         *
+         * @return {@code true}, если был получен хотя бы один элемент и файл был записан.
+         */
+
+        boolean finish() {
+            if (count == 0) {
+                return false;
+            }
+            try {
+                awaitPendingRuns();
+                while (runs.size() > maxFanIn) {
+                    List<Path> group = runs.subList(0, maxFanIn);
+                    Path merged = mergeRuns(group);
+                    for (Path run : group) {
+                        Files.deleteIfExists(run);
+                    }
+                    group.clear();
+                    runs.add(merged);
+                }
+                writeOutput();
+                return true;
+            } catch (IOException e) {
+                throw new RuntimeException("Error during file recording. Please try again.", e);
+            } finally {
+                discard();
+            }
+        }
+
+        /**
+         * Записывает выходной файл. Если существующий файл нужно слить с новыми значениями, результат записывается во
+         * временный файл, который затем заменяет выходной.
+         */
+
+        private void writeOutput() throws IOException {
+            Path target = Paths.get(path);
+
+            if (!appendFlag || !Files.exists(target) || Files.size(target) == 0) {
+                try (ChannelWriter cw = new ChannelWriter(path, appendFlag, fsyncPolicy)) {
+                    writeMerged(cw, null);
+                }
+                return;
+            }
+
+            Path temp = directory.resolve("." + fileName + ".merge" + (fileName.endsWith(".gz") ? ".gz" : ""));
+            try {
+                try (ChannelWriter cw = new ChannelWriter(temp.toString(), false, fsyncPolicy)) {
+                    writeMerged(cw, target);
+                }
+                Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                Files.deleteIfExists(temp);
+            }
+        }
+
+        /**
+         * Открывает существующий выходной файл для построчного чтения.
+         */
+
+        ExistingLineReader openExisting(Path existing) throws IOException {
+            InputStream in = Files.newInputStream(existing);
+            if (fileName.endsWith(".gz")) {
+                in = new GZIPInputStream(in, streamBufferSize);
+            }
+            return new ExistingLineReader(in);
+        }
+
+        RuntimeException notSorted(Path existing) {
+            return new RuntimeException(String.format("The existing output file \"%s\" is not sorted. " +
+                    "Remove the -a option or sort the file first.", existing));
+        }
+
+        abstract Path mergeRuns(List<Path> group) throws IOException;
+
+        abstract void writeMerged(ChannelWriter cw, Path existing) throws IOException;
+    }
+
+    /**
+     * Задача записи одной серии.
+     */
+
+    @FunctionalInterface
+    private interface RunTask {
+        Path write() throws IOException;
+    }
+
+    /**
+     * Запись содержимого серии в открытый файл.
+     */
+
+    @FunctionalInterface
+    private interface RunBody {
+        void write(DataOutputStream out) throws IOException;
+    }
+
+    /**
+     * Сортировка целых или вещественных чисел в виде ключей {@code long}.
+     */
+
+    private final class NumberSorter extends Sorter {
+
+        private final boolean floats;
+        private final int maxLength;
+
+        private long[] buffer = new long[1024];
+        private int size = 0;
+
+        NumberSorter(
+                String path,
+                boolean floats,
+                boolean unique,
+                boolean appendFlag,
+                ChannelWriter.FsyncPolicy fsyncPolicy,
+                long bufferBytes
+        ) {
+            super(path, unique, appendFlag, fsyncPolicy);
+            this.floats = floats;
+            this.maxLength = (int) Math.min(bufferBytes / Long.BYTES, maxBufferLength);
+        }
+
+        void add(long key) {
+            if (size == buffer.length) {
+                if (buffer.length < maxLength) {
+                    buffer = Arrays.copyOf(buffer, Math.min(buffer.length * 2, maxLength));
+                } else {
+                    long[] full = buffer;
+                    int length = size;
+                    submitRun(() -> writeRun(full, length));
+                    buffer = new long[maxLength];
+                    size = 0;
+                }
+            }
+            buffer[size++] = key;
+            count++;
+        }
+
+        private Path writeRun(long[] keys, int length) throws IOException {
+            Arrays.sort(keys, 0, length);
+            return writeRunFile(out -> {
+                for (int i = 0; i < length; i++) {
+                    if (!unique || i == 0 || keys[i] != keys[i - 1]) {
+                        out.writeLong(keys[i]);
+                    }
+                }
+            });
+        }
+
+        @Override
+        Path mergeRuns(List<Path> group) throws IOException {
+            ArrayList<KeySource> sources = new ArrayList<>();
+            try {
+                return writeRunFile(out -> {
+                    for (Path groupRun : group) {
+                        sources.add(new RunKeySource(groupRun));
+                    }
+                    merge(sources, out::writeLong);
+                });
+            } finally {
+                closeAll(sources);
+            }
+        }
+
+        @Override
+        void writeMerged(ChannelWriter cw, Path existing) throws IOException {
+            ArrayList<KeySource> sources = new ArrayList<>();
+            try {
+                if (existing != null) {
+                    sources.add(new TextKeySource(existing));
+                }
+                for (Path run : runs) {
+                    sources.add(new RunKeySource(run));
+                }
+                if (size > 0) {
+                    Arrays.parallelSort(buffer, 0, size);
+                    sources.add(new ArrayKeySource(buffer, size));
+                }
+                merge(sources, key -> {
+                    if (floats) {
+                        cw.writeDouble(fromKey(key));
+                    } else {
+                        cw.writeLong(key);
+                    }
+                    cw.newLine();
+                });
+            } finally {
+                closeAll(sources);
+            }
+        }
+
+        /**
+         * Сливает отсортированные источники при помощи очереди с приоритетом, при необходимости пропуская повторы.
+         */
+
+        private void merge(ArrayList<KeySource> sources, KeyWriter writer) throws IOException {
+            PriorityQueue<KeySource> queue = new PriorityQueue<>(
+                    Math.max(1, sources.size()), (a, b) -> Long.compare(a.head, b.head));
+            for (KeySource source : sources) {
+                if (source.advance()) {
+                    queue.add(source);
+                }
+            }
+
+            boolean first = true;
+            long last = 0;
+            while (!queue.isEmpty()) {
+                KeySource source = queue.poll();
+                long key = source.head;
+                if (!unique || first || key != last) {
+                    writer.write(key);
+                    first = false;
+                    last = key;
+                }
+                if (source.advance()) {
+                    queue.add(source);
+                }
+            }
+        }
+
+        /**
+         * Источник ключей из существующего выходного файла.
+         */
+
+        private final class TextKeySource extends KeySource {
+
+            private final Path existing;
+            private final ExistingLineReader reader;
+            private boolean started = false;
+
+            TextKeySource(Path existing) throws IOException {
+                this.existing = existing;
+                this.reader = openExisting(existing);
+            }
+
+            @Override
+            boolean advance() throws IOException {
+                String line = reader.readLine();
+                if (line == null) {
+                    return false;
+                }
+                long key;
+                try {
+                    key = floats ? toKey(Double.parseDouble(line)) : Long.parseLong(line);
+                } catch (NumberFormatException e) {
+                    throw new RuntimeException(String.format("The existing output file \"%s\" contains " +
+                            "the value \"%s\" that is not a number. Remove the -a option.", existing, line), e);
+                }
+                if (started && key < head) {
+                    throw notSorted(existing);
+                }
+                started = true;
+                head = key;
+                return true;
+            }
+
+            @Override
+            public void close() throws IOException {
+                reader.close();
+            }
+        }
+    }
+
+    /**
+     * Сортировка строк с удалением повторов.
+     */
+
+    private final class StringSorter extends Sorter {
+
+        private final long bufferBytes;
+
+        private ArrayList<String> buffer = new ArrayList<>();
+        private long bytes = 0;
+
+        StringSorter(String path, boolean appendFlag, ChannelWriter.FsyncPolicy fsyncPolicy, long bufferBytes) {
+            super(path, true, appendFlag, fsyncPolicy);
+            this.bufferBytes = bufferBytes;
+        }
+
+        void add(String value) {
+            buffer.add(value);
+            bytes += stringOverhead + 2L * value.length();
+            count++;
+
+            if (bytes >= bufferBytes || buffer.size() == maxBufferLength) {
+                ArrayList<String> full = buffer;
+                submitRun(() -> writeRun(full));
+                buffer = new ArrayList<>();
+                bytes = 0;
+            }
+        }
+
+        private Path writeRun(ArrayList<String> values) throws IOException {
+            values.sort(null);
+            return writeRunFile(out -> {
+                for (int i = 0; i < values.size(); i++) {
+                    if (i == 0 || !values.get(i).equals(values.get(i - 1))) {
+                        writeRunString(out, values.get(i));
+                    }
+                }
+            });
+        }
+
+        @Override
+        Path mergeRuns(List<Path> group) throws IOException {
+            ArrayList<StringSource> sources = new ArrayList<>();
+            try {
+                return writeRunFile(out -> {
+                    for (Path groupRun : group) {
+                        sources.add(new RunStringSource(groupRun));
+                    }
+                    merge(sources, value -> writeRunString(out, value));
+                });
+            } finally {
+                closeAll(sources);
+            }
+        }
+
+        @Override
+        void writeMerged(ChannelWriter cw, Path existing) throws IOException {
+            ArrayList<StringSource> sources = new ArrayList<>();
+            try {
+                if (existing != null) {
+                    sources.add(new TextStringSource(existing));
+                }
+                for (Path run : runs) {
+                    sources.add(new RunStringSource(run));
+                }
+                if (!buffer.isEmpty()) {
+                    String[] values = buffer.toArray(new String[0]);
+                    buffer = new ArrayList<>();
+                    Arrays.parallelSort(values);
+                    sources.add(new ArrayStringSource(values));
+                }
+                merge(sources, value -> {
+                    cw.writeString(value);
+                    cw.newLine();
+                });
+            } finally {
+                closeAll(sources);
+            }
+        }
+
+        private void merge(ArrayList<StringSource> sources, StringWriter writer) throws IOException {
+            PriorityQueue<StringSource> queue = new PriorityQueue<>(
+                    Math.max(1, sources.size()), (a, b) -> a.head.compareTo(b.head));
+            for (StringSource source : sources) {
+                if (source.advance()) {
+                    queue.add(source);
+                }
+            }
+
+            String last = null;
+            while (!queue.isEmpty()) {
+                StringSource source = queue.poll();
+                String value = source.head;
+                if (!value.equals(last)) {
+                    writer.write(value);
+                    last = value;
+                }
+                if (source.advance()) {
+                    queue.add(source);
+                }
+            }
+        }
+
+        /**
+         * Источник строк из существующего выходного файла.
+         */
+
+        private final class TextStringSource extends StringSource {
+
+            private final Path existing;
+            private final ExistingLineReader reader;
+
+            TextStringSource(Path existing) throws IOException {
+                this.existing = existing;
+                this.reader = openExisting(existing);
+            }
+
+            @Override
+            boolean advance() throws IOException {
+                String line = reader.readLine();
+                if (line == null) {
+                    return false;
+                }
+                if (head != null && line.compareTo(head) < 0) {
+                    throw notSorted(existing);
+                }
+                head = line;
+                return true;
+            }
+
+            @Override
+            public void close() throws IOException {
+                reader.close();
+            }
+        }
+    }
+
+    /**
+     * Построчное чтение существующего выходного файла так же, как входных данных в {@link ByteRowScanner}: строки
+     * разделяются только символом {@code \n}, один завершающий {@code \r} отбрасывается, а байты строки декодируются
+     * кодировкой, которой выходные файлы записывает {@link ChannelWriter}. Поэтому строки, содержащие {@code \r},
+     * читаются так же, как были записаны.
+     */
+
+    private static final class ExistingLineReader implements Closeable {
+
+        private final InputStream in;
+        private final byte[] buffer = new byte[streamBufferSize];
+        private int position = 0;
+        private int limit = 0;
+        private byte[] line = new byte[256];
+
+        ExistingLineReader(InputStream in) {
+            this.in = in;
+        }
+
+        /**
+         * @return Следующая строка без перевода строки или {@code null}, если файл закончился.
+         */
+
+        String readLine() throws IOException {
+            int length = 0;
+            boolean any = false;
+            while (true) {
+                if (position == limit) {
+                    limit = in.read(buffer, 0, buffer.length);
+                    position = 0;
+                    if (limit <= 0) {
+                        limit = 0;
+                        if (!any) {
+                            return null;
+                        }
+                        break;
+                    }
+                }
+                any = true;
+                int start = position;
+                while (position < limit && buffer[position] != '\n') {
+                    position++;
+                }
+                int chunk = position - start;
+                if (length + chunk > line.length) {
+                    line = Arrays.copyOf(line, Math.max(line.length * 2, length + chunk));
+                }
+                System.arraycopy(buffer, start, line, length, chunk);
+                length += chunk;
+                if (position < limit) {
+                    position++;
+                    break;
+                }
+            }
+            if (length > 0 && line[length - 1] == '\r') {
+                length--;
+            }
+            return new String(line, 0, length, ChannelWriter.charset);
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+
+    private static DataOutputStream openRun(Path run) throws IOException {
+        return new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(run), streamBufferSize));
+    }
+
+    private static DataInputStream openRunInput(Path run) throws IOException {
+        return new DataInputStream(new BufferedInputStream(Files.newInputStream(run), streamBufferSize));
+    }
+
+    private static void writeRunString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static void closeAll(List<? extends Closeable> sources) throws IOException {
+        IOException error = null;
+        for (Closeable source : sources) {
+            try {
+                source.close();
+            } catch (IOException e) {
+                error = e;
+            }
+        }
+        if (error != null) {
+            throw error;
+        }
+    }
+
+    @FunctionalInterface
+    private interface KeyWriter {
+        void write(long key) throws IOException;
+    }
+
+    @FunctionalInterface
+    private interface StringWriter {
+        void write(String value) throws IOException;
+    }
+
+    /**
+     * Отсортированный источник ключей для слияния. Текущий ключ хранится в {@code head}.
+     */
+
+    private abstract static class KeySource implements Closeable {
+
+        long head;
+
+        abstract boolean advance() throws IOException;
+
+        @Override
+        public void close() throws IOException {
+        }
+    }
+
+    private static final class ArrayKeySource extends KeySource {
+
+        private final long[] keys;
+        private final int length;
+        private int index = 0;
+
+        ArrayKeySource(long[] keys, int length) {
+            this.keys = keys;
+            this.length = length;
+        }
+
+        @Override
+        boolean advance() {
+            if (index == length) {
+                return false;
+            }
+            head = keys[index++];
+            return true;
+        }
+    }
+
+    private static final class RunKeySource extends KeySource {
+
+        private final DataInputStream in;
+
+        RunKeySource(Path run) throws IOException {
+            this.in = openRunInput(run);
+        }
+
+        @Override
+        boolean advance() throws IOException {
+            try {
+                head = in.readLong();
+                return true;
+            } catch (EOFException e) {
+                return false;
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+
+    /**
+     * Отсортированный источник строк для слияния. Текущая строка хранится в {@code head}.
+     */
+
+    private abstract static class StringSource implements Closeable {
+
+        String head;
+
+        abstract boolean advance() throws IOException;
+
+        @Override
+        public void close() throws IOException {
+        }
+    }
+
+    private static final class ArrayStringSource extends StringSource {
+
+        private final String[] values;
+        private int index = 0;
+
+        ArrayStringSource(String[] values) {
+            this.values = values;
+        }
+
+        @Override
+        boolean advance() {
+            if (index == values.length) {
+                return false;
+            }
+            head = values[index];
+            values[index++] = null;
+            return true;
+        }
+    }
+
+    private static final class RunStringSource extends StringSource {
+
+        private final DataInputStream in;
+
+        RunStringSource(Path run) throws IOException {
+            this.in = openRunInput(run);
+        }
+
+        @Override
+        boolean advance() throws IOException {
+            int length;
+            try {
+                length = in.readInt();
+            } catch (EOFException e) {
+                return false;
+            }
+            byte[] bytes = new byte[length];
+            in.readFully(bytes);
+            head = new String(bytes, StandardCharsets.UTF_8);
+            return true;
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+}
@@ -0,0 +1,322 @@
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.MathContext;
+
+/**
+ * Класс для расчёта статистики отфильтрованных данных за один проход во время фильтрации.
+ *
+ * <p> Класс является получателем {@link RowSink}, который обновляет статистику по каждому значению за {@code O(1)}
+ * и передаёт значение следующему получателю. Поэтому для вывода полной статистики не нужны ни дополнительные проходы
+ * по данным, ни хранение отфильтрованных данных в памяти.
+ *
+ * <p> Для числовых типов накапливаются количество элементов, минимальное и максимальное значение и сумма, из которых
+ * рассчитывается среднее. Для строкового типа накапливаются количество элементов и длины наименьшей и наибольшей
+ * строки.
+ *
+ * <p> Сумма целочисленных элементов считается точно: значения складываются в {@code long}, а при переполнении
+ * накопленная часть переносится в {@link BigInteger}. Объекты создаются только в момент переполнения, поэтому пока
+ * сумма помещается в {@code long}, накопление не требует выделения памяти.
+ *
+ * <p> Сумма вещественных элементов считается с компенсацией ошибки округления по алгоритму Ноймайера (улучшенный
+ * алгоритм Кэхэна), что сохраняет точность на миллионах слагаемых разного порядка.
+ *
+ * <p> При включении расширенной статистики дополнительно заполняются скетчи фиксированного размера: {@link QuantileSketch}
+ * для квантилей {@code p50}, {@code p90} и {@code p99}, {@link DistinctCounter} для количества различных значений
+ * и, при необходимости, {@link LogHistogram} для гистограммы. Для строкового типа квантили и гистограмма строятся по
+ * длинам строк, а различные значения считаются по самим строкам. Если расширенная статистика не нужна, скетчи
+ * не создаются и не замедляют фильтрацию.
+ *
+ * <p> Начальные значения минимума и максимума выбраны так, что первое же значение их заменяет, поэтому статистика
+ * корректна и для данных, состоящих только из отрицательных чисел.
+ *
+ * <p> Класс не является потокобезопасным: значения должны передаваться из одного потока, как это делают классы
+ * фильтрации при объединении результатов.
+ */
+
+public class StatisticsAccumulator implements RowSink {
+
+    private final RowSink delegate;
+
+    private long integersCount = 0;
+    private long integersMin = Long.MAX_VALUE;
+    private long integersMax = Long.MIN_VALUE;
+    private long integersSum = 0;
+    private BigInteger integersSumOverflow = BigInteger.ZERO;
+
+    private long floatsCount = 0;
+    private double floatsMin = Double.POSITIVE_INFINITY;
+    private double floatsMax = Double.NEGATIVE_INFINITY;
+    private double floatsSum = 0d;
+    private double floatsSumCompensation = 0d;
+
+    private long stringsCount = 0;
+    private int stringsMinLength = Integer.MAX_VALUE;
+    private int stringsMaxLength = 0;
+
+    private final QuantileSketch integersQuantiles;
+    private final QuantileSketch floatsQuantiles;
+    private final QuantileSketch stringsLengthQuantiles;
+
+    private final DistinctCounter integersDistinct;
+    private final DistinctCounter floatsDistinct;
+    private final DistinctCounter stringsDistinct;
+
+    private final LogHistogram integersHistogram;
+    private final LogHistogram floatsHistogram;
+    private final LogHistogram stringsLengthHistogram;
+
+    /**
+     * Создаёт накопитель статистики, передающий значения следующему получателю.
+     *
+     * @param delegate Получатель, которому передаются значения после обновления статистики.
+     */
+
+    public StatisticsAccumulator(RowSink delegate) {
+        this(delegate, false, false);
+    }
+
+    /**
+     * Создаёт накопитель статистики с расширенной статистикой по скетчам.
+     *
+     * @param delegate Получатель, которому передаются значения после обновления статистики.
+     * @param sketchesFlag Режим расчёта квантилей и количества различных значений в формате {@code boolean}.
+     * @param histogramFlag Режим построения гистограмм в формате {@code boolean}.
+     */
+
+    public StatisticsAccumulator(RowSink delegate, boolean sketchesFlag, boolean histogramFlag) {
+        this.delegate = delegate;
+
+        integersQuantiles = sketchesFlag ? new QuantileSketch() : null;
+        floatsQuantiles = sketchesFlag ? new QuantileSketch() : null;
+        stringsLengthQuantiles = sketchesFlag ? new QuantileSketch() : null;
+
+        integersDistinct = sketchesFlag ? new DistinctCounter() : null;
+        floatsDistinct = sketchesFlag ? new DistinctCounter() : null;
+        stringsDistinct = sketchesFlag ? new DistinctCounter() : null;
+
+        integersHistogram = histogramFlag ? new LogHistogram() : null;
+        floatsHistogram = histogramFlag ? new LogHistogram() : null;
+        stringsLengthHistogram = histogramFlag ? new LogHistogram() : null;
+    }
+
+    @Override
+    public void addInteger(long value) {
+        delegate.addInteger(value);
+
+        integersCount++;
+        long sum = integersSum + value;
+        if (((integersSum ^ sum) & (value ^ sum)) < 0) {
+            integersSumOverflow = integersSumOverflow.add(BigInteger.valueOf(integersSum));
+            sum = value;
+        }
+        integersSum = sum;
+        if (value < integersMin) {
+            integersMin = value;
+        }
+        if (value > integersMax) {
+            integersMax = value;
+        }
+        if (integersQuantiles != null) {
+            integersQuantiles.add((double) value);
+            integersDistinct.add(value);
+        }
+        if (integersHistogram != null) {
+            integersHistogram.add(value);
+        }
+    }
+
+    @Override
+    public void addFloat(double value) {
+        delegate.addFloat(value);
+
+        floatsCount++;
+        double sum = floatsSum + value;
+        if (Math.abs(floatsSum) >= Math.abs(value)) {
+            floatsSumCompensation += (floatsSum - sum) + value;
+        } else {
+            floatsSumCompensation += (value - sum) + floatsSum;
+        }
+        floatsSum = sum;
+        if (value < floatsMin) {
+            floatsMin = value;
+        }
+        if (value > floatsMax) {
+            floatsMax = value;
+        }
+        if (floatsQuantiles != null) {
+            floatsQuantiles.add(value);
+            floatsDistinct.add(value);
+        }
+        if (floatsHistogram != null) {
+            floatsHistogram.add(value);
+        }
+    }
+
+    @Override
+    public void addString(String value) {
+        delegate.addString(value);
+
+        stringsCount++;
+        int length = value.length();
+        if (length < stringsMinLength) {
+            stringsMinLength = length;
+        }
+        if (length > stringsMaxLength) {
+            stringsMaxLength = length;
+        }
+        if (stringsLengthQuantiles != null) {
+            stringsLengthQuantiles.add(length);
+            stringsDistinct.add(value);
+        }
+        if (stringsLengthHistogram != null) {
+            stringsLengthHistogram.add((long) length);
+        }
+    }
+
+    @Override
+    public void finishFile(String path) {
+        delegate.finishFile(path);
+    }
+
+    public long getIntegersCount() {
+        return integersCount;
+    }
+
+    public long getIntegersMin() {
+        return integersMin;
+    }
+
+    public long getIntegersMax() {
+        return integersMax;
+    }
+
+    /**
+     * @return Точная сумма целочисленных элементов в формате {@link BigInteger}.
+     */
+
+    public BigInteger getIntegersSum() {
+        return integersSumOverflow.add(BigInteger.valueOf(integersSum));
+    }
+
+    /**
+     * Ответственность за наличие хотя бы одного элемента передается на вышестоящий уровень абстракции.
+     *
+     * <p> Среднее рассчитывается делением точной суммы, поэтому не теряет точность при суммах больше {@code 2^53}.
+     *
+     * @return Среднее целочисленных элементов в формате {@code double}.
+     */
+
+    public double getIntegersMean() {
+        return new BigDecimal(getIntegersSum())
+                .divide(BigDecimal.valueOf(integersCount), MathContext.DECIMAL128)
+                .doubleValue();
+    }
+
+    public long getFloatsCount() {
+        return floatsCount;
+    }
+
+    public double getFloatsMin() {
+        return floatsMin;
+    }
+
+    public double getFloatsMax() {
+        return floatsMax;
+    }
+
+    /**
+     * Если сумма вышла за пределы {@code double}, компенсация не применяется и возвращается бесконечность или
+     * {@code NaN}, как при обычном сложении.
+     *
+     * @return Сумма вещественных элементов с компенсацией ошибки округления в формате {@code double}.
+     */
+
+    public double getFloatsSum() {
+        if (!Double.isFinite(floatsSum)) {
+            return floatsSum;
+        }
+        return floatsSum + floatsSumCompensation;
+    }
+
+    /**
+     * Ответственность за наличие хотя бы одного элемента передается на вышестоящий уровень абстракции.
+     *
+     * @return Среднее вещественных элементов в формате {@code double}.
+     */
+
+    public double getFloatsMean() {
+        return getFloatsSum() / floatsCount;
+    }
+
+    public long getStringsCount() {
+        return stringsCount;
+    }
+
+    public int getStringsMinLength() {
+        return stringsMinLength;
+    }
+
+    public int getStringsMaxLength() {
+        return stringsMaxLength;
+    }
+
+    /**
+     * @return Скетч квантилей целочисленных элементов или {@code null}, если расширенная статистика не включена.
+     */
+
+    public QuantileSketch getIntegersQuantiles() {
+        return integersQuantiles;
+    }
+
+    /**
+     * @return Скетч квантилей вещественных элементов или {@code null}, если расширенная статистика не включена.
+     */
+
+    public QuantileSketch getFloatsQuantiles() {
+        return floatsQuantiles;
+    }
+
+    /**
+     * @return Скетч квантилей длин строк или {@code null}, если расширенная статистика не включена.
+     */
+
+    public QuantileSketch getStringsLengthQuantiles() {
+        return stringsLengthQuantiles;
+    }
+
+    public DistinctCounter getIntegersDistinct() {
+        return integersDistinct;
+    }
+
+    public DistinctCounter getFloatsDistinct() {
+        return floatsDistinct;
+    }
+
+    public DistinctCounter getStringsDistinct() {
+        return stringsDistinct;
+    }
+
+    /**
+     * @return Гистограмма целочисленных элементов или {@code null}, если гистограммы не включены.
+     */
+
+    public LogHistogram getIntegersHistogram() {
+        return integersHistogram;
+    }
+
+    /**
+     * @return Гистограмма вещественных элементов или {@code null}, если гистограммы не включены.
+     */
+
+    public LogHistogram getFloatsHistogram() {
+        return floatsHistogram;
+    }
+
+    /**
+     * @return Гистограмма длин строк или {@code null}, если гистограммы не включены.
+     */
+
+    public LogHistogram getStringsLengthHistogram() {
+        return stringsLengthHistogram;
+    }
+}
@@ -0,0 +1,285 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.concurrent.ArrayBlockingQueue;
+
+/**
+ * Класс для асинхронной записи отфильтрованных данных в стандартный вывод.
+ *
+ * <p> В стандартный вывод записываются значения одного выбранного типа или значения всех типов в порядке их передачи
+ * получателю. Во втором случае перед каждым значением записывается название его типа и символ табуляции, например
+ * {@code integers\t42}. Значения невыбранных типов отбрасываются. Порядок строк разных типов совпадает с порядком
+ * входных данных, только если получателю передаются строки по одной, поэтому в режиме всех типов {@link FilterJob}
+ * обрабатывает файлы последовательно и без разбиения на части.
+ *
+ * <p> Значения собираются в пакеты по {@code 8192} значения и передаются виртуальному потоку записи через
+ * ограниченную очередь на {@code 4} пакета. Поток записи форматирует значения при помощи {@link ChannelWriter}
+ * и записывает их в канал стандартного вывода: дескриптор стандартного вывода процесса или соединение клиента
+ * {@link DaemonServer}. Если получатель данных читает медленнее, чем идёт фильтрация, запись в канал блокируется,
+ * очередь заполняется и фильтрация приостанавливается, поэтому размер памяти на запись ограничен и не зависит от
+ * объёма входных данных.
+ *
+ * <p> Ошибка записи, например закрытие канала получателем, выбрасывается в потоке фильтрации при передаче следующего
+ * пакета или при закрытии.
+ *
+ * <p> Методы передачи значений и {@link #close()} должны вызываться из одного потока.
+ */
+
+public class StdoutWriter implements RowSink, Closeable {
+
+    /**
+     * Типы данных, которые записываются в стандартный вывод.
+     */
+
+    public enum Selection {
+        INTEGERS,
+        FLOATS,
+        STRINGS,
+        /**
+         * Значения всех типов с названием типа перед каждым значением.
+         */
+        ALL
+    }
+
+    private static final int batchSize = 8192;
+    private static final int queueCapacity = 4;
+
+    private static final byte integerTag = 0;
+    private static final byte floatTag = 1;
+    private static final byte stringTag = 2;
+
+    private static final String[] tagNames = {"integers\t", "floats\t", "strings\t"};
+
+    private static final Batch endOfData = new Batch();
+
+    private final boolean integersSelected;
+    private final boolean floatsSelected;
+    private final boolean stringsSelected;
+    private final boolean tagged;
+    private final WritableByteChannel channel;
+
+    private final ArrayBlockingQueue<Batch> queue = new ArrayBlockingQueue<>(queueCapacity);
+
+    private Thread thread = null;
+    private volatile RuntimeException error = null;
+    private volatile long bytesWritten = 0;
+
+    private Batch batch = new Batch();
+
+    private long integersCount = 0;
+    private long floatsCount = 0;
+    private long stringsCount = 0;
+
+    /**
+     * Создаёт получатель для записи в стандартный вывод. Поток записи при этом не запускается.
+     *
+     * @param selection Типы данных, которые записываются в стандартный вывод, {@link Selection}.
+     * @param channel Канал стандартного вывода {@link WritableByteChannel}. Не закрывается.
+     */
+
+    public StdoutWriter(Selection selection, WritableByteChannel channel) {
+        this.channel = channel;
+        this.integersSelected = selection == Selection.INTEGERS || selection == Selection.ALL;
+        this.floatsSelected = selection == Selection.FLOATS || selection == Selection.ALL;
+        this.stringsSelected = selection == Selection.STRINGS || selection == Selection.ALL;
+        this.tagged = selection == Selection.ALL;
+    }
+
+    @Override
+    public void addInteger(long value) {
+        if (integersSelected) {
+            batch.tags[batch.size++] = integerTag;
+            batch.integers.add(value);
+            integersCount++;
+            submitIfFull();
+        }
+    }
+
+    @Override
+    public void addFloat(double value) {
+        if (floatsSelected) {
+            batch.tags[batch.size++] = floatTag;
+            batch.floats.add(value);
+            floatsCount++;
+            submitIfFull();
+        }
+    }
+
+    @Override
+    public void addString(String value) {
+        if (stringsSelected) {
+            batch.tags[batch.size++] = stringTag;
+            batch.strings.add(value);
+            stringsCount++;
+            submitIfFull();
+        }
+    }
+
+    /**
+     * Передаёт оставшийся пакет, дожидается завершения записи и сбрасывает данные в стандартный вывод. Дескриптор
+     * стандартного вывода не закрывается.
+     */
+
+    @Override
+    public void close() {
+        RuntimeException e = null;
+
+        try {
+            if (batch.size > 0) {
+                submit(batch);
+                batch = new Batch();
+            }
+        } catch (RuntimeException ex) {
+            e = ex;
+        }
+
+        if (thread != null) {
+            try {
+                queue.put(endOfData);
+                thread.join();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("Writing to the standard output was interrupted.", ex);
+            }
+        }
+        if (e == null) {
+            e = error;
+        }
+        if (e != null) {
+            throw e;
+        }
+    }
+
+    public boolean isIntegersWritten() {
+        return integersCount > 0;
+    }
+
+    public boolean isFloatsWritten() {
+        return floatsCount > 0;
+    }
+
+    public boolean isStringsWritten() {
+        return stringsCount > 0;
+    }
+
+    /**
+     * @return Количество байт, записанных в стандартный вывод. Значение актуально после {@link #close()}.
+     */
+
+    public long getBytesWritten() {
+        return bytesWritten;
+    }
+
+    /**
+     * Разбирает название типов данных для записи в стандартный вывод.
+     *
+     * @param name Название: {@code integers}, {@code floats}, {@code strings} или {@code all}.
+     * @return Выбор {@link Selection} или {@code null}, если название не распознано.
+     */
+
+    public static Selection parseSelection(String name) {
+        return switch (name) {
+            case "integers" -> Selection.INTEGERS;
+            case "floats" -> Selection.FLOATS;
+            case "strings" -> Selection.STRINGS;
+            case "all" -> Selection.ALL;
+            default -> null;
+        };
+    }
+
+    private void submitIfFull() {
+        if (batch.size == batchSize) {
+            submit(batch);
+            batch = new Batch();
+        }
+    }
+
+    private void submit(Batch full) {
+        RuntimeException e = error;
+        if (e != null) {
+            throw e;
+        }
+        if (thread == null) {
+            thread = Thread.ofVirtual().name("stdout-writer").start(this::run);
+        }
+        try {
+            queue.put(full);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Writing to the standard output was interrupted.", ex);
+        }
+    }
+
+    /**
+     * Записывает пакеты из очереди в стандартный вывод. После ошибки продолжает забирать пакеты из очереди без записи,
+     * чтобы поток фильтрации не заблокировался на заполненной очереди.
+     */
+
+    private void run() {
+        ChannelWriter cw = new ChannelWriter(channel);
+        byte[][] tagBytes = new byte[tagNames.length][];
+        for (int i = 0; i < tagNames.length; i++) {
+            tagBytes[i] = tagNames[i].getBytes(StandardCharsets.US_ASCII);
+        }
+
+        try {
+            while (true) {
+                Batch item = queue.take();
+                if (item == endOfData) {
+                    break;
+                }
+                if (error != null) {
+                    continue;
+                }
+                try {
+                    write(cw, item, tagBytes);
+                } catch (IOException e) {
+                    error = new RuntimeException("Unable to write to the standard output.", e);
+                }
+            }
+            if (error == null) {
+                cw.flush();
+            }
+        } catch (IOException e) {
+            error = new RuntimeException("Unable to write to the standard output.", e);
+        } catch (InterruptedException e) {
+            error = new RuntimeException("Writing to the standard output was interrupted.", e);
+        } finally {
+            bytesWritten = cw.getBytesWritten();
+        }
+    }
+
+    private void write(ChannelWriter cw, Batch item, byte[][] tagBytes) throws IOException {
+        int integer = 0;
+        int floating = 0;
+        int string = 0;
+
+        for (int i = 0; i < item.size; i++) {
+            byte tag = item.tags[i];
+            if (tagged) {
+                cw.writeAscii(tagBytes[tag]);
+            }
+            switch (tag) {
+                case integerTag -> cw.writeLong(item.integers.get(integer++));
+                case floatTag -> cw.writeDouble(item.floats.get(floating++));
+                default -> cw.writeString(item.strings.get(string++));
+            }
+            cw.newLine();
+        }
+    }
+
+    /**
+     * Пакет значений в порядке их получения. Для каждого значения хранится тип, а сами значения хранятся в списках
+     * своих типов без упаковки.
+     */
+
+    private static final class Batch {
+        final byte[] tags = new byte[batchSize];
+        final LongList integers = new LongList();
+        final DoubleList floats = new DoubleList();
+        final ArrayList<String> strings = new ArrayList<>();
+        int size = 0;
+    }
+}
@@ -0,0 +1,238 @@
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.function.Consumer;
+
+/**
+ * Класс списка строк, хранящихся в байтовых блоках без отдельного объекта на каждую строку.
+ *
+ * <p> Класс был создан для замены {@code ArrayList<String>} при накоплении строковых данных: каждый элемент
+ * {@code ArrayList<String>} - это ссылка, объект {@link String} и его массив байт, то есть три объекта, которые сборщик
+ * мусора обходит при каждой полной сборке. Здесь строки последовательно записываются в блоки {@code byte[]} в
+ * кодировке UTF-8, поэтому количество объектов зависит только от объёма данных, а не от количества строк. Переданные
+ * объекты {@link String} становятся мусором сразу после добавления и собираются в молодом поколении.
+ *
+ * <p> Каждая строка хранится как заголовок и байты UTF-8. Заголовок - число переменной длины: длина строки в символах,
+ * сдвинутая на один бит, и признак символов вне ASCII в младшем бите. Если признак установлен, за ним следует длина в
+ * байтах. Для строк из символов ASCII длины в символах и байтах совпадают, поэтому заголовок короткой строки занимает
+ * один байт. Строка целиком помещается в один блок: если она не помещается в остаток блока, выделяется следующий.
+ *
+ * <p> Блоки имеют размер {@code 1} МБ, строка длиннее блока получает собственный блок. Первый блок выделяется на
+ * {@code 256} байт и удваивается до полного размера блока, поэтому маленькие списки, например результаты фильтрации
+ * небольших входных файлов, не занимают целый блок.
+ *
+ * <p> Доступ к строкам только последовательный: {@link #forEach(Consumer)} восстанавливает объекты {@link String},
+ * а {@link #writeTo(ChannelWriter)} записывает байты строк в выходной файл без их создания. Минимальная и
+ * максимальная длины строк в символах рассчитываются при добавлении.
+ *
+ * <p> Список содержит не более {@link Integer#MAX_VALUE} строк, при попытке добавить больше выбрасывается
+ * исключение.
+ *
+ * <p> Класс не является потокобезопасным.
+ */
+
+public class StringArena {
+
+    private static final int blockSize = 1 << 20;
+    private static final int initialBlockSize = 256;
+    private static final int maxHeaderLength = 10;
+
+    private byte[][] blocks = new byte[8][];
+    private int[] blockLengths = new int[8];
+    private int blockCount = 0;
+    private int position = 0;
+
+    private int size = 0;
+    private int minLength = Integer.MAX_VALUE;
+    private int maxLength = 0;
+
+    /**
+     * Добавляет строку в конец списка.
+     *
+     * @param value Добавляемая строка.
+     * @throws IllegalStateException Если список уже содержит {@link Integer#MAX_VALUE} строк.
+     */
+
+    public void add(String value) {
+        if (size == Integer.MAX_VALUE) {
+            throw new IllegalStateException("Unable to accumulate more than " + Integer.MAX_VALUE + " strings " +
+                    "in memory. Use -w to write the results to the output files without accumulating them.");
+        }
+        int length = value.length();
+        int ascii = 0;
+        while (ascii < length && value.charAt(ascii) < 0x80) {
+            ascii++;
+        }
+
+        if (ascii == length) {
+            byte[] block = reserve(maxHeaderLength + length);
+            position = writeVarInt(block, position, (long) length << 1);
+            for (int i = 0; i < length; i++) {
+                block[position++] = (byte) value.charAt(i);
+            }
+        } else {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            byte[] block = reserve(maxHeaderLength + bytes.length);
+            position = writeVarInt(block, position, ((long) length << 1) | 1);
+            position = writeVarInt(block, position, bytes.length);
+            System.arraycopy(bytes, 0, block, position, bytes.length);
+            position += bytes.length;
+        }
+
+        size++;
+        if (length < minLength) {
+            minLength = length;
+        }
+        if (length > maxLength) {
+            maxLength = length;
+        }
+    }
+
+    /**
+     * Передаёт строки в порядке добавления.
+     *
+     * @param action Действие, выполняемое для каждой строки.
+     */
+
+    public void forEach(Consumer<String> action) {
+        Cursor cursor = new Cursor();
+        while (cursor.next()) {
+            action.accept(new String(cursor.block, cursor.offset, cursor.byteLength,
+                    cursor.ascii ? StandardCharsets.ISO_8859_1 : StandardCharsets.UTF_8));
+        }
+    }
+
+    /**
+     * Записывает строки в порядке добавления, каждую с переводом строки. Байты строк передаются в
+     * {@link ChannelWriter} без создания объектов {@link String}.
+     *
+     * @param cw Открытый {@link ChannelWriter}.
+     * @throws IOException Если произошла ошибка при записи блока.
+     */
+
+    public void writeTo(ChannelWriter cw) throws IOException {
+        Cursor cursor = new Cursor();
+        while (cursor.next()) {
+            cw.writeUtf8(cursor.block, cursor.offset, cursor.byteLength, cursor.ascii);
+            cw.newLine();
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * @return Длина самой короткой строки в символах или {@link Integer#MAX_VALUE}, если список пуст.
+     */
+
+    public int getMinLength() {
+        return minLength;
+    }
+
+    /**
+     * @return Длина самой длинной строки в символах или {@code 0}, если список пуст.
+     */
+
+    public int getMaxLength() {
+        return maxLength;
+    }
+
+    /**
+     * Возвращает блок, в остатке которого помещается заданное количество байт, при необходимости увеличивая первый
+     * блок или выделяя следующий.
+     *
+     * <p> Для внутриклассового использования.
+     *
+     * @param length Количество байт.
+     * @return Текущий блок.
+     */
+
+    private byte[] reserve(int length) {
+        if (blockCount > 0) {
+            byte[] block = blocks[blockCount - 1];
+            if (position + length <= block.length) {
+                return block;
+            }
+            if (blockCount == 1 && block.length < blockSize && position + length <= blockSize) {
+                int grownLength = block.length * 2;
+                while (grownLength < position + length) {
+                    grownLength *= 2;
+                }
+                blocks[0] = Arrays.copyOf(block, Math.min(grownLength, blockSize));
+                return blocks[0];
+            }
+            blockLengths[blockCount - 1] = position;
+        }
+
+        if (blockCount == blocks.length) {
+            blocks = Arrays.copyOf(blocks, blocks.length * 2);
+            blockLengths = Arrays.copyOf(blockLengths, blockLengths.length * 2);
+        }
+        int newLength = blockCount == 0 ? initialBlockSize : blockSize;
+        while (newLength < length) {
+            newLength = newLength < blockSize ? newLength * 2 : length;
+        }
+        blocks[blockCount++] = new byte[newLength];
+        position = 0;
+        return blocks[blockCount - 1];
+    }
+
+    private static int writeVarInt(byte[] target, int offset, long value) {
+        while ((value & ~0x7FL) != 0) {
+            target[offset++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        target[offset++] = (byte) value;
+        return offset;
+    }
+
+    /**
+     * Последовательное чтение строк: после {@link #next()} поля указывают на байты текущей строки.
+     */
+
+    private final class Cursor {
+
+        byte[] block;
+        int offset;
+        int byteLength;
+        boolean ascii;
+
+        private int blockIndex = 0;
+        private int readPosition = 0;
+
+        boolean next() {
+            while (blockIndex < blockCount) {
+                byte[] current = blocks[blockIndex];
+                int limit = blockIndex == blockCount - 1 ? position : blockLengths[blockIndex];
+                if (readPosition < limit) {
+                    long header = readVarInt(current);
+                    ascii = (header & 1) == 0;
+                    byteLength = ascii ? (int) (header >>> 1) : (int) readVarInt(current);
+                    block = current;
+                    offset = readPosition;
+                    readPosition += byteLength;
+                    return true;
+                }
+                blockIndex++;
+                readPosition = 0;
+            }
+            return false;
+        }
+
+        private long readVarInt(byte[] source) {
+            long value = 0;
+            for (int shift = 0; ; shift += 7) {
+                byte b = source[readPosition++];
+                value |= (long) (b & 0x7F) << shift;
+                if (b >= 0) {
+                    return value;
+                }
+            }
+        }
+    }
+}
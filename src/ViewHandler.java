@@ -1,4 +1,5 @@
-import java.util.ArrayList;
+import java.io.PrintStream;
+import java.math.BigInteger;
 
 /**
  * Класс для формирования ответа и вывода в консоль результата работы утилиты.
@@ -7,16 +8,18 @@ import java.util.ArrayList;
  *
  * <p> Любое успешное завершение программы сопровождается уведомлением.
  *
- * <p> Класс содержит следующие статические строковые поля:
+ * <p> Каждый объект класса формирует вывод одного запуска, поэтому запуски, выполняемые одновременно, например
+ * запросы {@link DaemonServer}, не смешивают свои выводы. Объект содержит следующие строковые поля:
  * <ul>
  *      <li>Финальный вывод. Содержит уведомление об успешном выполнении программы.</li>
  *      <li>Вывод по целым типам. Изначально пустое.</li>
  *      <li>Вывод по вещественным типам. Изначально пустое.</li>
  *      <li>Вывод по строковым типам. Изначально пустое.</li>
+ *      <li>Вывод метрик выполнения. Изначально пустое.</li>
  * </ul>
  *
  * При включении режима краткой или полной статистики, к строковым выводам по соответствующим типам сопровождается
- * применением соответствующих статических методов. Например, при включенном режиме полной статистики к полям,
+ * применением соответствующих методов. Например, при включенном режиме полной статистики к полям,
  * отвечающим за свой тип, будут присоединены шаблоны вывода сначала по краткой статистике, потом по полной статистике
  * с рассчитанными значениями статистик. В ситуации, когда не нужно выводить статистику, в консоль будет выведено
  * только уведомление об успешном выполнении программы.
@@ -33,6 +36,9 @@ import java.util.ArrayList;
  *      <li>Максимальное значение.</li>
  *      <li>Сумма.</li>
  *      <li>Среднее.</li>
+ *      <li>Приближённые квантили {@code p50}, {@code p90} и {@code p99}.</li>
+ *      <li>Приближённое количество различных значений.</li>
+ *      <li>Гистограмма с логарифмическими корзинами, если она включена.</li>
  * </ul>
  *
  * <p> Содержание полной статистики по строковому типу:
@@ -40,120 +46,117 @@ import java.util.ArrayList;
  *      <li>Количество распознанных элементов данного типа.</li>
  *      <li>Длина наименьшей строки.</li>
  *      <li>Длина наибольшей строки.</li>
+ *      <li>Приближённые квантили {@code p50}, {@code p90} и {@code p99} длин строк.</li>
+ *      <li>Приближённое количество различных строк.</li>
+ *      <li>Гистограмма длин строк с логарифмическими корзинами, если она включена.</li>
  * </ul>
  *
- * <p> После формирования выводов по типам вызываются статические методы для формирования итогового вывода и его
+ * <p> После формирования выводов по типам вызываются методы для формирования итогового вывода и его
  * непосредственного вывода в саму консоль соответственно.
  *
- * <p> Расчёт статистики производится при помощи {@link Statistics}.
+ * <p> Краткая и полная статистика берутся из {@link StatisticsAccumulator}, который рассчитывает их за один проход
+ * во время фильтрации.
  */
 
 public class ViewHandler {
 
-    private static String finalView = "The program was successfully executed.\n\n";
+    private String finalView = "The program was successfully executed.\n\n";
 
-    private static String baseIntegers = "";
-    private static String baseFloats = "";
-    private static String baseStrings = "";
+    private String baseIntegers = "";
+    private String baseFloats = "";
+    private String baseStrings = "";
+    private String baseMetrics = "";
 
     /**
-     * Добавляет к статическому полю с выводом по целочисленному типу шаблон вывода краткой статистики.
+     * Добавляет к полю с выводом по целочисленному типу шаблон вывода краткой статистики по количеству элементов,
+     * подсчитанному {@link StatisticsAccumulator} во время фильтрации.
      *
-     * <p> При формировании шаблона предварительно рассчитывается статистика в виде количества распознанных элементов
-     * данного типа.
-     *
-     * <p> Ответственность за валидность передаваемого массива передается в вышестоящую логику.
-     *
-     * @param integerList Массив целочисленных элементов.
+     * @param countElements Количество распознанных элементов данного типа.
      */
 
-    public static void addSimpleStatsIntegers(ArrayList<Long> integerList) {
-        int countElements = Statistics.getSizeArray(integerList);
-
+    public void addSimpleStatsIntegers(long countElements) {
         String result = "Integers:\n    - Number of elements:    %s\n".formatted(countElements);
         baseIntegers = baseIntegers.concat(result);
     }
 
     /**
-     * Добавляет к статическому полю с выводом по вещественному типу шаблон вывода краткой статистики.
-     *
-     * <p> При формировании шаблона предварительно рассчитывается статистика в виде количества распознанных элементов
-     * данного типа.
-     *
-     * <p> Ответственность за валидность передаваемого массива передается в вышестоящую логику.
+     * Добавляет к полю с выводом по вещественному типу шаблон вывода краткой статистики по количеству элементов,
+     * подсчитанному {@link StatisticsAccumulator} во время фильтрации.
      *
-     * @param floatList Массив вещественных элементов.
+     * @param countElements Количество распознанных элементов данного типа.
      */
 
-    public static void addSimpleStatsFloats(ArrayList<Double> floatList) {
-        int countElements = Statistics.getSizeArray(floatList);
-
+    public void addSimpleStatsFloats(long countElements) {
         String result = "Floats:\n    - Number of elements:    %s\n".formatted(countElements);
         baseFloats = baseFloats.concat(result);
     }
 
     /**
-     * Добавляет к статическому полю с выводом по строковому типу шаблон вывода краткой статистики.
-     *
-     * <p> При формировании шаблона предварительно рассчитывается статистика в виде количества распознанных элементов
-     * данного типа.
-     *
-     * <p> Ответственность за валидность передаваемого массива передается в вышестоящую логику.
+     * Добавляет к полю с выводом по строковому типу шаблон вывода краткой статистики по количеству элементов,
+     * подсчитанному {@link StatisticsAccumulator} во время фильтрации.
      *
-     * @param stringList Массив строковых элементов.
+     * @param countElements Количество распознанных элементов данного типа.
      */
 
-    public static void addSimpleStatsStrings(ArrayList<String> stringList) {
-        int countElements = Statistics.getSizeArray(stringList);
-
+    public void addSimpleStatsStrings(long countElements) {
         String result = "Strings:\n    - Number of elements:    %s\n".formatted(countElements);
         baseStrings = baseStrings.concat(result);
     }
 
     /**
-     * Добавляет к статическому полю с выводом по целочисленному типу шаблон вывода полной статистики.
+     * Добавляет к полю с выводом по целочисленному типу шаблон вывода полной статистики.
      *
-     * <p> При формировании шаблона предварительно рассчитывается статистика в виде минимального и максимального
-     * значения, суммы элементов массива и их среднее.
+     * <p> Минимальное и максимальное значение, сумма и среднее берутся из статистики, накопленной во время
+     * фильтрации, поэтому дополнительные проходы по данным не выполняются.
+     * Квантили и количество различных значений рассчитываются приближённо по скетчам фиксированного размера.
      *
-     * <p> Ответственность за валидность передаваемого массива передается в вышестоящую логику.
+     * <p> Ответственность за наличие хотя бы одного элемента передается в вышестоящую логику.
      *
-     * @param integerList Массив целочисленных элементов.
+     * @param stats Статистика, накопленная во время фильтрации {@link StatisticsAccumulator}.
      */
 
-    public static void addFullStatsIntegers(ArrayList<Long> integerList) {
-        double min = Statistics.getMinValue(integerList);
-        double max = Statistics.getMaxValue(integerList);
-        double sum = Statistics.getSum(integerList);
-        double mean = Statistics.getMean(integerList);
+    public void addFullStatsIntegers(StatisticsAccumulator stats) {
+        long min = stats.getIntegersMin();
+        long max = stats.getIntegersMax();
+        BigInteger sum = stats.getIntegersSum();
+        double mean = stats.getIntegersMean();
+        QuantileSketch quantiles = stats.getIntegersQuantiles();
 
         String result = ("""
                     Extended statistics:
-                        - Min:               %.0f
-                        - Max:               %.0f
-                        - Sum:               %.0f
+                        - Min:               %d
+                        - Max:               %d
+                        - Sum:               %d
                         - Mean:              %.4f
-                
-                """).formatted(min, max, sum, mean);
+                        - P50:               %.0f
+                        - P90:               %.0f
+                        - P99:               %.0f
+                        - Distinct (approx): %d
+                """).formatted(min, max, sum, mean,
+                quantiles.getQuantile(0.5), quantiles.getQuantile(0.9), quantiles.getQuantile(0.99),
+                stats.getIntegersDistinct().getEstimate());
+        result = result.concat(formatHistogram(stats.getIntegersHistogram())).concat("\n");
         baseIntegers = baseIntegers.concat(result);
     }
 
     /**
-     * Добавляет к статическому полю с выводом по вещественному типу шаблон вывода полной статистики.
+     * Добавляет к полю с выводом по вещественному типу шаблон вывода полной статистики.
      *
-     * <p> При формировании шаблона предварительно рассчитывается статистика в виде минимального и максимального
-     * значения, суммы элементов массива и их среднее.
+     * <p> Минимальное и максимальное значение, сумма и среднее берутся из статистики, накопленной во время
+     * фильтрации, поэтому дополнительные проходы по данным не выполняются.
+     * Квантили и количество различных значений рассчитываются приближённо по скетчам фиксированного размера.
      *
-     * <p> Ответственность за валидность передаваемого массива передается в вышестоящую логику.
+     * <p> Ответственность за наличие хотя бы одного элемента передается в вышестоящую логику.
      *
-     * @param floatList Массив вещественных элементов.
+     * @param stats Статистика, накопленная во время фильтрации {@link StatisticsAccumulator}.
      */
 
-    public static void addFullStatsFloats(ArrayList<Double> floatList) {
-        double min = Statistics.getMinValue(floatList);
-        double max = Statistics.getMaxValue(floatList);
-        double sum = Statistics.getSum(floatList);
-        double mean = Statistics.getMean(floatList);
+    public void addFullStatsFloats(StatisticsAccumulator stats) {
+        double min = stats.getFloatsMin();
+        double max = stats.getFloatsMax();
+        double sum = stats.getFloatsSum();
+        double mean = stats.getFloatsMean();
+        QuantileSketch quantiles = stats.getFloatsQuantiles();
 
         String result = ("""
                     Extended statistics:
@@ -161,50 +164,148 @@ public class ViewHandler {
                         - Max:               %.4f
                         - Sum:               %.4f
                         - Mean:              %.4f
-                
-                """).formatted(min, max, sum, mean);
+                        - P50:               %.4f
+                        - P90:               %.4f
+                        - P99:               %.4f
+                        - Distinct (approx): %d
+                """).formatted(min, max, sum, mean,
+                quantiles.getQuantile(0.5), quantiles.getQuantile(0.9), quantiles.getQuantile(0.99),
+                stats.getFloatsDistinct().getEstimate());
+        result = result.concat(formatHistogram(stats.getFloatsHistogram())).concat("\n");
         baseFloats = baseFloats.concat(result);
     }
 
     /**
-     * Добавляет к статическому полю с выводом по строковому типу шаблон вывода полной статистики.
+     * Добавляет к полю с выводом по строковому типу шаблон вывода полной статистики.
      *
-     * <p> При формировании шаблона предварительно рассчитывается статистика в виде длины наименьшей и наибольшей
-     * строки.
+     * <p> Длины наименьшей и наибольшей строки берутся из статистики, накопленной во время фильтрации.
+     * Квантили длин и количество различных строк рассчитываются приближённо по скетчам фиксированного размера.
      *
-     * <p> Ответственность за валидность передаваемого массива передается в вышестоящую логику.
+     * <p> Ответственность за наличие хотя бы одного элемента передается в вышестоящую логику.
      *
-     * @param stringList Массив строковых элементов.
+     * @param stats Статистика, накопленная во время фильтрации {@link StatisticsAccumulator}.
      */
 
-    public static void addFullStatsStrings(ArrayList<String> stringList) {
-        int min = Statistics.getMinSizeString(stringList);
-        int max = Statistics.getMaxSizeString(stringList);
+    public void addFullStatsStrings(StatisticsAccumulator stats) {
+        int min = stats.getStringsMinLength();
+        int max = stats.getStringsMaxLength();
+        QuantileSketch quantiles = stats.getStringsLengthQuantiles();
 
         String result = ("""
                     Extended statistics:
                         - Shortest length:   %d
                         - Longest length:    %d
-                """).formatted(min, max);
+                        - P50 length:        %.0f
+                        - P90 length:        %.0f
+                        - P99 length:        %.0f
+                        - Distinct (approx): %d
+                """).formatted(min, max,
+                quantiles.getQuantile(0.5), quantiles.getQuantile(0.9), quantiles.getQuantile(0.99),
+                stats.getStringsDistinct().getEstimate());
+        result = result.concat(formatHistogram(stats.getStringsLengthHistogram()));
         baseStrings = baseStrings.concat(result);
     }
 
+    /**
+     * Формирует шаблон вывода гистограммы.
+     *
+     * <p> Для внутриклассового использования.
+     *
+     * @param histogram Гистограмма {@link LogHistogram} или {@code null}, если гистограммы не включены.
+     * @return Шаблон вывода гистограммы или пустая строка.
+     */
+
+    private static String formatHistogram(LogHistogram histogram) {
+        if (histogram == null) {
+            return "";
+        }
+        return "        Histogram:\n".concat(histogram.format("            "));
+    }
+
+    /**
+     * Добавляет к полю с выводом метрик шаблон вывода метрик выполнения.
+     *
+     * <p> Выводятся размер входных файлов на диске (см. {@link Metrics#getBytesRead()}), количество записанных байт,
+     * количество строк по типам, пропускная способность этапа фильтрации, время и процессорное время каждого этапа и
+     * каждого входного файла.
+     *
+     * @param metrics Метрики выполнения {@link Metrics}.
+     */
+
+    public void addMetrics(Metrics metrics) {
+        long lines = metrics.getIntegers() + metrics.getFloats() + metrics.getStrings();
+        double filterSeconds = metrics.getStageWallNanos(Metrics.Stage.FILTER) / 1e9;
+
+        StringBuilder result = new StringBuilder(("""
+                Metrics:
+                    - Bytes read:            %d
+                    - Bytes written:         %d
+                    - Lines:                 %d (integers %d, floats %d, strings %d)
+                    - Filter throughput:     %.2f MB/s, %.0f lines/s
+                    Stages (wall / CPU, ms):
+                """).formatted(metrics.getBytesRead(), metrics.getBytesWritten(),
+                lines, metrics.getIntegers(), metrics.getFloats(), metrics.getStrings(),
+                filterSeconds > 0 ? metrics.getBytesRead() / filterSeconds / (1024 * 1024) : 0d,
+                filterSeconds > 0 ? lines / filterSeconds : 0d));
+
+        for (Metrics.Stage stage : Metrics.Stage.values()) {
+            result.append("        - %-18s %s / %s\n".formatted(stage.getLabel() + ":",
+                    formatMillis(metrics.getStageWallNanos(stage)), formatMillis(metrics.getStageCpuNanos(stage))));
+        }
+
+        result.append("    Files (wall / CPU, ms):\n");
+        for (Metrics.FileMetrics file : metrics.getFiles()) {
+            result.append("        - %s\n            %s bytes, %d lines (integers %d, floats %d, strings %d), %s / %s\n"
+                    .formatted(file.path(), file.bytes() >= 0 ? String.valueOf(file.bytes()) : "-", file.getLines(), file.integers(), file.floats(),
+                            file.strings(), formatMillis(file.wallNanos()), formatMillis(file.cpuNanos())));
+        }
+        baseMetrics = baseMetrics.concat(result.toString());
+    }
+
+    /**
+     * Переводит наносекунды в миллисекунды для вывода. Недоступное значение выводится как {@code -}.
+     *
+     * <p> Для внутриклассового использования.
+     */
+
+    private static String formatMillis(long nanos) {
+        return nanos < 0 ? "-" : "%.3f".formatted(nanos / 1e6);
+    }
+
     /**
      * Объединяет поля с выводами по всем типам в финальный вывод.
      */
 
-    public static void createFinalView() {
+    public void createFinalView() {
         finalView = finalView.concat(baseIntegers);
         finalView = finalView.concat(baseFloats);
         finalView = finalView.concat(baseStrings);
         finalView = finalView.strip();
+        if (!baseMetrics.isEmpty()) {
+            finalView = finalView.concat("\n\n").concat(baseMetrics.strip());
+        }
+    }
+
+    public String getFinalView() {
+        return finalView;
     }
 
     /**
      * Выводит финальный вывод в консоль.
      */
 
-    public static void showFinalView() {
-        System.out.println(finalView);
+    public void showFinalView() {
+        showFinalView(System.out);
+    }
+
+    /**
+     * Выводит финальный вывод в заданный поток. Используется для вывода в стандартный поток ошибок, когда
+     * стандартный вывод занят отфильтрованными данными.
+     *
+     * @param out Поток вывода {@link PrintStream}.
+     */
+
+    public void showFinalView(PrintStream out) {
+        out.println(finalView);
     }
 }
\ No newline at end of file